@@ -0,0 +1,139 @@
+package de.csbdresden.csbdeep.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import de.csbdresden.csbdeep.task.DefaultTask;
+import de.csbdresden.csbdeep.task.Task;
+import de.csbdresden.csbdeep.tiling.Tiling;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Creates the inputs of the benchmarks from their parameters. Images are
+ * filled with random values of a fixed seed, so each fork measures the same
+ * data.
+ */
+public class BenchmarkImages {
+
+	public static final long SEED = 42;
+
+	private BenchmarkImages() {}
+
+	/**
+	 * @param size dimensions separated by {@code x}, e.g. {@code 64x256x256}
+	 */
+	public static long[] parseSize(final String size) {
+		return Arrays.stream(size.split("x")).mapToLong(Long::parseLong)
+			.toArray();
+	}
+
+	/**
+	 * @param axes one letter per axis, e.g. {@code ZXY} or {@code XYC}
+	 */
+	public static AxisType[] parseAxes(final String axes) {
+		final AxisType[] types = new AxisType[axes.length()];
+		for (int i = 0; i < types.length; i++) {
+			switch (axes.charAt(i)) {
+				case 'X':
+					types[i] = Axes.X;
+					break;
+				case 'Y':
+					types[i] = Axes.Y;
+					break;
+				case 'Z':
+					types[i] = Axes.Z;
+					break;
+				case 'C':
+					types[i] = Axes.CHANNEL;
+					break;
+				case 'T':
+					types[i] = Axes.TIME;
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown axis " + axes.charAt(
+						i));
+			}
+		}
+		return types;
+	}
+
+	/**
+	 * @return the tiling actions the networks use for the axes
+	 */
+	public static Tiling.TilingAction[] getTilingActions(
+		final AxisType[] axes)
+	{
+		final Tiling.TilingAction[] actions =
+			new Tiling.TilingAction[axes.length];
+		for (int i = 0; i < axes.length; i++) {
+			if (axes[i] == Axes.CHANNEL) {
+				actions[i] = Tiling.TilingAction.NO_TILING;
+			}
+			else if (axes[i] == Axes.TIME) {
+				actions[i] = Tiling.TilingAction.TILE_WITHOUT_PADDING;
+			}
+			else {
+				actions[i] = Tiling.TilingAction.TILE_WITH_PADDING;
+			}
+		}
+		return actions;
+	}
+
+	/**
+	 * @param type {@code uint8}, {@code uint16} or {@code float32}
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends RealType<T> & NativeType<T>> T createType(
+		final String type)
+	{
+		switch (type) {
+			case "uint8":
+				return (T) new UnsignedByteType();
+			case "uint16":
+				return (T) new UnsignedShortType();
+			case "float32":
+				return (T) new FloatType();
+			default:
+				throw new IllegalArgumentException("Unknown pixel type " + type);
+		}
+	}
+
+	/**
+	 * @return an image of the pixel type filled with random values
+	 */
+	public static <T extends RealType<T> & NativeType<T>> Img<T> createImage(
+		final String type, final long[] dims)
+	{
+		final T pixelType = createType(type);
+		final Img<T> img = new ArrayImgFactory<>(pixelType).create(dims);
+		final Random random = new Random(SEED);
+		final double max = Math.min(pixelType.getMaxValue(), 65535);
+		for (final T pixel : img) {
+			pixel.setReal(random.nextDouble() * max);
+		}
+		return img;
+	}
+
+	/**
+	 * @return a task which does not print its log messages
+	 */
+	public static Task createQuietTask() {
+		return new DefaultTask() {
+
+			@Override
+			public void log(final String msg) {}
+
+			@Override
+			public void debug(final String msg) {}
+		};
+	}
+
+}
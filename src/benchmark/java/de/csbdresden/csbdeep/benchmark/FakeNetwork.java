@@ -0,0 +1,157 @@
+package de.csbdresden.csbdeep.benchmark;
+
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import org.scijava.io.location.Location;
+
+import de.csbdresden.csbdeep.network.model.DefaultNetwork;
+import de.csbdresden.csbdeep.network.model.NetworkSettings;
+import de.csbdresden.csbdeep.task.Task;
+import net.imagej.Dataset;
+import net.imagej.axis.Axes;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Stands in for a TensorFlow model without loading one. The network has the
+ * nodes of a single channel CARE model, 3D if the input has a Z axis, and
+ * goes through the same mapping steps as
+ * {@link de.csbdresden.csbdeep.network.model.tensorflow.TensorFlowNetwork}.
+ * Each tile is copied into a new image, like decoding an output tensor, and
+ * the network waits for a fixed time per voxel in place of running the
+ * graph. The output equals the input, so results are deterministic.
+ */
+public class FakeNetwork<T extends RealType<T>> extends DefaultNetwork<T> {
+
+	private final double voxelLatency;
+	private boolean loaded = false;
+
+	/**
+	 * @param voxelLatency time in nanoseconds a tile waits per voxel, like it
+	 *          would for a model running on a GPU
+	 */
+	public FakeNetwork(final Task associatedTask, final double voxelLatency) {
+		super(associatedTask);
+		this.voxelLatency = voxelLatency;
+	}
+
+	@Override
+	protected boolean loadModel(final Location source, final String modelName) {
+		log("Using fake model with " + voxelLatency + " ns latency per voxel");
+		networkSettings = new NetworkSettings();
+		loaded = true;
+		return true;
+	}
+
+	@Override
+	public void loadInputNode(final Dataset dataset) {
+		super.loadInputNode(dataset);
+		inputNode.setName("input");
+		inputNode.setNodeShape(getNodeShape(dataset));
+		inputNode.initializeNodeMapping();
+	}
+
+	@Override
+	public void loadOutputNode(final Dataset dataset) {
+		super.loadOutputNode(dataset);
+		outputNode.setName("output");
+		outputNode.setNodeShape(getNodeShape(dataset));
+		outputNode.initializeNodeMapping();
+	}
+
+	/**
+	 * @return the tensor shape of a 2D (batch, Y, X, channel) or 3D (batch, Z,
+	 *         Y, X, channel) model
+	 */
+	private long[] getNodeShape(final Dataset dataset) {
+		final int z = dataset.dimensionIndex(Axes.Z);
+		final int c = dataset.dimensionIndex(Axes.CHANNEL);
+		final long channels = c < 0 ? 1 : dataset.dimension(c);
+		if (z >= 0 && dataset.dimension(z) > 1) {
+			return new long[] { -1, -1, -1, -1, channels };
+		}
+		return new long[] { -1, -1, -1, channels };
+	}
+
+	@Override
+	public void preprocess() {
+		initMapping();
+		calculateMapping();
+	}
+
+	@Override
+	public void initMapping() {
+		inputNode.setMappingDefaults();
+		outputNode.setMappingDefaults();
+	}
+
+	@Override
+	public void calculateMapping() {
+		doDimensionReduction();
+		inputNode.generateMapping();
+		outputNode.generateMapping();
+	}
+
+	@Override
+	public List<Integer> dropSingletonDims() {
+		if (executionPlan != null) {
+			usePlan(executionPlan);
+			return executionPlan.getDroppedDims();
+		}
+		outputNode.dropSingletonDims();
+		final List<Integer> droppedDims = inputNode.dropSingletonDims();
+		storeExecutionPlan(droppedDims);
+		return droppedDims;
+	}
+
+	@Override
+	public void doDimensionReduction() {}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public RandomAccessibleInterval<T> execute(
+		final RandomAccessibleInterval<T> tile)
+	{
+		final long start = System.nanoTime();
+		final Img<FloatType> output = new ArrayImgFactory<>(new FloatType())
+			.create(Intervals.dimensionsAsLongArray(tile));
+		final Cursor<T> in = Views.flatIterable(tile).cursor();
+		final Cursor<FloatType> out = output.cursor();
+		while (in.hasNext()) {
+			out.next().setReal(in.next().getRealFloat());
+		}
+		final long end = start + (long) (voxelLatency * Intervals.numElements(
+			tile));
+		for (long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+			LockSupport.parkNanos(end - now);
+		}
+		final RandomAccessibleInterval<FloatType> result = dropSingletonDims
+			? Views.dropSingletonDimensions(output) : output;
+		return (RandomAccessibleInterval<T>) result;
+	}
+
+	@Override
+	public boolean isInitialized() {
+		return loaded;
+	}
+
+	@Override
+	public boolean libraryLoaded() {
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		networkSettings = null;
+		loaded = false;
+	}
+
+}
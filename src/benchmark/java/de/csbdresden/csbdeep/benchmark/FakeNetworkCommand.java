@@ -0,0 +1,29 @@
+package de.csbdresden.csbdeep.benchmark;
+
+import org.scijava.command.Command;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+
+import de.csbdresden.csbdeep.commands.GenericNetwork;
+import de.csbdresden.csbdeep.network.model.Network;
+
+/**
+ * {@link GenericNetwork} running a {@link FakeNetwork} instead of the model.
+ * The model file is only used for the cache name of the command, any
+ * existing file works.
+ */
+@Plugin(type = Command.class)
+public class FakeNetworkCommand extends GenericNetwork {
+
+	@Parameter(label = "Latency per voxel (ns)", min = "0")
+	protected double voxelLatency = 0;
+
+	@Override
+	protected Network createNetwork() {
+		return new FakeNetwork<>(modelExecutor, voxelLatency);
+	}
+
+	@Override
+	protected void warmUpModel() {}
+
+}
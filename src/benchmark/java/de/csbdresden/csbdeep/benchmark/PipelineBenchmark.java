@@ -0,0 +1,383 @@
+package de.csbdresden.csbdeep.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.scijava.command.CommandInfo;
+import org.scijava.module.Module;
+
+import de.csbdresden.csbdeep.commands.GenericCoreNetwork;
+import de.csbdresden.csbdeep.commands.GenericNetwork;
+import de.csbdresden.csbdeep.metrics.MemoryAccounting;
+import de.csbdresden.csbdeep.metrics.RunMetrics;
+import net.imagej.Dataset;
+import net.imagej.ImageJ;
+import net.imagej.ImgPlus;
+import net.imagej.axis.AxisType;
+import net.imglib2.img.Img;
+import net.imglib2.util.Intervals;
+
+/**
+ * Runs the whole pipeline of {@link GenericNetwork} on synthetic inputs and
+ * reports throughput, the time of each stage and the peak memory. Without a
+ * model the {@link FakeNetwork} replaces TensorFlow, so the overhead of the
+ * pipeline can be measured on machines without models or GPU.
+ * <p>
+ * Each combination of input size and thread count runs warm up rounds first,
+ * then the measured rounds. In a round, each thread processes its own input
+ * with its own network instance, the instances are reused between rounds like
+ * in batch processing.
+ * </p>
+ *
+ * <pre>
+ * PipelineBenchmark --size 512x512,2048x2048 --threads 1,2,4 --latency 20
+ * PipelineBenchmark --model model.zip --axes XYZ --size 256x256x32
+ * </pre>
+ */
+public class PipelineBenchmark {
+
+	private static final String[] STAGES = { "Preprocessing", "Tiling",
+		"Execution", "Postprocessing" };
+	private static final String CSV_HEADER =
+		"network,axes,type,size,threads,rounds,wall_ms,voxels_per_s," +
+			"tiles_per_s,preprocessing_ms,tiling_ms,execution_ms," +
+			"postprocessing_ms,peak_heap_mb,peak_tensor_mb";
+
+	private List<long[]> sizes = Collections.singletonList(new long[] { 1024,
+		1024 });
+	private String axes = null;
+	private String type = "float32";
+	private int[] threads = { 1 };
+	private double voxelLatency = 0;
+	private File modelFile = null;
+	private int nTiles = 8;
+	private int batchSize = 1;
+	private int overlap = 32;
+	private int blockMultiple = 32;
+	private int warmupRounds = 1;
+	private int rounds = 3;
+	private File csvFile = null;
+
+	private final ImageJ ij;
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+	public PipelineBenchmark(final ImageJ ij) {
+		this.ij = ij;
+	}
+
+	/**
+	 * Runs all combinations of sizes and thread counts.
+	 */
+	public void run() throws IOException, ExecutionException,
+		InterruptedException
+	{
+		final File commandModel = modelFile != null ? modelFile
+			: createFakeModelFile();
+		System.out.println(CSV_HEADER);
+		for (final long[] size : sizes) {
+			final AxisType[] axisTypes = BenchmarkImages.parseAxes(getAxes(size));
+			for (final int threadCount : threads) {
+				final String result = run(commandModel, size, axisTypes,
+					threadCount);
+				System.out.println(result);
+				if (csvFile != null) append(result);
+			}
+		}
+	}
+
+	private String run(final File commandModel, final long[] size,
+		final AxisType[] axisTypes, final int threadCount)
+		throws ExecutionException, InterruptedException
+	{
+		final List<GenericCoreNetwork> networks = new ArrayList<>();
+		final List<Dataset> inputs = new ArrayList<>();
+		for (int i = 0; i < threadCount; i++) {
+			networks.add(createNetwork(commandModel));
+			inputs.add(createInput(size, axisTypes, "input" + i));
+		}
+		final ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+		final Round total = new Round();
+		try {
+			for (int i = 0; i < warmupRounds; i++) {
+				runRound(pool, networks, inputs);
+			}
+			for (int i = 0; i < rounds; i++) {
+				total.add(runRound(pool, networks, inputs));
+			}
+		}
+		finally {
+			pool.shutdown();
+			for (final GenericCoreNetwork network : networks) {
+				network.dispose();
+			}
+		}
+		final double wallTime = total.wallTime / 1e6 / rounds;
+		final long voxels = Intervals.numElements(size) * threadCount;
+		final StringBuilder line = new StringBuilder();
+		line.append(String.format(Locale.US, "%s,%s,%s,%s,%d,%d,%.1f,%.4g,%.2f",
+			modelFile != null ? modelFile.getName() : "fake:" + voxelLatency,
+			getAxes(size), type, toString(size), threadCount, rounds, wallTime,
+			voxels / (wallTime / 1000), total.tiles / (total.wallTime / 1e9)));
+		for (final String stage : STAGES) {
+			line.append(String.format(Locale.US, ",%.1f", total.getStageTime(
+				stage) / (rounds * threadCount)));
+		}
+		line.append(String.format(Locale.US, ",%d,%d", total.peakHeap / (1024 *
+			1024), total.peakTensorBytes / (1024 * 1024)));
+		return line.toString();
+	}
+
+	/**
+	 * Processes each input in its own thread and waits for all of them. The
+	 * heap and the tensor memory of the process are sampled during the round:
+	 * the runs reset the peak usage of the memory pools when they start and
+	 * only account their own tensors, so with several threads neither gives
+	 * the peak of the round.
+	 */
+	private Round runRound(final ExecutorService pool,
+		final List<GenericCoreNetwork> networks, final List<Dataset> inputs)
+		throws ExecutionException, InterruptedException
+	{
+		final Round round = new Round();
+		final AtomicLong peakHeap = new AtomicLong();
+		final AtomicLong peakTensorBytes = new AtomicLong();
+		final MemoryAccounting tensors = MemoryAccounting.getDefault();
+		final ScheduledExecutorService sampler = Executors
+			.newSingleThreadScheduledExecutor();
+		sampler.scheduleAtFixedRate(() -> {
+			peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(),
+				Math::max);
+			peakTensorBytes.accumulateAndGet(tensors.getLiveBytes(), Math::max);
+		}, 0, 5, TimeUnit.MILLISECONDS);
+		final List<Future<?>> futures = new ArrayList<>();
+		final long start = System.nanoTime();
+		try {
+			for (int i = 0; i < networks.size(); i++) {
+				final GenericCoreNetwork network = networks.get(i);
+				final Dataset input = inputs.get(i);
+				futures.add(pool.submit(() -> network.process(input)));
+			}
+			for (final Future<?> future : futures) {
+				future.get();
+			}
+		}
+		finally {
+			round.wallTime = System.nanoTime() - start;
+			sampler.shutdownNow();
+		}
+		round.peakHeap = peakHeap.get();
+		round.peakTensorBytes = peakTensorBytes.get();
+		for (final GenericCoreNetwork network : networks) {
+			final RunMetrics metrics = network.getMetrics();
+			if (metrics == null || metrics.getTiles() + metrics
+				.getSkippedTiles() == 0)
+			{
+				throw new ExecutionException(new IllegalStateException(
+					"The network did not process any tile, check the log"));
+			}
+			round.add(metrics);
+		}
+		return round;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Dataset createInput(final long[] size, final AxisType[] axisTypes,
+		final String name)
+	{
+		final Img img = BenchmarkImages.createImage(type, size);
+		return ij.dataset().create(new ImgPlus(img, name, axisTypes));
+	}
+
+	/**
+	 * @return a network with the settings of the benchmark, fake if no model
+	 *         is given
+	 */
+	private GenericCoreNetwork createNetwork(final File commandModel) {
+		final CommandInfo info = ij.command().getCommand(modelFile != null
+			? GenericNetwork.class : FakeNetworkCommand.class);
+		final Module module = ij.module().createModule(info);
+		module.setInput("modelFile", commandModel);
+		module.setInput("nTiles", nTiles);
+		module.setInput("batchSize", batchSize);
+		module.setInput("overlap", overlap);
+		module.setInput("blockMultiple", blockMultiple);
+		module.setInput("showProgressDialog", false);
+		if (modelFile == null) module.setInput("voxelLatency", voxelLatency);
+		return (GenericCoreNetwork) module.getDelegateObject();
+	}
+
+	/**
+	 * @return an empty file, the fake network only needs a file to derive the
+	 *         cache name of the command from
+	 */
+	private static File createFakeModelFile() throws IOException {
+		final File file = File.createTempFile("fake-model", ".zip");
+		file.deleteOnExit();
+		return file;
+	}
+
+	private String getAxes(final long[] size) {
+		if (axes != null) return axes;
+		return size.length == 2 ? "XY" : size.length == 3 ? "XYZ" : "XYZC";
+	}
+
+	private void append(final String line) throws IOException {
+		final boolean header = !csvFile.exists() || csvFile.length() == 0;
+		try (PrintWriter writer = new PrintWriter(new FileWriter(csvFile, true))) {
+			if (header) writer.println(CSV_HEADER);
+			writer.println(line);
+		}
+	}
+
+	private static String toString(final long[] size) {
+		final StringBuilder res = new StringBuilder();
+		for (final long dim : size) {
+			if (res.length() > 0) res.append("x");
+			res.append(dim);
+		}
+		return res.toString();
+	}
+
+	/**
+	 * Sums up the runs of one or more rounds.
+	 */
+	private static class Round {
+
+		private long wallTime;
+		private long tiles;
+		private long peakHeap;
+		private long peakTensorBytes;
+		private final Map<String, Double> stageTimes = new HashMap<>();
+
+		private void add(final RunMetrics metrics) {
+			tiles += metrics.getTiles() + metrics.getSkippedTiles();
+			for (final String stage : STAGES) {
+				final Double time = metrics.getTaskWallTimes().get(stage);
+				if (time != null) stageTimes.merge(stage, time, Double::sum);
+			}
+		}
+
+		private void add(final Round round) {
+			wallTime += round.wallTime;
+			tiles += round.tiles;
+			peakHeap = Math.max(peakHeap, round.peakHeap);
+			peakTensorBytes = Math.max(peakTensorBytes, round.peakTensorBytes);
+			round.stageTimes.forEach((stage, time) -> stageTimes.merge(stage, time,
+				Double::sum));
+		}
+
+		private double getStageTime(final String stage) {
+			return stageTimes.getOrDefault(stage, 0.0);
+		}
+
+	}
+
+	public static void main(final String... args) {
+		final ImageJ ij = new ImageJ();
+		ij.ui().setHeadless(true);
+		final PipelineBenchmark benchmark = new PipelineBenchmark(ij);
+		int status = 0;
+		try {
+			for (int i = 0; i < args.length; i += 2) {
+				if (i + 1 >= args.length) throw new IllegalArgumentException(
+					"Missing value of " + args[i]);
+				benchmark.setOption(args[i], args[i + 1]);
+			}
+			benchmark.run();
+		}
+		catch (final IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			printUsage();
+			status = 2;
+		}
+		catch (final Exception e) {
+			e.printStackTrace();
+			status = 1;
+		}
+		finally {
+			ij.context().dispose();
+		}
+		System.exit(status);
+	}
+
+	private void setOption(final String name, final String value) {
+		switch (name) {
+			case "--size":
+				sizes = new ArrayList<>();
+				for (final String size : value.split(",")) {
+					sizes.add(BenchmarkImages.parseSize(size));
+				}
+				break;
+			case "--axes":
+				axes = value;
+				break;
+			case "--type":
+				BenchmarkImages.createType(value);
+				type = value;
+				break;
+			case "--threads":
+				threads = Arrays.stream(value.split(",")).mapToInt(
+					Integer::parseInt).toArray();
+				break;
+			case "--latency":
+				voxelLatency = Double.parseDouble(value);
+				break;
+			case "--model":
+				modelFile = new File(value);
+				if (!modelFile.exists()) throw new IllegalArgumentException(
+					"Model file " + value + " does not exist");
+				break;
+			case "--tiles":
+				nTiles = Integer.parseInt(value);
+				break;
+			case "--batch":
+				batchSize = Integer.parseInt(value);
+				break;
+			case "--overlap":
+				overlap = Integer.parseInt(value);
+				break;
+			case "--block":
+				blockMultiple = Integer.parseInt(value);
+				break;
+			case "--warmup":
+				warmupRounds = Integer.parseInt(value);
+				break;
+			case "--rounds":
+				rounds = Integer.parseInt(value);
+				break;
+			case "--csv":
+				csvFile = new File(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + name);
+		}
+	}
+
+	private static void printUsage() {
+		System.err.println("Usage: PipelineBenchmark [--size <XxY[xZ]>,...] " +
+			"[--axes <XYZCT>] [--type uint8|uint16|float32]\n" +
+			"       [--threads <n>,...] [--latency <ns per voxel>] " +
+			"[--model <model.zip>]\n" +
+			"       [--tiles <n>] [--batch <n>] [--overlap <n>] [--block <n>]\n" +
+			"       [--warmup <rounds>] [--rounds <rounds>] [--csv <file>]");
+	}
+
+}
@@ -0,0 +1,80 @@
+package de.csbdresden.csbdeep.commands;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.csbdresden.csbdeep.benchmark.BenchmarkImages;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * The pointwise geometric mean which combines the two predictions of the
+ * isotropic reconstruction, with the second prediction in the same or in a
+ * permuted axis order as produced by rotating the input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class GeometricMeanBenchmark {
+
+	@Param({ "256x256x32", "512x512x64" })
+	public String size;
+
+	@Param({ "uint16", "float32" })
+	public String type;
+
+	@Param({ "identity", "permuted" })
+	public String axisOrder;
+
+	private GenericIsotropicNetwork network;
+	private Img in1;
+	private RandomAccessibleInterval in2;
+	private Img<FloatType> out;
+
+	@Setup
+	public void setup() {
+		final long[] dims = BenchmarkImages.parseSize(size);
+		in1 = BenchmarkImages.createImage(type, dims);
+		if (axisOrder.equals("permuted")) {
+			final long[] permuted = dims.clone();
+			permuted[0] = dims[1];
+			permuted[1] = dims[0];
+			in2 = Views.permute(BenchmarkImages.createImage(type, permuted), 0, 1);
+		}
+		else {
+			in2 = BenchmarkImages.createImage(type, dims);
+		}
+		out = BenchmarkImages.createImage("float32", dims);
+		network = new GenericIsotropicNetwork();
+	}
+
+	@TearDown
+	public void tearDown() {
+		network.pool.shutdown();
+	}
+
+	@Benchmark
+	public Img<FloatType> pointwiseGeometricMean() {
+		network.pointwiseGeometricMean(in1, in2, out);
+		return out;
+	}
+
+}
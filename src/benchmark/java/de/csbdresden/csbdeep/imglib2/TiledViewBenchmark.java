@@ -0,0 +1,129 @@
+package de.csbdresden.csbdeep.imglib2;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.csbdresden.csbdeep.benchmark.BenchmarkImages;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Random access and cursors of {@link TiledView} and of the
+ * {@link GridView} which stitches the tiles again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class TiledViewBenchmark {
+
+	@Param({ "1024x1024", "32x256x256" })
+	public String size;
+
+	@Param({ "uint16", "float32" })
+	public String type;
+
+	@Param({ "32", "128" })
+	public long blockSize;
+
+	private Img img;
+	private TiledView tiledView;
+	private GridView gridView;
+
+	@Setup
+	public void setup() {
+		img = BenchmarkImages.createImage(type, BenchmarkImages.parseSize(size));
+		final long[] blocks = new long[img.numDimensions()];
+		for (int d = 0; d < blocks.length; d++) {
+			blocks[d] = Math.min(blockSize, img.dimension(d));
+		}
+		// the grid view needs blocks of equal size
+		final long[] dims = Intervals.dimensionsAsLongArray(img);
+		for (int d = 0; d < dims.length; d++) {
+			dims[d] -= dims[d] % blocks[d];
+		}
+		tiledView = new TiledView<>(Views.interval(img, new long[dims.length],
+			Arrays.stream(dims).map(dim -> dim - 1).toArray()), blocks);
+		gridView = new GridView<>(tiledView);
+	}
+
+	@Benchmark
+	public double tiledViewRandomAccess() {
+		final RandomAccess<RandomAccessibleInterval> access = tiledView
+			.randomAccess();
+		final long[] grid = Intervals.dimensionsAsLongArray(tiledView);
+		final long[] position = new long[grid.length];
+		double sum = 0;
+		for (long i = 0; i < Intervals.numElements(grid); i++) {
+			IntervalIndexer.indexToPosition(i, grid, position);
+			access.setPosition(position);
+			sum += sum(access.get());
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double tiledViewCursor() {
+		final Cursor<RandomAccessibleInterval> cursor = Views.iterable(tiledView)
+			.cursor();
+		double sum = 0;
+		while (cursor.hasNext()) {
+			sum += sum(cursor.next());
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double gridViewRandomAccess() {
+		final RandomAccess<RealType> access = gridView.randomAccess();
+		final long[] dims = Intervals.dimensionsAsLongArray(gridView);
+		final long[] position = new long[dims.length];
+		double sum = 0;
+		for (long i = 0; i < Intervals.numElements(dims); i++) {
+			IntervalIndexer.indexToPosition(i, dims, position);
+			access.setPosition(position);
+			sum += access.get().getRealDouble();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double gridViewCursor() {
+		final Cursor<RealType> cursor = gridView.cursor();
+		double sum = 0;
+		while (cursor.hasNext()) {
+			sum += cursor.next().getRealDouble();
+		}
+		return sum;
+	}
+
+	private static double sum(final RandomAccessibleInterval tile) {
+		double sum = 0;
+		for (final Object pixel : Views.iterable(tile)) {
+			sum += ((RealType) pixel).getRealDouble();
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,92 @@
+package de.csbdresden.csbdeep.network.model.tensorflow;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tensorflow.Tensor;
+
+import de.csbdresden.csbdeep.benchmark.BenchmarkImages;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * Conversion of tiles to tensors and of tensors back to images, with the
+ * axes of the tensor in image order or reversed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class TensorConversionBenchmark {
+
+	@Param({ "256x256", "1024x1024", "32x256x256" })
+	public String size;
+
+	@Param({ "uint8", "uint16", "float32" })
+	public String type;
+
+	@Param({ "identity", "reversed" })
+	public String mapping;
+
+	private Img img;
+	private int[] imgMapping;
+	private Tensor tensor;
+
+	@Setup
+	public void setup() {
+		final long[] dims = BenchmarkImages.parseSize(size);
+		img = BenchmarkImages.createImage(type, dims);
+		imgMapping = new int[dims.length];
+		for (int i = 0; i < dims.length; i++) {
+			imgMapping[i] = mapping.equals("reversed") ? dims.length - 1 - i : i;
+		}
+		tensor = DatasetTensorFlowConverter.datasetToTensor(img, imgMapping);
+	}
+
+	@TearDown
+	public void tearDown() {
+		tensor.close();
+	}
+
+	@Benchmark
+	public long datasetToTensor() {
+		try (Tensor result = DatasetTensorFlowConverter.datasetToTensor(img,
+			imgMapping))
+		{
+			return result.numBytes();
+		}
+	}
+
+	/**
+	 * Decodes the tensor to float pixels and reads them, as the output tiler
+	 * does.
+	 */
+	@Benchmark
+	public void tensorToDataset(final Blackhole blackhole) {
+		final RandomAccessibleInterval<FloatType> result = DatasetTensorFlowConverter
+			.tensorToDataset(tensor, new FloatType(), imgMapping, false);
+		final Cursor<FloatType> cursor = Views.iterable(result).cursor();
+		while (cursor.hasNext()) {
+			blackhole.consume(cursor.next().getRealFloat());
+		}
+	}
+
+}
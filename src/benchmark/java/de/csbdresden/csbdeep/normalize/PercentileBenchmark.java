@@ -0,0 +1,76 @@
+package de.csbdresden.csbdeep.normalize;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scijava.Context;
+
+import de.csbdresden.csbdeep.benchmark.BenchmarkImages;
+import net.imagej.Dataset;
+import net.imagej.DatasetService;
+import net.imglib2.img.Img;
+
+/**
+ * Percentile computation and normalization of the input image.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class PercentileBenchmark {
+
+	private static final float[] PERCENTILES = { 3.0f, 99.8f };
+
+	@Param({ "256x256", "1024x1024", "32x512x512" })
+	public String size;
+
+	@Param({ "uint8", "uint16", "float32" })
+	public String type;
+
+	private Context context;
+	private DatasetService datasetService;
+	private Img img;
+	private Dataset dataset;
+	private PercentileNormalizer normalizer;
+
+	@Setup
+	public void setup() {
+		context = new Context(DatasetService.class);
+		datasetService = context.getService(DatasetService.class);
+		img = BenchmarkImages.createImage(type, BenchmarkImages.parseSize(size));
+		dataset = datasetService.create(img);
+		normalizer = new PercentileNormalizer();
+		normalizer.setup(PERCENTILES, new float[] { 0, 1 }, false);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Benchmark
+	public float[] computePercentiles() {
+		return new HistogramPercentile().computePercentiles(img, PERCENTILES,
+			null);
+	}
+
+	@Benchmark
+	public Dataset normalize() {
+		return normalizer.normalize(dataset, null, datasetService);
+	}
+
+}
@@ -0,0 +1,102 @@
+package de.csbdresden.csbdeep.tiling;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.csbdresden.csbdeep.benchmark.BenchmarkImages;
+import de.csbdresden.csbdeep.task.Task;
+import net.imagej.axis.AxisType;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * Splitting the input into tiles and stitching the tiles of the result. The
+ * stitched result is read completely, its views are evaluated lazily.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class TilingBenchmark {
+
+	/** axes and size of the input */
+	@Param({ "XY:1024x1024", "ZXY:32x256x256", "XYZ:256x256x32",
+		"XYC:512x512x3" })
+	public String image;
+
+	@Param({ "uint16", "float32" })
+	public String type;
+
+	@Param({ "1", "8", "32" })
+	public int tiles;
+
+	private AxisType[] axes;
+	private Tiling.TilingAction[] actions;
+	private Img img;
+	private Task task;
+	private AdvancedTiledView tiledView;
+
+	@Setup
+	public void setup() {
+		final String[] parts = image.split(":");
+		axes = BenchmarkImages.parseAxes(parts[0]);
+		actions = BenchmarkImages.getTilingActions(axes);
+		img = BenchmarkImages.createImage(type, BenchmarkImages.parseSize(
+			parts[1]));
+		task = BenchmarkImages.createQuietTask();
+	}
+
+	/**
+	 * The tiles of the input serve as result tiles, postprocessing replaces
+	 * them, so they are recreated for each call.
+	 */
+	@Setup(Level.Invocation)
+	public void createResultTiles() {
+		tiledView = createTiling().preprocess(img, axes, actions, task);
+		tiledView.getProcessedTiles().clear();
+		final Cursor<RandomAccessibleInterval> cursor = Views.iterable(tiledView)
+			.cursor();
+		while (cursor.hasNext()) {
+			tiledView.getProcessedTiles().add(cursor.next());
+		}
+	}
+
+	@Benchmark
+	public AdvancedTiledView preprocess() {
+		return createTiling().preprocess(img, axes, actions, task);
+	}
+
+	@Benchmark
+	public double postprocess() {
+		final RandomAccessibleInterval result = createTiling().postprocess(task,
+			tiledView, axes);
+		double sum = 0;
+		for (final Object pixel : Views.iterable(result)) {
+			sum += ((RealType) pixel).getRealDouble();
+		}
+		return sum;
+	}
+
+	private Tiling createTiling() {
+		return new DefaultTiling<>(tiles, 1, 32, 32);
+	}
+
+}
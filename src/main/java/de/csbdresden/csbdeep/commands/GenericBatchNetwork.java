@@ -0,0 +1,294 @@
+package de.csbdresden.csbdeep.commands;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.scijava.ItemIO;
+import org.scijava.command.Command;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+
+import de.csbdresden.csbdeep.util.MemoryPressure;
+import io.scif.services.DatasetIOService;
+import net.imagej.Dataset;
+import net.imagej.ImageJ;
+
+/**
+ * Runs a network on all matching files of a folder. The model is loaded once
+ * and reading the next file, predicting the current file and saving the
+ * previous result run concurrently, connected by bounded queues.
+ */
+@Plugin(type = Command.class,
+	menuPath = "Plugins>CSBDeep>Run your network on a folder", headless = true)
+public class GenericBatchNetwork extends GenericNetworkRunner {
+
+	@Parameter(label = "Input folder", style = "directory")
+	protected File inputDir;
+
+	@Parameter(label = "File name pattern")
+	protected String filePattern = "*.tif";
+
+	@Parameter(label = "Output folder (empty: next to the input files)",
+		style = "directory", required = false)
+	protected File outputDir;
+
+	@Parameter(label = "Suffix of output files next to the input files")
+	protected String outputSuffix = "_restored";
+
+	@Parameter(label = "Number of images to read ahead", min = "1")
+	protected int queueSize = 2;
+
+	@Parameter(type = ItemIO.OUTPUT)
+	protected int processedFiles;
+
+	@Parameter
+	protected DatasetIOService datasetIOService;
+
+	/** Marks the end of the input files. */
+	protected static final File END = new File("");
+
+	/** Longest time reading ahead is held back while memory is low. */
+	private static final long MEMORY_WAIT_SECONDS = 60;
+
+	@Override
+	public void run() {
+		final List<File> files = listInputFiles();
+		if (files.isEmpty()) {
+			log.warn("No files matching " + filePattern + " found in " + inputDir);
+			return;
+		}
+		if (!prepareOutputDir()) return;
+		final BlockingQueue<File> inputFiles = new LinkedBlockingQueue<>(files);
+		inputFiles.add(END);
+		final GenericNetwork network = createNetwork();
+		try {
+			processFiles(network, inputFiles);
+		}
+		finally {
+			network.dispose();
+		}
+	}
+
+	protected List<File> listInputFiles() {
+		final List<File> res = new ArrayList<>();
+		final File[] files = inputDir == null ? null : inputDir.listFiles();
+		if (files == null) return res;
+		final PathMatcher matcher = FileSystems.getDefault().getPathMatcher(
+			"glob:" + filePattern);
+		for (final File file : files) {
+			if (file.isFile() && matcher.matches(Paths.get(file.getName())) &&
+				!isOutputFile(file))
+			{
+				res.add(file);
+			}
+		}
+		res.sort(null);
+		return res;
+	}
+
+	protected boolean prepareOutputDir() {
+		if (outputDir == null) {
+			if (outputSuffix == null || outputSuffix.isEmpty()) {
+				log.error("Please provide an output folder or an output file suffix");
+				return false;
+			}
+			return true;
+		}
+		if (inputDir != null && outputDir.getAbsoluteFile().equals(inputDir
+			.getAbsoluteFile()))
+		{
+			log.error("Please provide an output folder that is not the input folder");
+			return false;
+		}
+		if (!outputDir.exists() && !outputDir.mkdirs()) {
+			log.error("Could not create output folder " + outputDir);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the file the output for the input file is saved to, in the
+	 *         output folder or next to the input file with the output suffix
+	 */
+	protected File getOutputFile(final File input) {
+		if (outputDir != null) return new File(outputDir, input.getName());
+		final String name = input.getName();
+		final int extension = name.lastIndexOf('.');
+		final String base = extension > 0 ? name.substring(0, extension) : name;
+		return new File(input.getParentFile(), base + outputSuffix + (extension >
+			0 ? name.substring(extension) : ".tif"));
+	}
+
+	/**
+	 * @return true if the file is an output file written next to the input
+	 *         files
+	 */
+	protected boolean isOutputFile(final File file) {
+		if (outputDir != null || outputSuffix == null || outputSuffix.isEmpty()) {
+			return false;
+		}
+		final String name = file.getName();
+		final int extension = name.lastIndexOf('.');
+		return (extension > 0 ? name.substring(0, extension) : name).endsWith(
+			outputSuffix);
+	}
+
+	/**
+	 * Reads, predicts and saves the files of the queue until {@link #END} is
+	 * taken from it. Prediction runs in the calling thread, reading and saving
+	 * in separate threads.
+	 */
+	protected void processFiles(final GenericNetwork network,
+		final BlockingQueue<File> inputFiles)
+	{
+		final BlockingQueue<Item> readQueue = new ArrayBlockingQueue<>(queueSize);
+		final BlockingQueue<Item> writeQueue = new ArrayBlockingQueue<>(queueSize);
+		final ExecutorService pool = createPool(2);
+		try {
+			final Future<?> reader = pool.submit(() -> read(inputFiles, readQueue));
+			final Future<?> writer = pool.submit(() -> write(writeQueue));
+			while (!canceled) {
+				final Item item = readQueue.poll(1, TimeUnit.SECONDS);
+				if (item == null) {
+					// the reader failed without posting END
+					if (reader.isDone() && readQueue.isEmpty()) break;
+					continue;
+				}
+				if (item.file == END) break;
+				final Dataset output = predict(network, item.dataset, item.file
+					.getPath());
+				if (output != null && !offer(writeQueue, new Item(item.file, output),
+					writer)) break;
+			}
+			// the reader might be blocked on the full read queue after canceling
+			reader.cancel(true);
+			readQueue.clear();
+			if (!canceled && offer(writeQueue, new Item(END, null), writer)) {
+				writer.get();
+			}
+		}
+		catch (InterruptedException e) {
+			log.warn("Batch processing interrupted");
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			log.error("Saving the outputs failed", e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Puts the item into the queue, waiting for space as long as the command is
+	 * not canceled and the consumer of the queue is running.
+	 *
+	 * @return false if the item could not be put into the queue
+	 */
+	private boolean offer(final BlockingQueue<Item> queue, final Item item,
+		final Future<?> consumer) throws InterruptedException
+	{
+		while (!canceled && !consumer.isDone()) {
+			if (queue.offer(item, 1, TimeUnit.SECONDS)) return true;
+		}
+		return false;
+	}
+
+	private void read(final BlockingQueue<File> inputFiles,
+		final BlockingQueue<Item> readQueue)
+	{
+		try {
+			while (!canceled) {
+				final File file = inputFiles.take();
+				if (file == END) return;
+				// do not read ahead while memory is low
+				if (!readQueue.isEmpty() && !MemoryPressure.getDefault().awaitRelief(
+					MEMORY_WAIT_SECONDS, TimeUnit.SECONDS))
+				{
+					log.warn("Memory is still low, reading " + file + " anyway");
+				}
+				final Dataset dataset;
+				try {
+					dataset = datasetIOService.open(file.getAbsolutePath());
+				}
+				catch (Exception e) {
+					log.error("Could not open " + file, e);
+					continue;
+				}
+				readQueue.put(new Item(file, dataset));
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			// does not block, if the queue is full the main loop notices that the
+			// reader is done once the queue is empty
+			readQueue.offer(new Item(END, null));
+		}
+	}
+
+	private void write(final BlockingQueue<Item> writeQueue) {
+		try {
+			while (!canceled) {
+				final Item item = writeQueue.take();
+				if (item.file == END) return;
+				final File target = getOutputFile(item.file);
+				try {
+					datasetIOService.save(item.dataset, target.getAbsolutePath());
+					processedFiles++;
+					log.info("Saved " + target);
+				}
+				catch (Exception e) {
+					log.error("Could not save " + target, e);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	protected static class Item {
+
+		final File file;
+		final Dataset dataset;
+
+		Item(final File file, final Dataset dataset) {
+			this.file = file;
+			this.dataset = dataset;
+		}
+	}
+
+	/**
+	 * Processes a folder from the command line.
+	 *
+	 * @param args input folder, output folder, model file and optionally the
+	 *          file name pattern
+	 */
+	public static void main(final String... args) throws Exception {
+		if (args.length < 3) {
+			System.out.println("Usage: GenericBatchNetwork <input folder> " +
+				"<output folder> <model.zip> [file name pattern]");
+			return;
+		}
+		final ImageJ ij = new ImageJ();
+		ij.command().run(GenericBatchNetwork.class, false, "inputDir", new File(
+			args[0]), "outputDir", new File(args[1]), "modelFile", new File(args[2]),
+			"filePattern", args.length > 3 ? args[3] : "*.tif").get();
+		ij.context().dispose();
+	}
+
+}
@@ -32,6 +32,10 @@ package de.csbdresden.csbdeep.commands;
 import de.csbdresden.csbdeep.io.DefaultInputProcessor;
 import de.csbdresden.csbdeep.io.InputProcessor;
 import de.csbdresden.csbdeep.io.OutputProcessor;
+import de.csbdresden.csbdeep.metrics.MemoryAccounting;
+import de.csbdresden.csbdeep.metrics.OpProfile;
+import de.csbdresden.csbdeep.metrics.RunMetrics;
+import de.csbdresden.csbdeep.metrics.Tracer;
 import de.csbdresden.csbdeep.network.DefaultInputMapper;
 import de.csbdresden.csbdeep.network.DefaultInputValidator;
 import de.csbdresden.csbdeep.network.DefaultModelExecutor;
@@ -40,22 +44,35 @@ import de.csbdresden.csbdeep.network.InputMapper;
 import de.csbdresden.csbdeep.network.InputValidator;
 import de.csbdresden.csbdeep.network.ModelExecutor;
 import de.csbdresden.csbdeep.network.ModelLoader;
+import de.csbdresden.csbdeep.network.model.ExecutionPlan;
 import de.csbdresden.csbdeep.network.model.Network;
+import de.csbdresden.csbdeep.network.model.NetworkSettings;
+import de.csbdresden.csbdeep.network.model.TileResultCache;
 import de.csbdresden.csbdeep.network.model.tensorflow.TensorFlowNetwork;
+import de.csbdresden.csbdeep.network.model.tensorflow.TensorFlowWarmUp;
 import de.csbdresden.csbdeep.normalize.DefaultInputNormalizer;
 import de.csbdresden.csbdeep.normalize.InputNormalizer;
 import de.csbdresden.csbdeep.task.Task;
+import de.csbdresden.csbdeep.task.TaskForce;
 import de.csbdresden.csbdeep.task.TaskForceManager;
 import de.csbdresden.csbdeep.task.TaskManager;
 import de.csbdresden.csbdeep.tiling.AdvancedTiledView;
+import de.csbdresden.csbdeep.tiling.CellAlignedTiling;
+import de.csbdresden.csbdeep.tiling.CostOptimizedTiling;
 import de.csbdresden.csbdeep.tiling.DefaultInputTiler;
 import de.csbdresden.csbdeep.tiling.DefaultOutputTiler;
 import de.csbdresden.csbdeep.tiling.DefaultTiling;
+import de.csbdresden.csbdeep.tiling.EmptyTileFilter;
 import de.csbdresden.csbdeep.tiling.InputTiler;
 import de.csbdresden.csbdeep.tiling.OutputTiler;
+import de.csbdresden.csbdeep.tiling.TileFilter;
 import de.csbdresden.csbdeep.tiling.Tiling;
 import de.csbdresden.csbdeep.ui.MappingDialog;
+import de.csbdresden.csbdeep.util.DatasetHelper;
 import de.csbdresden.csbdeep.util.IOHelper;
+import de.csbdresden.csbdeep.util.ModelDownloader;
+import de.csbdresden.csbdeep.util.MemoryPressure;
+import de.csbdresden.csbdeep.util.ModelSourceIndex;
 import net.imagej.Dataset;
 import net.imagej.DatasetService;
 import net.imagej.axis.AxisType;
@@ -64,11 +81,13 @@ import net.imagej.tensorflow.TensorFlowService;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.type.numeric.real.FloatType;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.scijava.Cancelable;
 import org.scijava.Context;
 import org.scijava.Disposable;
 import org.scijava.Initializable;
 import org.scijava.ItemIO;
+import org.scijava.ItemVisibility;
 import org.scijava.app.StatusService;
 import org.scijava.command.Command;
 import org.scijava.log.LogService;
@@ -84,12 +103,16 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.prefs.Preferences;
 import java.util.stream.Collectors;
 
 @Plugin(type = Command.class)
@@ -125,6 +148,56 @@ public abstract class GenericCoreNetwork implements
 	@Parameter(label = "Batch size", min = "1")
 	protected int batchSize = 1;
 
+	@Parameter(label = "Minimize tiling overhead")
+	protected boolean optimizeTiling = false;
+
+	@Parameter(label = "Use overlap and tile size constraints of model")
+	protected boolean useModelTilingSettings = true;
+
+	@Parameter(label = "Use overlap estimated from receptive field of model")
+	protected boolean useEstimatedTileOverlap = false;
+
+	@Parameter(label = "Skip empty tiles")
+	protected boolean skipEmptyTiles = false;
+
+	@Parameter(label = "Empty tile threshold (normalized intensity)")
+	protected float emptyTileThreshold = 0.0f;
+
+	@Parameter(label = "Output of empty tiles", choices = {
+		EMPTY_TILES_BACKGROUND_RESPONSE, EMPTY_TILES_ZERO })
+	protected String emptyTileOutput = EMPTY_TILES_BACKGROUND_RESPONSE;
+
+	@Parameter(label = "Cache tile results on disk")
+	protected boolean cacheTileResults = false;
+
+	// diagnostic and tuning parameters, not shown in the dialog but settable
+	// from scripts and macros
+
+	@Parameter(label = "Tile result cache size (MB)", min = "1",
+		visibility = ItemVisibility.INVISIBLE)
+	protected int tileCacheSize = 2048;
+
+	@Parameter(label = "Save run metrics (.json or .csv)", style = "save",
+		required = false, persist = false, visibility = ItemVisibility.INVISIBLE)
+	protected File metricsFile;
+
+	@Parameter(label = "Publish run metrics via JMX",
+		visibility = ItemVisibility.INVISIBLE)
+	protected boolean publishMetrics = false;
+
+	@Parameter(label = "Save pipeline trace (Chrome trace .json)",
+		style = "save", required = false, persist = false,
+		visibility = ItemVisibility.INVISIBLE)
+	protected File traceFile;
+
+	@Parameter(label = "Profile TensorFlow ops of the tiles after the first (0 = off)",
+		min = "0", visibility = ItemVisibility.INVISIBLE)
+	protected int profileTiles = 0;
+
+	protected static final String EMPTY_TILES_BACKGROUND_RESPONSE =
+		"Network output of first empty tile";
+	protected static final String EMPTY_TILES_ZERO = "Zero";
+
 	@Parameter
 	private Context context;
 
@@ -182,6 +255,8 @@ public abstract class GenericCoreNetwork implements
 
 	protected Network network;
 	protected Tiling tiling;
+	private RunMetrics metrics;
+	private boolean tracing;
 
 	protected InputProcessor inputProcessor;
 	protected InputValidator inputValidator;
@@ -205,6 +280,8 @@ public abstract class GenericCoreNetwork implements
 	private int oldNTiles;
 	private int oldBatchesSize;
 
+	private Map<AxisType, Long> cellDimensions;
+
 	protected void openTFMappingDialog() {
 		threadService.run(() -> {
 			tryToInitialize();
@@ -212,6 +289,7 @@ public abstract class GenericCoreNetwork implements
 			initiateModelIfNeeded();
 			try {
 				threadService.invoke(() -> MappingDialog.create(network.getInputNode(), network.getOutputNode()));
+				network.clearExecutionPlans();
 			} catch (InterruptedException | InvocationTargetException e) {
 				e.printStackTrace();
 			}
@@ -247,7 +325,8 @@ public abstract class GenericCoreNetwork implements
 
 	public static String getUrlCacheName(Class commandClass, String modelUrl) {
 		try {
-			return IOHelper.getUrlCacheName(commandClass, modelUrl);
+			return ModelSourceIndex.getDefault().getCacheName(commandClass,
+				modelUrl);
 		} catch (IOException e) {
 			e.printStackTrace();
 			return null;
@@ -278,10 +357,12 @@ public abstract class GenericCoreNetwork implements
 
 	protected void modelUrlChanged() {
 		if(modelUrl != null && modelUrl.length() > new String("https://").length()) {
-			if (IOHelper.urlExists(modelUrl)) {
+			if (ModelSourceIndex.getDefault().exists(modelUrl)) {
 				modelFile = null;
 				networkInputSourceType = NetworkInputSourceType.URL;
 				modelFileUrl = modelUrl;
+				// downloads while the parameters are set
+				ModelDownloader.getDefault().start(modelUrl);
 				modelChanged();
 				return;
 			}
@@ -289,12 +370,53 @@ public abstract class GenericCoreNetwork implements
 	}
 
 	protected void modelChanged() {
+		// the previous model is not going to be used by this command
+		TensorFlowWarmUp.discard(cacheName);
 		updateCacheName();
 		modelNeedsInitialization = true;
 		savePreferences();
 		if (networkInitialized) {
 			network.clear();
 		}
+		warmUpModel();
+	}
+
+	/**
+	 * Loads the model in the background and runs a tile of the shape used in
+	 * the last run with this model through it.
+	 */
+	protected void warmUpModel() {
+		if (cacheName == null || modelFileUrl.isEmpty()) return;
+		TensorFlowWarmUp.warmUp(tensorFlowService, threadService, modelFileUrl,
+			cacheName, loadTileShape());
+	}
+
+	private long[] loadTileShape() {
+		final String shape = prefService.get(this.getClass(), getTileShapeKey(),
+			"");
+		if (shape.isEmpty()) return null;
+		try {
+			return Arrays.stream(shape.split(",")).mapToLong(Long::parseLong)
+				.toArray();
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private void saveTileShape() {
+		final long[] shape = network.getLastTileShape();
+		if (shape == null || cacheName == null) return;
+		prefService.put(this.getClass(), getTileShapeKey(), Arrays.stream(shape)
+			.mapToObj(Long::toString).collect(Collectors.joining(",")));
+	}
+
+	private String getTileShapeKey() {
+		final String key = cacheName + "_tileshape";
+		// preference keys are limited to 80 characters, the cache name of a model
+		// file contains its SHA-256
+		return key.length() <= Preferences.MAX_KEY_LENGTH ? key : DigestUtils
+			.sha256Hex(key);
 	}
 
 	protected void initiateModelIfNeeded() {
@@ -313,11 +435,9 @@ public abstract class GenericCoreNetwork implements
 		cacheName = this.getClass().getSimpleName();
 		modelFileKey = getModelFileKey();
 		initTasks();
-		initNetwork();
-		if (!network.libraryLoaded()) {
-			this.cancel("TensorFlow library could not be loaded");
-			return;
-		}
+		// TensorFlow is loaded in the background while the dialog is open, the
+		// network waits for it when it gets initialized before the first run
+		TensorFlowWarmUp.loadLibrary(tensorFlowService, threadService);
 		initTaskManager();
 	}
 
@@ -333,7 +453,7 @@ public abstract class GenericCoreNetwork implements
 
 	protected boolean initNetwork() {
 		networkInitialized = true;
-		network = new TensorFlowNetwork(modelExecutor);
+		network = createNetwork();
 		context.inject(network);
 		network.loadLibrary();
 		if(!network.libraryLoaded()) {
@@ -342,6 +462,15 @@ public abstract class GenericCoreNetwork implements
 		return true;
 	}
 
+	/**
+	 * Creates the network running the model, once before the first run. The
+	 * network reports its progress to the model executor.
+	 */
+	protected Network createNetwork() {
+		TensorFlowWarmUp.awaitLibrary(tensorFlowService, threadService);
+		return new TensorFlowNetwork(modelExecutor);
+	}
+
 	protected void initTasks() {
 		inputValidator = initInputValidator();
 		inputMapper = initInputMapper();
@@ -401,7 +530,85 @@ public abstract class GenericCoreNetwork implements
 	protected abstract OutputProcessor initOutputProcessor();
 
 	protected void initTiling() {
-		tiling = new DefaultTiling(nTiles, batchSize, blockMultiple, overlap);
+		final DefaultTiling<FloatType> defaultTiling;
+		if (optimizeTiling) {
+			defaultTiling = new CostOptimizedTiling<>(nTiles, batchSize,
+				blockMultiple, overlap);
+		}
+		else if (cellDimensions != null) {
+			defaultTiling = new CellAlignedTiling<>(nTiles, batchSize, blockMultiple,
+				overlap, cellDimensions);
+		}
+		else {
+			defaultTiling = new DefaultTiling<>(nTiles, batchSize, blockMultiple,
+				overlap);
+		}
+		final NetworkSettings settings = network.getNetworkSettings();
+		if (useModelTilingSettings && settings != null) {
+			final Map<AxisType, Integer> axesOverlap = useEstimatedTileOverlap
+				? settings.getEstimatedTileOverlap() : settings.getTileOverlap();
+			final Map<AxisType, Integer> axesDivBy = settings.getAxesDivBy();
+			if (!axesOverlap.isEmpty()) log("Tile overlap of model: " + axesOverlap);
+			if (!useEstimatedTileOverlap && !settings.estimatedTileOverlap
+				.isEmpty())
+			{
+				log("Tile overlap estimated from receptive field of model: " +
+					settings.estimatedTileOverlap + " (not used)");
+			}
+			if (!axesDivBy.isEmpty()) log(
+				"Tile size of model has to be divisible by: " + axesDivBy);
+			logOverlapOverride(axesOverlap);
+			defaultTiling.setAxesOverlap(axesOverlap);
+			defaultTiling.setAxesDivBy(axesDivBy);
+		}
+		tiling = defaultTiling;
+	}
+
+	/**
+	 * The overlap of the model only applies where it is larger than the
+	 * overlap parameter, these axes are logged.
+	 */
+	private void logOverlapOverride(final Map<AxisType, Integer> axesOverlap) {
+		final List<String> overridden = axesOverlap.entrySet().stream().filter(
+			entry -> entry.getValue() > overlap).map(entry -> entry.getKey()
+				.getLabel() + "=" + entry.getValue()).collect(Collectors.toList());
+		if (overridden.isEmpty()) return;
+		log("Overlap between tiles increased from " + overlap +
+			" to the overlap needed by the model for " + String.join(", ",
+				overridden));
+	}
+
+	protected void initTileFilters() {
+		final List<TileFilter<FloatType>> filters = network.getTileFilters();
+		filters.clear();
+		if (skipEmptyTiles) {
+			final EmptyTileFilter.Mode mode = EMPTY_TILES_ZERO.equals(
+				emptyTileOutput) ? EmptyTileFilter.Mode.CONSTANT
+					: EmptyTileFilter.Mode.BACKGROUND_RESPONSE;
+			// background responses are only valid for the current image
+			final EmptyTileFilter<FloatType> emptyTileFilter = new EmptyTileFilter<>(
+				mode);
+			emptyTileFilter.setMaxThreshold(emptyTileThreshold);
+			filters.add(emptyTileFilter);
+		}
+	}
+
+	protected void initResultCache() {
+		if (!cacheTileResults) {
+			network.setResultCache(null);
+			return;
+		}
+		final TileResultCache cache = new TileResultCache(TileResultCache
+			.getDefaultDirectory(), tileCacheSize * 1024L * 1024L);
+		// the tile content is hashed after normalization, the normalization
+		// parameters are part of the context nonetheless to be on the safe side
+		cache.setContext(cacheName + "_" + Arrays.toString(network.getInputNode()
+			.getMappingIndices()) + "_" + Arrays.toString(network.getOutputNode()
+				.getMappingIndices()) + "_" + doInputNormalization() + "_" +
+			percentileBottom + "_" + percentileTop + "_" + min + "_" + max + "_" +
+			clip);
+		cache.setMemoryAccounting(metrics.getMemoryAccounting());
+		network.setResultCache(cache);
 	}
 
 	public void run() {
@@ -433,36 +640,93 @@ public abstract class GenericCoreNetwork implements
 
 	}
 
-	protected void mainThread() throws OutOfMemoryError {
+	/**
+	 * Runs the network on the given input in the calling thread. In contrast to
+	 * {@link #run()}, the network is not disposed afterwards and the loaded
+	 * model is reused by subsequent calls. Call {@link #dispose()} when done.
+	 */
+	public void process(final Dataset input) throws OutOfMemoryError {
+		this.input = input;
+		mainThread();
+	}
 
+	protected void mainThread() throws OutOfMemoryError {
 		tryToInitialize();
+		metrics = new RunMetrics(cacheName);
+		for (final TaskForce taskForce : getTaskForces()) {
+			taskForce.resetTime();
+			taskForce.setMemoryAccounting(metrics.getMemoryAccounting());
+		}
+		tracing = traceFile != null && Tracer.startRecording();
+		if (traceFile != null && !tracing) {
+			log.warn("Another run is recording a pipeline trace, " + traceFile +
+				" is not written");
+		}
+		try {
+			runTasks();
+		}
+		finally {
+			finishMetrics();
+		}
+	}
+
+	private void runTasks() throws OutOfMemoryError {
+
 		taskManager.finalizeSetup();
 		solveModelSource();
 
 		updateCacheName();
 		savePreferences();
 
-		initiateModelIfNeeded();
-		if(!networkAndInputCompatible) return;
+		// the normalization does not depend on the model, it runs while the
+		// model is loaded and both are joined before tiling
+		DatasetHelper.assignUnknownDimensions(getInput());
+		final Dataset input = prepareInput(getInput());
+		if (input == null) return;
+		final MemoryAccounting memory = metrics.getMemoryAccounting();
+		final Future<Dataset> normalization = threadService.run(() -> normalize(
+			input, memory));
 
 		final Dataset normalizedInput;
-		if (doInputNormalization()) {
-			setupNormalizer();
-			normalizedInput = inputNormalizer.run(getInput(), opService,
-					datasetService);
-		} else {
-			normalizedInput = getInput();
+		try {
+			initiateModelIfNeeded();
+			if(!networkAndInputCompatible) return;
+			normalizedInput = normalization.get();
+		}
+		catch (InterruptedException | ExecutionException e) {
+			error("Could not normalize input: " + e.getMessage());
+			return;
+		}
+		finally {
+			// stops the normalization on every early exit, e.g. if loading the
+			// model failed, does nothing once it is done
+			normalization.cancel(true);
 		}
+		// the normalized input is always an ArrayImg, the cells are taken from
+		// the input (a cropped input is a copy and has no cells either)
+		cellDimensions = DatasetHelper.getCellDimensions(input);
 
+		final boolean reusedPlan = network.getExecutionPlan() != null;
 		final List<RandomAccessibleInterval> processedInput = inputProcessor.run(
 				normalizedInput, network);
 
-		log("INPUT NODE: ");
-		network.getInputNode().printMapping(inputProcessor);
-		log("OUTPUT NODE: ");
-		network.getOutputNode().printMapping(inputProcessor);
+		if (!reusedPlan) {
+			log("INPUT NODE: ");
+			network.getInputNode().printMapping(inputProcessor);
+			log("OUTPUT NODE: ");
+			network.getOutputNode().printMapping(inputProcessor);
+		}
 
 		initTiling();
+		initTileFilters();
+		initResultCache();
+		network.setMetrics(metrics);
+		if (profileTiles > 0) {
+			// the first tile is dominated by graph optimization and allocations
+			metrics.setOpProfile(new OpProfile(profileTiles,
+				OpProfile.DEFAULT_SKIPPED_TILES));
+			network.setOpProfile(metrics.getOpProfile());
+		}
 		List<AdvancedTiledView<FloatType>> tiledOutput = null;
 		try {
 			tiledOutput = tryToTileAndRunNetwork(processedInput);
@@ -473,18 +737,110 @@ public abstract class GenericCoreNetwork implements
 			final List<RandomAccessibleInterval<FloatType>> output;
 			if(network.getOutputNode().getTilingAllowed()) {
 				output = outputTiler.run(
-						tiledOutput, tiling, network.getOutputNode().getFinalAxesArray());
+						tiledOutput, tiling, getOutputAxes());
 			} else {
 				output = tiledOutput.stream().map(tile -> getSingleTile(tile)).collect(Collectors.toList());
 			}
 			for (AdvancedTiledView obj : tiledOutput) {
 				obj.dispose();
 			}
+			saveTileShape();
 			computeOutput(output);
 		}
 
 	}
 
+	private void finishMetrics() {
+		if (network != null) {
+			network.setMetrics(null);
+			network.setOpProfile(null);
+		}
+		metrics.finish(cacheName, getTaskForces());
+		log(metrics.getSummary());
+		warnUnreleasedTensors();
+		final OpProfile opProfile = metrics.getOpProfile();
+		if (opProfile != null && opProfile.getSamples() > 0) {
+			log(opProfile.getSummary(OpProfile.DEFAULT_TOP_OPS));
+		}
+		if (metricsFile != null) {
+			try {
+				metrics.save(metricsFile);
+			}
+			catch (IOException e) {
+				log.warn("Could not save run metrics to " + metricsFile + ": " + e
+					.getMessage());
+			}
+		}
+		if (publishMetrics && !metrics.publish(getClass().getSimpleName())) {
+			log.warn("Could not publish run metrics via JMX");
+		}
+		if (tracing) {
+			tracing = false;
+			try {
+				Tracer.stopRecording(traceFile);
+			}
+			catch (IOException e) {
+				log.warn("Could not save pipeline trace to " + traceFile + ": " + e
+					.getMessage());
+			}
+		}
+	}
+
+	private void warnUnreleasedTensors() {
+		final List<MemoryAccounting.Allocation> unreleased = metrics
+			.getMemoryAccounting().getUnreleased();
+		if (unreleased.isEmpty()) return;
+		long bytes = 0;
+		for (final MemoryAccounting.Allocation allocation : unreleased) {
+			bytes += allocation.getBytes();
+		}
+		log.warn(unreleased.size() + " tensors (" + bytes +
+			" bytes of native memory) were not closed during this run");
+		for (final MemoryAccounting.Allocation allocation : unreleased) {
+			log.debug("Tensor not closed: " + allocation);
+		}
+	}
+
+	private List<TaskForce> getTaskForces() {
+		if (taskManager instanceof TaskForceManager) {
+			return ((TaskForceManager) taskManager).getTaskForces();
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @return the metrics of the last run or {@code null}
+	 */
+	public RunMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Hook for subclasses to restrict the input before it gets normalized and
+	 * tiled, e.g. to a region of interest.
+	 *
+	 * @return the input to process or {@code null} to abort the run after an
+	 *         error has been reported
+	 */
+	protected Dataset prepareInput(final Dataset input) {
+		return input;
+	}
+
+	private Dataset normalize(final Dataset input,
+		final MemoryAccounting memory)
+	{
+		if (!doInputNormalization()) return input;
+		setupNormalizer();
+		final Dataset normalized = inputNormalizer.run(input, opService,
+			datasetService);
+		// the normalized image is a new float image
+		if (normalized != null && normalized != input) {
+			memory.imageAllocated("normalization", normalized.getImgPlus().size() *
+				Float.BYTES);
+		}
+		return normalized;
+	}
+
 	protected abstract void computeOutput(List<RandomAccessibleInterval<FloatType>> output);
 
 	private RandomAccessibleInterval<FloatType> getSingleTile(AdvancedTiledView<FloatType> tile) {
@@ -515,11 +871,17 @@ public abstract class GenericCoreNetwork implements
 		if(!networkInitialized) {
 			initNetwork();
 		}
-		if(!network.libraryLoaded()) return;
+		if(!network.libraryLoaded()) {
+			// loaded in the background since the command got initialized
+			error("TensorFlow library could not be loaded");
+			this.cancel("TensorFlow library could not be loaded");
+			return;
+		}
 
 		if(modelFileUrl.isEmpty()) {
 			taskManager.logError("Trained model file / URL is missing or unavailable");
 		}
+		TensorFlowWarmUp.await(modelName);
 		modelLoader.run(modelName, network, modelFileUrl, getInput());
 
 		try {
@@ -541,6 +903,8 @@ public abstract class GenericCoreNetwork implements
 
 	@Override
 	public void dispose() {
+		// closes a model warmed up for a dialog which got canceled
+		TensorFlowWarmUp.discard(cacheName);
 		if (taskManager != null) {
 			taskManager.close();
 		}
@@ -579,13 +943,15 @@ public abstract class GenericCoreNetwork implements
 	}
 
 	protected List tileAndRunNetwork(List<RandomAccessibleInterval> input) throws ExecutionException {
-		AxisType[] finalInputAxes = network.getInputNode().getFinalAxesArray();
-		Tiling.TilingAction[] tilingActions = network.getInputNode().getTilingActions();
+		final ExecutionPlan plan = network.getExecutionPlan();
+		AxisType[] finalInputAxes = plan != null ? plan.getInputAxes() : network.getInputNode().getFinalAxesArray();
+		Tiling.TilingAction[] tilingActions = plan != null ? plan.getTilingActions() : network.getInputNode().getTilingActions();
 		final List<AdvancedTiledView> tiledInput;
 		if(network.getInputNode().getTilingAllowed()) {
+			final boolean adapted = adaptTilingToMemoryPressure();
 			tiledInput = inputTiler.run(
 					input, finalInputAxes, tiling, tilingActions);
-			nTiles = tiling.getTilesNum();
+			if (!adapted) nTiles = tiling.getTilesNum();
 		} else {
 			tiledInput = input.stream().map(image -> getSingleTileView(image, finalInputAxes)).collect(Collectors.toList());
 		}
@@ -593,6 +959,11 @@ public abstract class GenericCoreNetwork implements
 		return modelExecutor.run(tiledInput, network);
 	}
 
+	private AxisType[] getOutputAxes() {
+		final ExecutionPlan plan = network.getExecutionPlan();
+		return plan != null ? plan.getOutputAxes() : network.getOutputNode().getFinalAxesArray();
+	}
+
 	private AdvancedTiledView getSingleTileView(RandomAccessibleInterval image, AxisType[] finalInputAxes) {
 		long[] blockSize = new long[image.numDimensions()];
 		long[] overlap = new long[image.numDimensions()];
@@ -647,6 +1018,32 @@ public abstract class GenericCoreNetwork implements
 		return true;
 	}
 
+	/**
+	 * Uses smaller tiles or batches before tiling if memory is already low,
+	 * instead of waiting for an out of memory error. Only the tiling of this
+	 * run is adapted, the parameters keep their values, so the next run starts
+	 * from them again.
+	 *
+	 * @return true if the tiling was adapted
+	 */
+	private boolean adaptTilingToMemoryPressure() {
+		if (!MemoryPressure.getDefault().isUnderPressure()) return false;
+		final int requestedTiles = nTiles;
+		final int requestedBatchSize = batchSize;
+		try {
+			nTiles = tiling.getTilesNum();
+			handleOutOfMemoryError();
+			initTiling();
+			modelExecutor.logWarning("Memory is low, using " + nTiles +
+				" tiles and batch size " + batchSize + "...");
+		}
+		finally {
+			nTiles = requestedTiles;
+			batchSize = requestedBatchSize;
+		}
+		return true;
+	}
+
 	protected void handleOutOfMemoryError() {
 		batchSize /= 2;
 		if (batchSize < 1) {
@@ -273,7 +273,7 @@ public class GenericIsotropicNetwork<T extends RealType<T>> extends GenericNetwo
 				d -> (long) Math.floor(d)).toArray());
 	}
 
-	private <U extends RealType<U>, V extends RealType<V>, W extends RealType<W>>
+	<U extends RealType<U>, V extends RealType<V>, W extends RealType<W>>
 		void pointwiseGeometricMean(final RandomAccessibleInterval<U> in1,
 			final RandomAccessibleInterval<V> in2,
 			final RandomAccessibleInterval<W> out)
@@ -30,6 +30,7 @@
 package de.csbdresden.csbdeep.commands;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.List;
 
 import org.scijava.ItemIO;
@@ -39,10 +40,17 @@ import org.scijava.plugin.Plugin;
 
 import de.csbdresden.csbdeep.io.DatasetOutputProcessor;
 import de.csbdresden.csbdeep.io.OutputProcessor;
+import de.csbdresden.csbdeep.tiling.MaskTileFilter;
+import de.csbdresden.csbdeep.util.DatasetHelper;
 import net.imagej.Dataset;
 import net.imagej.ImageJ;
+import net.imagej.axis.AxisType;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
 
 @Plugin(type = Command.class, menuPath = "Plugins>CSBDeep>Run your network")
 public class GenericNetwork extends GenericCoreNetwork {
@@ -50,11 +58,103 @@ public class GenericNetwork extends GenericCoreNetwork {
 	@Parameter(type = ItemIO.OUTPUT)
 	protected Dataset output;
 
+	@Parameter(label = "Mask (only tiles containing nonzero pixels are processed)",
+		required = false)
+	protected Dataset mask;
+
+	@Parameter(label = "Crop to bounding box of mask")
+	protected boolean cropToMask = false;
+
+	@Parameter(label = "Output value outside of mask")
+	protected float maskFillValue = 0.0f;
+
+	private RandomAccessibleInterval<? extends RealType<?>> maskRegion;
+
 	@Override
 	protected OutputProcessor initOutputProcessor() {
 		return new DatasetOutputProcessor(datasetService);
 	}
 
+	@Override
+	protected Dataset prepareInput(final Dataset input) {
+		maskRegion = null;
+		if (mask == null || mask == input) return input;
+		DatasetHelper.assignUnknownDimensions(mask);
+		if (!maskMatchesInput(input)) return null;
+		final RandomAccessibleInterval<? extends RealType<?>> maskImg = mask
+			.getImgPlus();
+		final Interval boundingBox = MaskTileFilter.getBoundingBox(maskImg);
+		if (boundingBox == null) {
+			log("The mask does not contain any nonzero pixels, ignoring it.");
+			return input;
+		}
+		if (!cropToMask) {
+			maskRegion = maskImg;
+			return input;
+		}
+		final long[] min = Intervals.minAsLongArray(input);
+		final long[] max = Intervals.maxAsLongArray(input);
+		final long[] maskMin = Intervals.minAsLongArray(maskImg);
+		final long[] maskMax = Intervals.maxAsLongArray(maskImg);
+		for (int i = 0; i < input.numDimensions(); i++) {
+			final int d = mask.dimensionIndex(input.axis(i).type());
+			if (d < 0) continue;
+			final long offset = maskImg.min(d) - input.min(i);
+			min[i] = Math.max(min[i], boundingBox.min(d) - offset);
+			max[i] = Math.min(max[i], boundingBox.max(d) - offset);
+			maskMin[d] = min[i] + offset;
+			maskMax[d] = max[i] + offset;
+		}
+		log("Cropping input to bounding box of mask: " + Arrays.toString(min) +
+			" - " + Arrays.toString(max));
+		maskRegion = Views.zeroMin(Views.interval(maskImg, maskMin, maskMax));
+		final Dataset cropped = datasetService.create(Views.zeroMin(Views
+			.interval((RandomAccessibleInterval) input.getImgPlus(), min, max)));
+		cropped.setName(input.getName());
+		for (int i = 0; i < cropped.numDimensions(); i++) {
+			cropped.axis(i).setType(input.axis(i).type());
+		}
+		return cropped;
+	}
+
+	/**
+	 * Each axis of the mask has to be an axis of the input with the same size,
+	 * the input may have additional axes.
+	 */
+	private boolean maskMatchesInput(final Dataset input) {
+		for (int d = 0; d < mask.numDimensions(); d++) {
+			final AxisType type = mask.axis(d).type();
+			final int i = input.dimensionIndex(type);
+			if (i < 0) {
+				error("Axis " + type.getLabel() + " of the mask is not an axis of " +
+					"the input.");
+				return false;
+			}
+			if (mask.dimension(d) != input.dimension(i)) {
+				error("Size of axis " + type.getLabel() + " of the mask (" + mask
+					.dimension(d) + ") does not match the size of the input (" + input
+						.dimension(i) + ").");
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	protected void initTileFilters() {
+		super.initTileFilters();
+		if (maskRegion == null) return;
+		final AxisType[] maskAxes = new AxisType[mask.numDimensions()];
+		for (int i = 0; i < maskAxes.length; i++) {
+			maskAxes[i] = mask.axis(i).type();
+		}
+		final MaskTileFilter<FloatType> filter = new MaskTileFilter<>(maskRegion,
+			maskAxes);
+		filter.setFillValue(maskFillValue);
+		// tiles outside of the mask are skipped before checking if they are empty
+		network.getTileFilters().add(0, filter);
+	}
+
 	@Override
 	protected void computeOutput(List<RandomAccessibleInterval<FloatType>> output) {
 		this.output = (Dataset) outputProcessor.run(output, network.getOutputNode());
@@ -0,0 +1,146 @@
+package de.csbdresden.csbdeep.commands;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.scijava.Cancelable;
+import org.scijava.command.Command;
+import org.scijava.command.CommandInfo;
+import org.scijava.command.CommandService;
+import org.scijava.log.LogService;
+import org.scijava.module.Module;
+import org.scijava.module.ModuleService;
+import org.scijava.plugin.Parameter;
+
+import net.imagej.Dataset;
+
+/**
+ * Base class for commands running a {@link GenericNetwork} on more than one
+ * input while keeping the model loaded.
+ */
+public abstract class GenericNetworkRunner implements Command, Cancelable {
+
+	@Parameter(label = "Import model (.zip)", required = false)
+	protected File modelFile;
+
+	@Parameter(label = "Import model (.zip) from URL", required = false)
+	protected String modelUrl;
+
+	@Parameter
+	protected boolean normalizeInput = true;
+	@Parameter
+	protected float percentileBottom = 3.0f;
+	@Parameter
+	protected float percentileTop = 99.8f;
+
+	@Parameter(label = "Clip normalization")
+	protected boolean clip = false;
+
+	@Parameter(label = "Number of tiles", min = "1")
+	protected int nTiles = 8;
+
+	@Parameter(label = "Tile size has to be multiple of", min = "1")
+	protected int blockMultiple = 32;
+
+	@Parameter(label = "Overlap between tiles", min = "0", stepSize = "16")
+	protected int overlap = 32;
+
+	@Parameter(label = "Batch size", min = "1")
+	protected int batchSize = 1;
+
+	@Parameter
+	protected CommandService commandService;
+
+	@Parameter
+	protected ModuleService moduleService;
+
+	@Parameter
+	protected LogService log;
+
+	protected volatile boolean canceled = false;
+	private final List<ExecutorService> pools = new ArrayList<>();
+
+	/**
+	 * @return a {@link GenericNetwork} instance with the parameters of this
+	 *         command, used for all inputs to keep the model loaded
+	 */
+	protected GenericNetwork createNetwork() {
+		return createNetwork(modelFile, modelUrl);
+	}
+
+	/**
+	 * @return a {@link GenericNetwork} instance with the parameters of this
+	 *         command and the given model
+	 */
+	protected GenericNetwork createNetwork(final File modelFile,
+		final String modelUrl)
+	{
+		final CommandInfo info = commandService.getCommand(GenericNetwork.class);
+		final Module module = moduleService.createModule(info);
+		module.setInput("modelFile", modelFile);
+		module.setInput("modelUrl", modelUrl);
+		module.setInput("normalizeInput", normalizeInput);
+		module.setInput("percentileBottom", percentileBottom);
+		module.setInput("percentileTop", percentileTop);
+		module.setInput("clip", clip);
+		module.setInput("nTiles", nTiles);
+		module.setInput("blockMultiple", blockMultiple);
+		module.setInput("overlap", overlap);
+		module.setInput("batchSize", batchSize);
+		module.setInput("showProgressDialog", false);
+		return (GenericNetwork) module.getDelegateObject();
+	}
+
+	/**
+	 * Runs the network on one input.
+	 *
+	 * @return the output or {@code null} if the prediction failed
+	 */
+	protected Dataset predict(final GenericNetwork network, final Dataset input,
+		final String name)
+	{
+		log.info("Processing " + name);
+		network.output = null;
+		try {
+			network.process(input);
+		}
+		catch (RuntimeException | OutOfMemoryError e) {
+			log.error("Could not process " + name, e);
+		}
+		if (network.output == null) {
+			log.error("No output for " + name);
+		}
+		return network.output;
+	}
+
+	/**
+	 * @return a thread pool which is shut down if the command gets canceled
+	 */
+	protected ExecutorService createPool(final int threads) {
+		final ExecutorService pool = Executors.newFixedThreadPool(threads);
+		pools.add(pool);
+		return pool;
+	}
+
+	@Override
+	public boolean isCanceled() {
+		return canceled;
+	}
+
+	@Override
+	public void cancel(final String reason) {
+		canceled = true;
+		for (final ExecutorService pool : pools) {
+			pool.shutdownNow();
+		}
+	}
+
+	@Override
+	public String getCancelReason() {
+		return null;
+	}
+
+}
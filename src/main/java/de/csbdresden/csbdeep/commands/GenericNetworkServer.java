@@ -0,0 +1,228 @@
+package de.csbdresden.csbdeep.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.scijava.command.Command;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+
+import de.csbdresden.csbdeep.server.PredictionServer;
+import io.scif.services.DatasetIOService;
+import net.imagej.Dataset;
+import net.imagej.DatasetService;
+import net.imagej.ImageJ;
+
+/**
+ * Runs a {@link PredictionServer} on localhost until the command gets
+ * canceled. Clients can only use the default model and the models listed in
+ * {@link #allowedModels}. Each model is loaded once and kept for following
+ * requests up to {@link #maxLoadedModels}, then the least recently used model
+ * is unloaded. Requests for the same model are processed one after the other
+ * while different models can run concurrently.
+ */
+@Plugin(type = Command.class,
+	menuPath = "Plugins>CSBDeep>Start local prediction server", headless = true)
+public class GenericNetworkServer extends GenericNetworkRunner implements
+	PredictionServer.Backend
+{
+
+	@Parameter(label = "Port", min = "0")
+	protected int port = PredictionServer.DEFAULT_PORT;
+
+	@Parameter(label = "Number of concurrent predictions", min = "1")
+	protected int threads = 1;
+
+	@Parameter(label = "Maximum number of waiting requests", min = "1")
+	protected int maxQueued = 32;
+
+	@Parameter(label = "Further models clients may use (comma separated " +
+		"paths or URLs)", required = false)
+	protected String allowedModels;
+
+	@Parameter(label = "Maximum number of loaded models", min = "1")
+	protected int maxLoadedModels = 2;
+
+	@Parameter(label = "Maximum request size (MB)", min = "1")
+	protected int maxRequestSize = 1024;
+
+	@Parameter
+	protected DatasetService datasetService;
+
+	@Parameter
+	protected DatasetIOService datasetIOService;
+
+	private static final String DEFAULT_MODEL = "";
+
+	/** Loaded networks in access order, guarded by itself. */
+	private final Map<String, GenericNetwork> networks = new LinkedHashMap<>(16,
+		0.75f, true);
+	private final Set<String> allowed = new HashSet<>();
+	private PredictionServer server;
+
+	@Override
+	public void run() {
+		allowed.clear();
+		if (allowedModels != null) {
+			for (final String model : allowedModels.split(",")) {
+				if (!model.trim().isEmpty()) allowed.add(getModelKey(model.trim()));
+			}
+		}
+		server = new PredictionServer(datasetService, datasetIOService, this,
+			threads, maxQueued);
+		server.setMaxRequestSize(maxRequestSize * 1024L * 1024L);
+		try {
+			server.start(port);
+			log.info("Prediction server listening on localhost:" + server
+				.getPort());
+			while (!canceled) {
+				Thread.sleep(500);
+			}
+		}
+		catch (IOException e) {
+			log.error("Could not start prediction server on port " + port, e);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			server.stop();
+			final List<GenericNetwork> loaded;
+			synchronized (networks) {
+				loaded = new ArrayList<>(networks.values());
+				networks.clear();
+			}
+			for (final GenericNetwork network : loaded) {
+				network.dispose();
+			}
+		}
+	}
+
+	@Override
+	public Dataset predict(final String model, final Dataset input) {
+		final String key = model == null ? DEFAULT_MODEL : getModelKey(model);
+		if (!key.equals(DEFAULT_MODEL) && !allowed.contains(key)) {
+			throw new SecurityException("Model " + model + " is not allowed, " +
+				"start the server with the model in allowedModels");
+		}
+		while (true) {
+			final GenericNetwork network = getNetwork(key);
+			// one network instance holds the tiles and the output of one prediction
+			synchronized (network) {
+				// unloaded after it was looked up
+				if (!isLoaded(key, network)) continue;
+				return predict(network, input, input.getName());
+			}
+		}
+	}
+
+	/**
+	 * @return the loaded network of the model, loading it and unloading the
+	 *         least recently used models above {@link #maxLoadedModels}
+	 */
+	private GenericNetwork getNetwork(final String key) {
+		final GenericNetwork network;
+		final List<GenericNetwork> evicted = new ArrayList<>();
+		synchronized (networks) {
+			GenericNetwork existing = networks.get(key);
+			if (existing == null) {
+				existing = createNetwork(key);
+				networks.put(key, existing);
+			}
+			network = existing;
+			final Iterator<GenericNetwork> iterator = networks.values().iterator();
+			while (networks.size() - evicted.size() > maxLoadedModels && iterator
+				.hasNext())
+			{
+				final GenericNetwork eldest = iterator.next();
+				if (eldest == network) continue;
+				evicted.add(eldest);
+				iterator.remove();
+			}
+		}
+		for (final GenericNetwork old : evicted) {
+			// waits for a running prediction of the model
+			synchronized (old) {
+				old.dispose();
+			}
+		}
+		return network;
+	}
+
+	private boolean isLoaded(final String key, final GenericNetwork network) {
+		synchronized (networks) {
+			// does not count as access
+			for (final Map.Entry<String, GenericNetwork> entry : networks
+				.entrySet())
+			{
+				if (entry.getKey().equals(key)) return entry.getValue() == network;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * @return the model itself for URLs and the absolute path for files, the
+	 *         default model maps to {@link #DEFAULT_MODEL}
+	 */
+	private String getModelKey(final String model) {
+		final String key = model.contains("://") ? model : new File(model)
+			.getAbsolutePath();
+		if (modelFile != null && key.equals(modelFile.getAbsolutePath()) ||
+			key.equals(modelUrl))
+		{
+			return DEFAULT_MODEL;
+		}
+		return key;
+	}
+
+	private GenericNetwork createNetwork(final String model) {
+		if (model.equals(DEFAULT_MODEL)) return createNetwork();
+		if (model.contains("://")) return createNetwork(null, model);
+		return createNetwork(new File(model), null);
+	}
+
+	@Override
+	public Collection<String> getLoadedModels() {
+		final Collection<String> res = new ArrayList<>();
+		final Collection<String> keys;
+		synchronized (networks) {
+			keys = new ArrayList<>(networks.keySet());
+		}
+		for (final String model : keys) {
+			if (!model.equals(DEFAULT_MODEL)) res.add(model);
+			else if (modelFile != null) res.add(modelFile.getPath());
+			else if (modelUrl != null) res.add(modelUrl);
+		}
+		return res;
+	}
+
+	/**
+	 * @return the port the server listens on or -1 if it is not running
+	 */
+	public int getPort() {
+		return server == null ? -1 : server.getPort();
+	}
+
+	/**
+	 * Starts the server from the command line.
+	 *
+	 * @param args optionally the port and the default model
+	 */
+	public static void main(final String... args) throws Exception {
+		final ImageJ ij = new ImageJ();
+		ij.command().run(GenericNetworkServer.class, false, "port", args.length >
+			0 ? Integer.parseInt(args[0]) : PredictionServer.DEFAULT_PORT,
+			"modelFile", args.length > 1 ? new File(args[1]) : null).get();
+		ij.context().dispose();
+	}
+
+}
@@ -0,0 +1,152 @@
+package de.csbdresden.csbdeep.commands;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.scijava.ItemIO;
+import org.scijava.command.Command;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.ui.UIService;
+
+import de.csbdresden.csbdeep.io.DatasetFileSink;
+import de.csbdresden.csbdeep.io.OutputSink;
+import de.csbdresden.csbdeep.io.UpdatingDatasetSink;
+import de.csbdresden.csbdeep.normalize.DefaultInputNormalizer;
+import de.csbdresden.csbdeep.normalize.HistogramPercentile;
+import de.csbdresden.csbdeep.normalize.PercentileNormalizer;
+import io.scif.services.DatasetIOService;
+import net.imagej.Dataset;
+import net.imagej.DatasetService;
+import net.imagej.axis.Axes;
+import net.imagej.ops.OpService;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Runs a network on a time-lapse chunk by chunk along the time axis. Each
+ * chunk is normalized, predicted and passed to an {@link OutputSink} before
+ * the next chunk is processed, so only one chunk of intermediate data is kept
+ * in memory and results are available while the series is still processed.
+ */
+@Plugin(type = Command.class,
+	menuPath = "Plugins>CSBDeep>Run your network on a time-lapse (streaming)",
+	headless = true)
+public class GenericStreamingNetwork extends GenericNetworkRunner {
+
+	@Parameter(type = ItemIO.INPUT)
+	public Dataset input;
+
+	@Parameter(label = "Time points per chunk", min = "1")
+	protected int framesPerChunk = 1;
+
+	@Parameter(label = "Normalize each chunk separately")
+	protected boolean normalizePerChunk = false;
+
+	@Parameter(label = "Save chunks to folder instead of showing the output",
+		style = "directory", required = false)
+	protected File outputDir;
+
+	@Parameter(type = ItemIO.OUTPUT)
+	protected Dataset output;
+
+	@Parameter
+	protected DatasetService datasetService;
+
+	@Parameter
+	protected DatasetIOService datasetIOService;
+
+	@Parameter
+	protected OpService opService;
+
+	@Parameter
+	protected UIService uiService;
+
+	private OutputSink sink;
+
+	/**
+	 * Sets the sink receiving the output chunks, overriding the sink created
+	 * from the parameters of the command.
+	 */
+	public void setSink(final OutputSink sink) {
+		this.sink = sink;
+	}
+
+	@Override
+	public void run() {
+		final int timeDim = input.dimensionIndex(Axes.TIME);
+		if (timeDim < 0) {
+			log.error("The input does not have a time axis.");
+			return;
+		}
+		final long numFrames = input.dimension(timeDim);
+		final OutputSink outputSink = sink != null ? sink : createSink(numFrames);
+		final GenericNetwork network = createNetwork();
+		try {
+			if (normalizeInput && !normalizePerChunk) normalizeLikeInput(network);
+			for (long first = 0; first < numFrames && !canceled; first +=
+				framesPerChunk)
+			{
+				final long frames = Math.min(framesPerChunk, numFrames - first);
+				final Dataset result = predict(network, getChunk(timeDim, first,
+					frames), "time points " + first + " - " + (first + frames - 1));
+				if (result == null) break;
+				outputSink.accept(result, first, frames);
+			}
+			outputSink.close();
+		}
+		catch (IOException e) {
+			log.error("Could not write output", e);
+		}
+		finally {
+			network.dispose();
+		}
+	}
+
+	private OutputSink createSink(final long numFrames) {
+		if (outputDir != null) {
+			return new DatasetFileSink(datasetIOService, outputDir, input.getName()
+				.replaceFirst("\\.[^.]*$", ""));
+		}
+		// the output is shown as soon as the first chunk arrives, in headless
+		// mode it is returned as output of the command
+		return new UpdatingDatasetSink(datasetService, numFrames, dataset -> {
+			if (uiService.isHeadless()) output = dataset;
+			else uiService.show(dataset);
+		});
+	}
+
+	/**
+	 * Computes the percentiles of the whole input once, otherwise each chunk
+	 * would be normalized based on its own intensities.
+	 */
+	private void normalizeLikeInput(final GenericNetwork network) {
+		network.tryToInitialize();
+		if (!(network.inputNormalizer instanceof DefaultInputNormalizer)) return;
+		final Object normalizer = ((DefaultInputNormalizer) network.inputNormalizer)
+			.getNormalizer();
+		if (!(normalizer instanceof PercentileNormalizer)) return;
+		final float[] values = new HistogramPercentile<>().computePercentiles(
+			(RandomAccessibleInterval) input.getImgPlus(), new float[] {
+				percentileBottom, percentileTop }, opService);
+		((PercentileNormalizer) normalizer).setResValues(values);
+	}
+
+	private Dataset getChunk(final int timeDim, final long firstFrame,
+		final long frames)
+	{
+		final long[] min = Intervals.minAsLongArray(input);
+		final long[] max = Intervals.maxAsLongArray(input);
+		min[timeDim] = firstFrame;
+		max[timeDim] = firstFrame + frames - 1;
+		final Dataset chunk = datasetService.create(Views.zeroMin(Views.interval(
+			(RandomAccessibleInterval) input.getImgPlus(), min, max)));
+		chunk.setName(input.getName());
+		for (int i = 0; i < chunk.numDimensions(); i++) {
+			chunk.axis(i).setType(input.axis(i).type());
+		}
+		return chunk;
+	}
+
+}
@@ -0,0 +1,214 @@
+package de.csbdresden.csbdeep.commands;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.scijava.command.Command;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+
+/**
+ * Watches a folder for new image files, e.g. written by a microscope during
+ * an acquisition, and runs the network on each file once it is complete. A
+ * file is considered complete if its size did not change for a while. The
+ * model stays loaded, new files wait in a bounded queue while the network is
+ * busy. A file which is written again after it was queued is processed again.
+ */
+@Plugin(type = Command.class,
+	menuPath = "Plugins>CSBDeep>Run your network on new files of a folder",
+	headless = true)
+public class GenericWatchFolderNetwork extends GenericBatchNetwork {
+
+	@Parameter(label = "Process files already in the folder")
+	protected boolean processExisting = false;
+
+	@Parameter(label = "File is complete if its size did not change for (ms)",
+		min = "0")
+	protected int stableMillis = 2000;
+
+	@Parameter(label = "Maximum number of waiting files", min = "1")
+	protected int workQueueSize = 64;
+
+	@Parameter(label = "Stop if no new file arrived for (s, 0: never)",
+		min = "0")
+	protected int idleTimeout = 0;
+
+	private static final long POLL_MILLIS = 200;
+
+	private static class PendingFile {
+
+		long size = -1;
+		long lastChange;
+	}
+
+	@Override
+	public void run() {
+		if (inputDir == null || !inputDir.isDirectory()) {
+			log.error("Please provide an existing input folder");
+			return;
+		}
+		if (!prepareOutputDir()) return;
+		final BlockingQueue<File> inputFiles = new ArrayBlockingQueue<>(
+			workQueueSize);
+		final GenericNetwork network = createNetwork();
+		final ExecutorService watcher = createPool(1);
+		watcher.submit(() -> watch(inputFiles));
+		try {
+			log.info("Watching " + inputDir + " for files matching " + filePattern);
+			processFiles(network, inputFiles);
+		}
+		finally {
+			watcher.shutdownNow();
+			network.dispose();
+		}
+	}
+
+	private void watch(final BlockingQueue<File> inputFiles) {
+		final Map<File, PendingFile> pending = new LinkedHashMap<>();
+		// last modification time of each queued file, a file written again is
+		// processed again
+		final Map<File, Long> queued = new HashMap<>();
+		final PathMatcher matcher = FileSystems.getDefault().getPathMatcher(
+			"glob:" + filePattern);
+		try (WatchService watchService = FileSystems.getDefault()
+			.newWatchService())
+		{
+			final Path dir = inputDir.toPath();
+			// registered before listing the folder, files created in between are
+			// reported by both and not lost
+			dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+			if (processExisting) {
+				for (final File file : listInputFiles()) {
+					pending.put(file, new PendingFile());
+				}
+			}
+			long lastActivity = System.currentTimeMillis();
+			while (!canceled) {
+				final WatchKey key = watchService.poll(POLL_MILLIS,
+					TimeUnit.MILLISECONDS);
+				if (key != null) {
+					for (final WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == OVERFLOW) {
+							// events got lost, look for new files in the folder
+							for (final File file : listInputFiles()) {
+								if (!isQueued(queued, file)) pending.putIfAbsent(file,
+									new PendingFile());
+							}
+							continue;
+						}
+						final Path name = (Path) event.context();
+						final File file = dir.resolve(name).toFile();
+						if (event.kind() == ENTRY_DELETE) {
+							pending.remove(file);
+							queued.remove(file);
+							continue;
+						}
+						if (!matcher.matches(name) || isOutputFile(file) || isQueued(
+							queued, file)) continue;
+						pending.putIfAbsent(file, new PendingFile());
+						lastActivity = System.currentTimeMillis();
+					}
+					if (!key.reset()) {
+						log.error("Folder " + inputDir + " is not accessible anymore");
+						break;
+					}
+				}
+				if (queueCompleteFiles(pending, queued, inputFiles)) {
+					lastActivity = System.currentTimeMillis();
+				}
+				if (idleTimeout > 0 && pending.isEmpty() && System
+					.currentTimeMillis() - lastActivity > idleTimeout * 1000L)
+				{
+					log.info("No new files for " + idleTimeout + " seconds, stopping");
+					break;
+				}
+			}
+		}
+		catch (IOException e) {
+			log.error("Could not watch folder " + inputDir, e);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			// END must not get lost, otherwise the reader waits forever; if the
+			// queue is full this waits for the reader, run() interrupts it when
+			// the batch ends without taking END
+			try {
+				inputFiles.put(END);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static boolean isQueued(final Map<File, Long> queued,
+		final File file)
+	{
+		final Long lastModified = queued.get(file);
+		return lastModified != null && lastModified == file.lastModified();
+	}
+
+	/**
+	 * Moves files whose size did not change for {@link #stableMillis} to the
+	 * work queue, waiting while the queue is full.
+	 *
+	 * @return true if at least one file was queued
+	 */
+	private boolean queueCompleteFiles(final Map<File, PendingFile> pending,
+		final Map<File, Long> queued, final BlockingQueue<File> inputFiles)
+		throws InterruptedException
+	{
+		boolean queuedAny = false;
+		final long now = System.currentTimeMillis();
+		final Iterator<Map.Entry<File, PendingFile>> iterator = pending.entrySet()
+			.iterator();
+		while (iterator.hasNext()) {
+			final Map.Entry<File, PendingFile> entry = iterator.next();
+			final File file = entry.getKey();
+			final PendingFile state = entry.getValue();
+			if (!file.exists()) {
+				iterator.remove();
+				continue;
+			}
+			final long size = file.length();
+			if (size != state.size) {
+				state.size = size;
+				state.lastChange = now;
+				continue;
+			}
+			if (size == 0 || now - state.lastChange < stableMillis) continue;
+			iterator.remove();
+			queued.put(file, file.lastModified());
+			if (!inputFiles.offer(file)) {
+				log.warn("Work queue is full, waiting for the network to catch up");
+				while (!inputFiles.offer(file, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+					if (canceled) return queuedAny;
+				}
+			}
+			queuedAny = true;
+		}
+		return queuedAny;
+	}
+
+}
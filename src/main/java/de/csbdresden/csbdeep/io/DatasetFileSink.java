@@ -0,0 +1,39 @@
+package de.csbdresden.csbdeep.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import io.scif.services.DatasetIOService;
+import net.imagej.Dataset;
+
+/**
+ * Saves each chunk of the output as a separate file named after the first
+ * time point of the chunk.
+ */
+public class DatasetFileSink implements OutputSink {
+
+	private final DatasetIOService datasetIOService;
+	private final File outputDir;
+	private final String prefix;
+
+	public DatasetFileSink(final DatasetIOService datasetIOService,
+		final File outputDir, final String prefix)
+	{
+		this.datasetIOService = datasetIOService;
+		this.outputDir = outputDir;
+		this.prefix = prefix;
+	}
+
+	@Override
+	public void accept(final Dataset chunk, final long firstFrame,
+		final long numFrames) throws IOException
+	{
+		if (!outputDir.exists() && !outputDir.mkdirs()) {
+			throw new IOException("Could not create output folder " + outputDir);
+		}
+		final File file = new File(outputDir, String.format("%s_t%05d.tif",
+			prefix, firstFrame));
+		datasetIOService.save(chunk, file.getAbsolutePath());
+	}
+
+}
@@ -0,0 +1,30 @@
+package de.csbdresden.csbdeep.io;
+
+import java.io.IOException;
+
+import net.imagej.Dataset;
+
+/**
+ * Receives the output of a network in chunks of consecutive time points as
+ * soon as they are computed.
+ */
+@FunctionalInterface
+public interface OutputSink {
+
+	/**
+	 * @param chunk the network output of the time points
+	 *          {@code firstFrame .. firstFrame + numFrames - 1}, the time axis is
+	 *          missing if it got dropped because the chunk contains only one
+	 *          time point
+	 * @param firstFrame index of the first time point of the chunk in the input
+	 * @param numFrames number of time points of the chunk
+	 */
+	void accept(Dataset chunk, long firstFrame, long numFrames)
+		throws IOException;
+
+	/**
+	 * Called after the last chunk.
+	 */
+	default void close() throws IOException {}
+
+}
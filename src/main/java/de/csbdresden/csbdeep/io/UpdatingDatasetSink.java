@@ -0,0 +1,102 @@
+package de.csbdresden.csbdeep.io;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import net.imagej.Dataset;
+import net.imagej.DatasetService;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Copies the chunks into one {@link Dataset} covering all time points. The
+ * dataset is created with the first chunk and updated after each chunk, so
+ * that displays of it show the progress.
+ */
+public class UpdatingDatasetSink implements OutputSink {
+
+	private final DatasetService datasetService;
+	private final long numFrames;
+	private final Consumer<Dataset> onCreate;
+	private Dataset output;
+
+	/**
+	 * @param numFrames total number of time points
+	 * @param onCreate called once the output dataset got created, e.g. to show
+	 *          it
+	 */
+	public UpdatingDatasetSink(final DatasetService datasetService,
+		final long numFrames, final Consumer<Dataset> onCreate)
+	{
+		this.datasetService = datasetService;
+		this.numFrames = numFrames;
+		this.onCreate = onCreate;
+	}
+
+	@Override
+	public void accept(final Dataset chunk, final long firstFrame,
+		final long chunkFrames)
+	{
+		RandomAccessibleInterval<? extends RealType<?>> source = chunk
+			.getImgPlus();
+		if (chunk.dimensionIndex(Axes.TIME) < 0) {
+			source = Views.addDimension(source, 0, 0);
+		}
+		if (output == null) createOutput(chunk);
+		final int timeDim = output.dimensionIndex(Axes.TIME);
+		final RandomAccess<? extends RealType<?>> in = source.randomAccess();
+		final Cursor<? extends RealType<?>> out = Views.iterable(Views.interval(
+			output.getImgPlus(), getChunkInterval(timeDim, firstFrame, chunkFrames)))
+			.localizingCursor();
+		final long[] position = new long[output.numDimensions()];
+		while (out.hasNext()) {
+			out.fwd();
+			out.localize(position);
+			position[timeDim] -= firstFrame;
+			in.setPosition(position);
+			out.get().setReal(in.get().getRealDouble());
+		}
+		output.update();
+	}
+
+	private Interval getChunkInterval(final int timeDim, final long firstFrame,
+		final long chunkFrames)
+	{
+		final long[] min = new long[output.numDimensions()];
+		final long[] max = new long[output.numDimensions()];
+		output.max(max);
+		min[timeDim] = firstFrame;
+		max[timeDim] = firstFrame + chunkFrames - 1;
+		return new FinalInterval(min, max);
+	}
+
+	private void createOutput(final Dataset chunk) {
+		final boolean hasTime = chunk.dimensionIndex(Axes.TIME) >= 0;
+		final int n = chunk.numDimensions() + (hasTime ? 0 : 1);
+		final long[] dims = Arrays.copyOf(Intervals.dimensionsAsLongArray(chunk),
+			n);
+		final AxisType[] axes = new AxisType[n];
+		for (int i = 0; i < chunk.numDimensions(); i++) {
+			axes[i] = chunk.axis(i).type();
+		}
+		if (!hasTime) axes[n - 1] = Axes.TIME;
+		dims[hasTime ? chunk.dimensionIndex(Axes.TIME) : n - 1] = numFrames;
+		output = datasetService.create(new FloatType(), dims, chunk.getName(),
+			axes);
+		if (onCreate != null) onCreate.accept(output);
+	}
+
+	public Dataset getOutput() {
+		return output;
+	}
+
+}
@@ -0,0 +1,257 @@
+package de.csbdresden.csbdeep.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accounts native memory of tensors and large image allocations. Tensors are
+ * registered with {@link #allocated} when they are created and with
+ * {@link #released} when they are closed, which gives the live and peak
+ * native bytes and the tensors which were never closed. The heap usage is
+ * sampled at the end of each stage, e.g. a task or a tensor conversion, and
+ * the peak per stage is kept.
+ * <p>
+ * Each run gets its own accounting (see {@link RunMetrics}), so concurrent
+ * runs do not see each other's allocations. Tensors registered with a run are
+ * registered with the accounting of the process ({@link #getDefault()}) as
+ * well, which watches the total native memory. Resources are only weakly
+ * referenced, a tensor which is garbage collected without being closed stays
+ * accounted, since its native memory is not freed.
+ */
+public class MemoryAccounting {
+
+	private static final MemoryAccounting defaultAccounting =
+		new MemoryAccounting();
+
+	/**
+	 * A native allocation which was not released yet.
+	 */
+	public static class Allocation {
+
+		private final String stage;
+		private final long bytes;
+		private final String thread;
+		private final long timestamp;
+
+		private Allocation(final String stage, final long bytes) {
+			this.stage = stage;
+			this.bytes = bytes;
+			thread = Thread.currentThread().getName();
+			timestamp = System.currentTimeMillis();
+		}
+
+		/**
+		 * @return stage which allocated the memory
+		 */
+		public String getStage() {
+			return stage;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return name of the thread which allocated the memory
+		 */
+		public String getThread() {
+			return thread;
+		}
+
+		/**
+		 * @return time of the allocation in milliseconds since the epoch
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		@Override
+		public String toString() {
+			return bytes + " bytes allocated in " + stage + " by thread " + thread;
+		}
+	}
+
+	/**
+	 * Weak key comparing the referents by identity, keys of collected
+	 * referents are only equal to themselves.
+	 */
+	private static class Key extends WeakReference<Object> {
+
+		private final int hash;
+
+		private Key(final Object resource) {
+			super(resource);
+			hash = System.identityHashCode(resource);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof Key)) return false;
+			final Object resource = get();
+			return resource != null && resource == ((Key) obj).get();
+		}
+	}
+
+	private final MemoryAccounting parent;
+	private final Map<Key, Allocation> live = new HashMap<>();
+	private long liveBytes;
+	private long peakBytes;
+	private long allocations;
+	private final Map<String, Long> imageBytes = new LinkedHashMap<>();
+	private final Map<String, Long> stageHeap = new LinkedHashMap<>();
+	private long peakHeap;
+
+	public MemoryAccounting() {
+		this(null);
+	}
+
+	/**
+	 * @param parent accounting the tensors are registered with as well, e.g.
+	 *          the one of the process, or {@code null}
+	 */
+	public MemoryAccounting(final MemoryAccounting parent) {
+		this.parent = parent;
+	}
+
+	/**
+	 * @return the accounting of the process
+	 */
+	public static MemoryAccounting getDefault() {
+		return defaultAccounting;
+	}
+
+	/**
+	 * Registers native memory owned by a resource, e.g. a tensor.
+	 *
+	 * @return the resource
+	 */
+	public <R> R allocated(final R resource, final long bytes,
+		final String stage)
+	{
+		if (resource == null) return null;
+		synchronized (this) {
+			final Key key = new Key(resource);
+			if (live.containsKey(key)) return resource;
+			live.put(key, new Allocation(stage, bytes));
+			liveBytes += bytes;
+			peakBytes = Math.max(peakBytes, liveBytes);
+			allocations++;
+		}
+		if (parent != null) parent.allocated(resource, bytes, stage);
+		return resource;
+	}
+
+	/**
+	 * Unregisters the native memory of a resource after closing it.
+	 */
+	public void released(final Object resource) {
+		if (resource == null) return;
+		synchronized (this) {
+			final Allocation allocation = live.remove(new Key(resource));
+			if (allocation != null) liveBytes -= allocation.getBytes();
+		}
+		if (parent != null) parent.released(resource);
+	}
+
+	/**
+	 * Records an image allocated on the heap.
+	 */
+	public synchronized void imageAllocated(final String stage,
+		final long bytes)
+	{
+		imageBytes.merge(stage, bytes, Long::sum);
+	}
+
+	/**
+	 * Samples the heap usage at the end of a stage.
+	 */
+	public void sampleHeap(final String stage) {
+		final long used = sampleHeap();
+		synchronized (this) {
+			stageHeap.merge(stage, used, Math::max);
+		}
+	}
+
+	/**
+	 * Samples the heap usage for {@link #getPeakHeap()} only.
+	 *
+	 * @return the used heap
+	 */
+	public long sampleHeap() {
+		final MemoryUsage heap = ManagementFactory.getMemoryMXBean()
+			.getHeapMemoryUsage();
+		synchronized (this) {
+			peakHeap = Math.max(peakHeap, heap.getUsed());
+		}
+		return heap.getUsed();
+	}
+
+	/**
+	 * @return native bytes which are currently allocated
+	 */
+	public synchronized long getLiveBytes() {
+		return liveBytes;
+	}
+
+	/**
+	 * @return highest number of native bytes allocated at the same time
+	 */
+	public synchronized long getPeakBytes() {
+		return peakBytes;
+	}
+
+	/**
+	 * @return number of native allocations
+	 */
+	public synchronized long getAllocations() {
+		return allocations;
+	}
+
+	/**
+	 * @return number of native allocations which were not released yet
+	 */
+	public synchronized int getLiveCount() {
+		return live.size();
+	}
+
+	/**
+	 * @return allocations which were not released yet
+	 */
+	public synchronized List<Allocation> getUnreleased() {
+		return new ArrayList<>(live.values());
+	}
+
+	/**
+	 * @return bytes of the images allocated per stage
+	 */
+	public synchronized Map<String, Long> getImageBytes() {
+		return new LinkedHashMap<>(imageBytes);
+	}
+
+	/**
+	 * @return highest heap usage of all samples
+	 */
+	public synchronized long getPeakHeap() {
+		return peakHeap;
+	}
+
+	/**
+	 * @return highest heap usage sampled at the end of each stage
+	 */
+	public synchronized Map<String, Long> getStageHeap() {
+		return new LinkedHashMap<>(stageHeap);
+	}
+
+}
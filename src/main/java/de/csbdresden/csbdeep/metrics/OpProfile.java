@@ -0,0 +1,195 @@
+package de.csbdresden.csbdeep.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Aggregates the compute time and memory of the operations of a model over
+ * a sample of profiled tiles, e.g. to see whether a model is bound by
+ * convolutions or by memory traffic. The first {@code maxSamples} tiles
+ * which claim a sample via {@link #nextSample()} after the skipped tiles are
+ * profiled. The first tile of a session is slower than the others, it pays
+ * for optimizing the graph and allocating memory, and should be skipped.
+ */
+public class OpProfile {
+
+	public static final int DEFAULT_TOP_OPS = 10;
+	public static final int DEFAULT_SKIPPED_TILES = 1;
+
+	/**
+	 * Statistics of one operation of the graph.
+	 */
+	public static class Op {
+
+		private final String name;
+		private final String type;
+		private long count;
+		private long computeMicros;
+		private long peakBytes;
+
+		private Op(final String name, final String type) {
+			this.name = name;
+			this.type = type;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		/**
+		 * @return number of executions of the operation
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return compute time summed over all executions in microseconds
+		 */
+		public long getComputeMicros() {
+			return computeMicros;
+		}
+
+		/**
+		 * @return largest memory allocated by one execution in bytes
+		 */
+		public long getPeakBytes() {
+			return peakBytes;
+		}
+	}
+
+	private final int maxSamples;
+	private int skippedTiles;
+	private int samples;
+	private long computeMicros;
+	private final Map<String, Op> ops = new LinkedHashMap<>();
+
+	/**
+	 * @param maxSamples number of tiles to profile
+	 */
+	public OpProfile(final int maxSamples) {
+		this(maxSamples, 0);
+	}
+
+	/**
+	 * @param maxSamples number of tiles to profile
+	 * @param skippedTiles number of tiles executed without profiling before
+	 *          the first sample
+	 */
+	public OpProfile(final int maxSamples, final int skippedTiles) {
+		this.maxSamples = maxSamples;
+		this.skippedTiles = skippedTiles;
+	}
+
+	/**
+	 * Claims a sample for the tile which is about to be executed.
+	 *
+	 * @return false if the tile should be executed without profiling
+	 */
+	public synchronized boolean nextSample() {
+		if (skippedTiles > 0) {
+			skippedTiles--;
+			return false;
+		}
+		if (samples >= maxSamples) return false;
+		samples++;
+		return true;
+	}
+
+	/**
+	 * Records one execution of an operation in a profiled tile.
+	 *
+	 * @param name name of the node in the graph
+	 * @param type type of the operation, e.g. {@code Conv2D}
+	 * @param micros compute time in microseconds
+	 * @param bytes memory allocated by the operation
+	 */
+	public synchronized void addOp(final String name, final String type,
+		final long micros, final long bytes)
+	{
+		final Op op = ops.computeIfAbsent(name, key -> new Op(name, type));
+		op.count++;
+		op.computeMicros += micros;
+		op.peakBytes = Math.max(op.peakBytes, bytes);
+		computeMicros += micros;
+	}
+
+	/**
+	 * @return number of profiled tiles
+	 */
+	public synchronized int getSamples() {
+		return samples;
+	}
+
+	/**
+	 * @return compute time of all operations in microseconds
+	 */
+	public synchronized long getComputeMicros() {
+		return computeMicros;
+	}
+
+	/**
+	 * @return the operations with the highest compute time, descending
+	 */
+	public synchronized List<Op> getTopOps(final int count) {
+		final List<Op> sorted = new ArrayList<>(ops.values());
+		sorted.sort(Comparator.comparingLong(Op::getComputeMicros).reversed());
+		return new ArrayList<>(sorted.subList(0, Math.min(count, sorted
+			.size())));
+	}
+
+	/**
+	 * @return compute time in microseconds per operation type, descending
+	 */
+	public synchronized Map<String, Long> getTypeMicros() {
+		final Map<String, Long> types = new LinkedHashMap<>();
+		for (final Op op : ops.values()) {
+			types.merge(op.getType(), op.getComputeMicros(), Long::sum);
+		}
+		final Map<String, Long> sorted = new LinkedHashMap<>();
+		types.entrySet().stream().sorted(Map.Entry.<String, Long> comparingByValue()
+			.reversed()).forEach(entry -> sorted.put(entry.getKey(), entry
+				.getValue()));
+		return sorted;
+	}
+
+	/**
+	 * @return the top operations and the share of the compute time of the
+	 *         operation types, one per line
+	 */
+	public synchronized String getSummary(final int count) {
+		final StringBuilder summary = new StringBuilder(String.format(Locale.US,
+			"Top ops of %d profiled tiles (%.1f ms compute per tile):", samples,
+			perTileMillis(computeMicros)));
+		for (final Op op : getTopOps(count)) {
+			summary.append(String.format(Locale.US,
+				"\n  %s (%s): %.2f ms per tile, %.1f%%, %.1f MB", op.getName(), op
+					.getType(), perTileMillis(op.getComputeMicros()), share(op
+						.getComputeMicros()), op.getPeakBytes() / (1024. * 1024.)));
+		}
+		summary.append("\nCompute time per op type:");
+		for (final Map.Entry<String, Long> type : getTypeMicros().entrySet()) {
+			if (share(type.getValue()) < 1) break;
+			summary.append(String.format(Locale.US, " %s %.1f%%", type.getKey(),
+				share(type.getValue())));
+		}
+		return summary.toString();
+	}
+
+	private double perTileMillis(final long micros) {
+		return samples == 0 ? 0 : micros / 1000. / samples;
+	}
+
+	private double share(final long micros) {
+		return computeMicros == 0 ? 0 : 100. * micros / computeMicros;
+	}
+
+}
@@ -0,0 +1,579 @@
+package de.csbdresden.csbdeep.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import de.csbdresden.csbdeep.task.Task;
+import de.csbdresden.csbdeep.task.TaskForce;
+
+/**
+ * Collects timing and throughput metrics of one run: wall and CPU time of the
+ * process, wall time and thread CPU time per task force and task, executed
+ * and skipped tiles with their latencies, voxels, bytes converted between
+ * images and tensors, the peak heap usage sampled during the run and the
+ * native tensor memory accounted by {@link MemoryAccounting}. The metrics can be saved as JSON or
+ * appended to a CSV file, which keeps one row per value, and published via
+ * JMX.
+ */
+public class RunMetrics implements RunMetricsMXBean {
+
+	public static final String JMX_DOMAIN = "de.csbdresden.csbdeep";
+	private static final String CSV_HEADER =
+		"timestamp,version,model,scope,name,metric,value";
+
+	private String model;
+	private final long timestamp;
+	private final long startTime;
+	private final long startCpuTime;
+	private long wallTime;
+	private long cpuTime;
+	private final List<Long> tileLatencies = new ArrayList<>();
+	private long skippedTiles;
+	private long voxels;
+	private long bytesConverted;
+	private long firstTileStart = -1;
+	private long lastTileEnd = -1;
+	private long peakHeap;
+	private long peakTensorBytes;
+	private long liveTensorBytes;
+	private long tensorAllocations;
+	private int unreleasedTensors;
+	private Map<String, Long> imageBytes = Collections.emptyMap();
+	private Map<String, Long> stageHeap = Collections.emptyMap();
+	private final Map<String, Long> taskWallTimes = new LinkedHashMap<>();
+	private final Map<String, Long> taskCpuTimes = new LinkedHashMap<>();
+	private OpProfile opProfile;
+	private final MemoryAccounting memory = new MemoryAccounting(
+		MemoryAccounting.getDefault());
+
+	/**
+	 * Starts measuring. The peak heap is the highest of the samples taken at
+	 * the start and the end of the run and of each stage, the peak usage of the
+	 * heap pools is left alone since it is shared by all runs of the process.
+	 */
+	public RunMetrics(final String model) {
+		this.model = model;
+		memory.sampleHeap();
+		timestamp = System.currentTimeMillis();
+		startTime = System.nanoTime();
+		startCpuTime = getProcessCpuTime();
+	}
+
+	/**
+	 * Records a tile the network was executed on.
+	 *
+	 * @param latency nanoseconds from submitting the tile to its result
+	 * @param tileVoxels number of voxels of the tile
+	 */
+	public synchronized void addTile(final long latency, final long tileVoxels) {
+		final long end = System.nanoTime();
+		if (firstTileStart < 0) firstTileStart = end - latency;
+		lastTileEnd = end;
+		tileLatencies.add(latency);
+		voxels += tileVoxels;
+	}
+
+	/**
+	 * Records a tile whose result was taken from a cache or a tile filter.
+	 */
+	public synchronized void addSkippedTile(final long tileVoxels) {
+		final long end = System.nanoTime();
+		if (firstTileStart < 0) firstTileStart = end;
+		lastTileEnd = end;
+		skippedTiles++;
+		voxels += tileVoxels;
+	}
+
+	public synchronized void addBytesConverted(final long bytes) {
+		bytesConverted += bytes;
+	}
+
+	/**
+	 * Sets the profile of the model operations saved with the metrics.
+	 */
+	public synchronized void setOpProfile(final OpProfile opProfile) {
+		this.opProfile = opProfile;
+	}
+
+	public synchronized OpProfile getOpProfile() {
+		return opProfile;
+	}
+
+	/**
+	 * @return the accounting of the tensors and images of this run
+	 */
+	public MemoryAccounting getMemoryAccounting() {
+		return memory;
+	}
+
+	/**
+	 * Stops measuring.
+	 *
+	 * @param model name of the model used in the run
+	 * @param taskForces task forces whose times since their last reset are
+	 *          recorded
+	 */
+	public synchronized void finish(final String model,
+		final List<TaskForce> taskForces)
+	{
+		this.model = model;
+		wallTime = System.nanoTime() - startTime;
+		cpuTime = getProcessCpuTime() - startCpuTime;
+		for (final TaskForce taskForce : taskForces) {
+			addTask(taskForce.getTitle(), taskForce);
+			for (final Task task : taskForce.getTasks()) {
+				addTask(taskForce.getTitle() + "/" + task.getTitle(), task);
+			}
+		}
+		memory.sampleHeap();
+		peakHeap = memory.getPeakHeap();
+		peakTensorBytes = memory.getPeakBytes();
+		liveTensorBytes = memory.getLiveBytes();
+		tensorAllocations = memory.getAllocations();
+		unreleasedTensors = memory.getUnreleased().size();
+		imageBytes = memory.getImageBytes();
+		stageHeap = memory.getStageHeap();
+	}
+
+	private void addTask(final String name, final Task task) {
+		taskWallTimes.put(name, task.getWallTime());
+		taskCpuTimes.put(name, task.getCpuTime());
+	}
+
+	@Override
+	public synchronized String getModel() {
+		return model;
+	}
+
+	@Override
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public synchronized double getWallTime() {
+		return toMillis(wallTime);
+	}
+
+	@Override
+	public synchronized double getCpuTime() {
+		return toMillis(cpuTime);
+	}
+
+	@Override
+	public synchronized long getTiles() {
+		return tileLatencies.size();
+	}
+
+	@Override
+	public synchronized long getSkippedTiles() {
+		return skippedTiles;
+	}
+
+	@Override
+	public synchronized long getVoxels() {
+		return voxels;
+	}
+
+	/**
+	 * @return executed and skipped tiles per second of the time from the start
+	 *         of the first to the end of the last tile
+	 */
+	@Override
+	public synchronized double getTilesPerSecond() {
+		return perSecond(tileLatencies.size() + skippedTiles);
+	}
+
+	@Override
+	public synchronized double getVoxelsPerSecond() {
+		return perSecond(voxels);
+	}
+
+	private double perSecond(final long count) {
+		final long duration = lastTileEnd - firstTileStart;
+		return duration > 0 ? count * 1e9 / duration : 0;
+	}
+
+	@Override
+	public double getTileLatencyP50() {
+		return getTileLatency(50);
+	}
+
+	@Override
+	public double getTileLatencyP90() {
+		return getTileLatency(90);
+	}
+
+	@Override
+	public double getTileLatencyP99() {
+		return getTileLatency(99);
+	}
+
+	@Override
+	public double getTileLatencyMax() {
+		return getTileLatency(100);
+	}
+
+	/**
+	 * @return the latency in milliseconds which the given percentage of the
+	 *         executed tiles did not exceed (nearest rank)
+	 */
+	public synchronized double getTileLatency(final double percentile) {
+		if (tileLatencies.isEmpty()) return 0;
+		final List<Long> sorted = new ArrayList<>(tileLatencies);
+		Collections.sort(sorted);
+		final int rank = (int) Math.ceil(percentile / 100 * sorted.size());
+		return toMillis(sorted.get(Math.max(0, Math.min(rank, sorted.size()) -
+			1)));
+	}
+
+	@Override
+	public synchronized long getBytesConverted() {
+		return bytesConverted;
+	}
+
+	@Override
+	public synchronized long getPeakHeap() {
+		return peakHeap;
+	}
+
+	@Override
+	public synchronized long getPeakTensorBytes() {
+		return peakTensorBytes;
+	}
+
+	@Override
+	public synchronized long getLiveTensorBytes() {
+		return liveTensorBytes;
+	}
+
+	@Override
+	public synchronized long getTensorAllocations() {
+		return tensorAllocations;
+	}
+
+	@Override
+	public synchronized int getUnreleasedTensors() {
+		return unreleasedTensors;
+	}
+
+	@Override
+	public synchronized Map<String, Long> getImageBytes() {
+		return imageBytes;
+	}
+
+	@Override
+	public synchronized Map<String, Long> getStageHeap() {
+		return stageHeap;
+	}
+
+	@Override
+	public synchronized Map<String, Double> getTaskWallTimes() {
+		return toMillis(taskWallTimes);
+	}
+
+	@Override
+	public synchronized Map<String, Double> getTaskCpuTimes() {
+		return toMillis(taskCpuTimes);
+	}
+
+	public String getSummary() {
+		return String.format(Locale.US,
+			"Run took %.0f ms (CPU %.0f ms), %d tiles (%d skipped), %.2f tiles/s, " +
+				"%.3g voxels/s, tile latency p50 %.1f ms, p99 %.1f ms, peak heap " +
+				"%d MB, peak tensors %d MB", getWallTime(), getCpuTime(), getTiles() +
+					getSkippedTiles(), getSkippedTiles(), getTilesPerSecond(),
+			getVoxelsPerSecond(), getTileLatencyP50(), getTileLatencyP99(),
+			getPeakHeap() / (1024 * 1024), getPeakTensorBytes() / (1024 * 1024));
+	}
+
+	/**
+	 * Writes the metrics to the file. Files ending with {@code .csv} get the
+	 * metrics appended, other files are overwritten with a JSON document.
+	 */
+	public void save(final File file) throws IOException {
+		final File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null) Files.createDirectories(dir.toPath());
+		if (file.getName().toLowerCase().endsWith(".csv")) {
+			final boolean header = !file.exists() || file.length() == 0;
+			try (Writer writer = Files.newBufferedWriter(file.toPath(),
+				StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND))
+			{
+				if (header) writer.write(CSV_HEADER + "\n");
+				writer.write(toCsv());
+			}
+		}
+		else {
+			Files.write(file.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	public synchronized String toJson() {
+		final JsonObject json = new JsonObject();
+		json.addProperty("timestamp", Instant.ofEpochMilli(timestamp).toString());
+		json.addProperty("model", model);
+		json.addProperty("version", getVersion());
+		final JsonObject environment = new JsonObject();
+		for (final Map.Entry<String, String> entry : getEnvironment().entrySet()) {
+			environment.addProperty(entry.getKey(), entry.getValue());
+		}
+		json.add("environment", environment);
+		json.addProperty("wallTime", getWallTime());
+		json.addProperty("cpuTime", getCpuTime());
+		final JsonObject tiles = new JsonObject();
+		tiles.addProperty("executed", getTiles());
+		tiles.addProperty("skipped", getSkippedTiles());
+		tiles.addProperty("perSecond", getTilesPerSecond());
+		final JsonObject latency = new JsonObject();
+		latency.addProperty("p50", getTileLatencyP50());
+		latency.addProperty("p90", getTileLatencyP90());
+		latency.addProperty("p99", getTileLatencyP99());
+		latency.addProperty("max", getTileLatencyMax());
+		tiles.add("latency", latency);
+		json.add("tiles", tiles);
+		final JsonObject voxelStats = new JsonObject();
+		voxelStats.addProperty("count", voxels);
+		voxelStats.addProperty("perSecond", getVoxelsPerSecond());
+		json.add("voxels", voxelStats);
+		json.addProperty("bytesConverted", bytesConverted);
+		json.addProperty("peakHeap", peakHeap);
+		final JsonObject memory = new JsonObject();
+		memory.addProperty("peakTensorBytes", peakTensorBytes);
+		memory.addProperty("liveTensorBytes", liveTensorBytes);
+		memory.addProperty("tensorAllocations", tensorAllocations);
+		memory.addProperty("unreleasedTensors", unreleasedTensors);
+		final JsonObject images = new JsonObject();
+		for (final Map.Entry<String, Long> entry : imageBytes.entrySet()) {
+			images.addProperty(entry.getKey(), entry.getValue());
+		}
+		memory.add("imageBytes", images);
+		final JsonObject heap = new JsonObject();
+		for (final Map.Entry<String, Long> entry : stageHeap.entrySet()) {
+			heap.addProperty(entry.getKey(), entry.getValue());
+		}
+		memory.add("stageHeap", heap);
+		json.add("memory", memory);
+		final JsonArray tasks = new JsonArray();
+		for (final String name : taskWallTimes.keySet()) {
+			final JsonObject task = new JsonObject();
+			task.addProperty("name", name);
+			task.addProperty("wallTime", toMillis(taskWallTimes.get(name)));
+			task.addProperty("cpuTime", toMillis(taskCpuTimes.get(name)));
+			tasks.add(task);
+		}
+		json.add("tasks", tasks);
+		if (opProfile != null && opProfile.getSamples() > 0) {
+			json.add("ops", toJson(opProfile));
+		}
+		return new GsonBuilder().setPrettyPrinting().create().toJson(json);
+	}
+
+	private static JsonObject toJson(final OpProfile opProfile) {
+		final JsonObject json = new JsonObject();
+		json.addProperty("profiledTiles", opProfile.getSamples());
+		json.addProperty("computeTime", opProfile.getComputeMicros() / 1000.);
+		final JsonArray top = new JsonArray();
+		for (final OpProfile.Op op : opProfile.getTopOps(
+			OpProfile.DEFAULT_TOP_OPS))
+		{
+			final JsonObject opJson = new JsonObject();
+			opJson.addProperty("name", op.getName());
+			opJson.addProperty("type", op.getType());
+			opJson.addProperty("count", op.getCount());
+			opJson.addProperty("computeTime", op.getComputeMicros() / 1000.);
+			opJson.addProperty("peakBytes", op.getPeakBytes());
+			top.add(opJson);
+		}
+		json.add("top", top);
+		final JsonObject types = new JsonObject();
+		for (final Map.Entry<String, Long> type : opProfile.getTypeMicros()
+			.entrySet())
+		{
+			types.addProperty(type.getKey(), type.getValue() / 1000.);
+		}
+		json.add("computeTimePerType", types);
+		return json;
+	}
+
+	/**
+	 * @return one line per value, without header
+	 */
+	public synchronized String toCsv() {
+		final StringBuilder csv = new StringBuilder();
+		for (final Map.Entry<String, String> entry : getEnvironment().entrySet()) {
+			appendCsv(csv, "environment", entry.getKey(), "value", entry
+				.getValue());
+		}
+		appendCsv(csv, "run", "run", "wallTime", getWallTime());
+		appendCsv(csv, "run", "run", "cpuTime", getCpuTime());
+		appendCsv(csv, "run", "tiles", "executed", getTiles());
+		appendCsv(csv, "run", "tiles", "skipped", getSkippedTiles());
+		appendCsv(csv, "run", "tiles", "perSecond", getTilesPerSecond());
+		appendCsv(csv, "run", "tiles", "latencyP50", getTileLatencyP50());
+		appendCsv(csv, "run", "tiles", "latencyP90", getTileLatencyP90());
+		appendCsv(csv, "run", "tiles", "latencyP99", getTileLatencyP99());
+		appendCsv(csv, "run", "tiles", "latencyMax", getTileLatencyMax());
+		appendCsv(csv, "run", "voxels", "count", voxels);
+		appendCsv(csv, "run", "voxels", "perSecond", getVoxelsPerSecond());
+		appendCsv(csv, "run", "run", "bytesConverted", bytesConverted);
+		appendCsv(csv, "run", "run", "peakHeap", peakHeap);
+		appendCsv(csv, "memory", "tensors", "peakBytes", peakTensorBytes);
+		appendCsv(csv, "memory", "tensors", "liveBytes", liveTensorBytes);
+		appendCsv(csv, "memory", "tensors", "allocations", tensorAllocations);
+		appendCsv(csv, "memory", "tensors", "unreleased", unreleasedTensors);
+		for (final Map.Entry<String, Long> entry : imageBytes.entrySet()) {
+			appendCsv(csv, "memory", entry.getKey(), "imageBytes", entry
+				.getValue());
+		}
+		for (final Map.Entry<String, Long> entry : stageHeap.entrySet()) {
+			appendCsv(csv, "memory", entry.getKey(), "heap", entry.getValue());
+		}
+		for (final String name : taskWallTimes.keySet()) {
+			final String scope = name.contains("/") ? "task" : "taskforce";
+			appendCsv(csv, scope, name, "wallTime", toMillis(taskWallTimes.get(
+				name)));
+			appendCsv(csv, scope, name, "cpuTime", toMillis(taskCpuTimes.get(
+				name)));
+		}
+		if (opProfile != null && opProfile.getSamples() > 0) {
+			for (final OpProfile.Op op : opProfile.getTopOps(
+				OpProfile.DEFAULT_TOP_OPS))
+			{
+				appendCsv(csv, "op", op.getName(), "computeTime", op
+					.getComputeMicros() / 1000.);
+				appendCsv(csv, "op", op.getName(), "peakBytes", op.getPeakBytes());
+			}
+			for (final Map.Entry<String, Long> type : opProfile.getTypeMicros()
+				.entrySet())
+			{
+				appendCsv(csv, "optype", type.getKey(), "computeTime", type
+					.getValue() / 1000.);
+			}
+		}
+		return csv.toString();
+	}
+
+	private void appendCsv(final StringBuilder csv, final String scope,
+		final String name, final String metric, final Object value)
+	{
+		csv.append(Instant.ofEpochMilli(timestamp)).append(',').append(quote(
+			getVersion())).append(',').append(quote(model)).append(',').append(
+				scope).append(',').append(quote(name)).append(',').append(metric)
+			.append(',').append(quote(String.valueOf(value))).append('\n');
+	}
+
+	private static String quote(final String value) {
+		if (value == null) return "";
+		if (value.contains(",") || value.contains("\"")) {
+			return "\"" + value.replace("\"", "\"\"") + "\"";
+		}
+		return value;
+	}
+
+	/**
+	 * Registers the metrics as MXBean named
+	 * {@code de.csbdresden.csbdeep:type=RunMetrics,name=<name>}, replacing the
+	 * metrics of a previous run.
+	 *
+	 * @return false if the metrics could not be registered
+	 */
+	public boolean publish(final String name) {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			final ObjectName objectName = new ObjectName(JMX_DOMAIN +
+				":type=RunMetrics,name=" + ObjectName.quote(name));
+			synchronized (RunMetrics.class) {
+				if (server.isRegistered(objectName)) {
+					server.unregisterMBean(objectName);
+				}
+				server.registerMBean(this, objectName);
+			}
+			return true;
+		}
+		catch (final JMException e) {
+			return false;
+		}
+	}
+
+	private static String getVersion() {
+		final String version = RunMetrics.class.getPackage()
+			.getImplementationVersion();
+		return version != null ? version : "unknown";
+	}
+
+	private static Map<String, String> getEnvironment() {
+		final Map<String, String> environment = new LinkedHashMap<>();
+		environment.put("java", System.getProperty("java.version"));
+		environment.put("os", System.getProperty("os.name") + " " + System
+			.getProperty("os.version"));
+		environment.put("arch", System.getProperty("os.arch"));
+		environment.put("cpus", String.valueOf(Runtime.getRuntime()
+			.availableProcessors()));
+		environment.put("maxHeap", String.valueOf(Runtime.getRuntime()
+			.maxMemory()));
+		return environment;
+	}
+
+	/**
+	 * @return CPU time of the thread in nanoseconds or {@code -1} if not
+	 *         available, e.g. if the thread terminated
+	 */
+	public static long getThreadCpuTime(final long threadId) {
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!threads.isThreadCpuTimeSupported() || !threads
+			.isThreadCpuTimeEnabled()) return -1;
+		return threads.getThreadCpuTime(threadId);
+	}
+
+	/**
+	 * @return CPU time of the process in nanoseconds including native threads,
+	 *         e.g. of TensorFlow, or of the current thread if not available
+	 */
+	public static long getProcessCpuTime() {
+		final OperatingSystemMXBean os = ManagementFactory
+			.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean) os)
+				.getProcessCpuTime();
+		}
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		return threads.isCurrentThreadCpuTimeSupported() ? threads
+			.getCurrentThreadCpuTime() : 0;
+	}
+
+	private static double toMillis(final long nanos) {
+		return nanos / 1e6;
+	}
+
+	private static Map<String, Double> toMillis(final Map<String, Long> nanos) {
+		final Map<String, Double> millis = new LinkedHashMap<>();
+		for (final Map.Entry<String, Long> entry : nanos.entrySet()) {
+			millis.put(entry.getKey(), toMillis(entry.getValue()));
+		}
+		return millis;
+	}
+
+}
@@ -0,0 +1,56 @@
+package de.csbdresden.csbdeep.metrics;
+
+import java.util.Map;
+
+/**
+ * Metrics of the last run of a command, published via JMX. Times are given
+ * in milliseconds, sizes in bytes.
+ */
+public interface RunMetricsMXBean {
+
+	String getModel();
+
+	long getTimestamp();
+
+	double getWallTime();
+
+	double getCpuTime();
+
+	long getTiles();
+
+	long getSkippedTiles();
+
+	long getVoxels();
+
+	double getTilesPerSecond();
+
+	double getVoxelsPerSecond();
+
+	double getTileLatencyP50();
+
+	double getTileLatencyP90();
+
+	double getTileLatencyP99();
+
+	double getTileLatencyMax();
+
+	long getBytesConverted();
+
+	long getPeakHeap();
+
+	long getPeakTensorBytes();
+
+	long getLiveTensorBytes();
+
+	long getTensorAllocations();
+
+	int getUnreleasedTensors();
+
+	Map<String, Long> getImageBytes();
+
+	Map<String, Long> getStageHeap();
+
+	Map<String, Double> getTaskWallTimes();
+
+	Map<String, Double> getTaskCpuTimes();
+}
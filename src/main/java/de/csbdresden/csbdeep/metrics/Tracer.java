@@ -0,0 +1,266 @@
+package de.csbdresden.csbdeep.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Records spans of the tile pipeline, e.g. tile extraction, tensor fill,
+ * {@code Session.run}, tensor decode, padding removal and stitching, each
+ * tagged with the tile index and shape.
+ * <p>
+ * Spans are emitted as Java Flight Recorder events named
+ * {@value #JFR_EVENT_NAME} if the runtime provides {@code jdk.jfr}. The event
+ * type is created at runtime, so the plugin still runs on Java versions
+ * without JFR. While a recording was started with {@link #startRecording()},
+ * the spans are collected as well and can be written as Chrome
+ * {@code trace_event} JSON file, to be opened with {@code chrome://tracing}
+ * or Perfetto. The tracer is shared by all runs of the process, only one of
+ * them can record a trace at a time.
+ */
+public class Tracer {
+
+	public static final String JFR_EVENT_NAME = "de.csbdresden.csbdeep.Pipeline";
+	public static final long NO_TILE = -1;
+
+	private static final JfrEvents jfr = JfrEvents.create();
+	private static final Span NO_SPAN = new Span(null, NO_TILE, null, null);
+
+	private static final List<Span> recorded = new ArrayList<>();
+	private static final Map<Long, String> threadNames = new HashMap<>();
+	private static volatile boolean recording = false;
+	private static long recordingStart;
+
+	private Tracer() {}
+
+	/**
+	 * A span of the pipeline, ended by {@link #close()}.
+	 */
+	public static class Span implements AutoCloseable {
+
+		private final String stage;
+		private final long tile;
+		private long[] shape;
+		private final Object jfrEvent;
+		private final long start = System.nanoTime();
+		private final long thread = Thread.currentThread().getId();
+		private long end;
+
+		private Span(final String stage, final long tile, final long[] shape,
+			final Object jfrEvent)
+		{
+			this.stage = stage;
+			this.tile = tile;
+			this.shape = shape;
+			this.jfrEvent = jfrEvent;
+		}
+
+		/**
+		 * Sets the shape if it is only known at the end of the span.
+		 */
+		public void setShape(final long[] shape) {
+			this.shape = shape;
+		}
+
+		@Override
+		public void close() {
+			if (stage == null) return;
+			end = System.nanoTime();
+			if (jfrEvent != null) jfr.commit(jfrEvent, stage, tile, shape);
+			if (recording) record(this);
+		}
+	}
+
+	/**
+	 * @return true if spans are recorded by JFR or for a Chrome trace
+	 */
+	public static boolean isEnabled() {
+		return recording || (jfr != null && jfr.isEnabled());
+	}
+
+	/**
+	 * Starts a span, use with try-with-resources.
+	 *
+	 * @param stage name of the pipeline stage
+	 * @param tile index of the tile or {@link #NO_TILE}
+	 * @param shape shape of the tile or tensor, may be {@code null}
+	 */
+	public static Span begin(final String stage, final long tile,
+		final long[] shape)
+	{
+		if (!isEnabled()) return NO_SPAN;
+		final Object jfrEvent = jfr != null && jfr.isEnabled() ? jfr.begin()
+			: null;
+		return new Span(stage, tile, shape, jfrEvent);
+	}
+
+	/**
+	 * Starts collecting spans for a Chrome trace unless another recording is
+	 * active, spans collected before are discarded.
+	 *
+	 * @return false if another recording is active, it is not affected
+	 */
+	public static synchronized boolean startRecording() {
+		if (recording) return false;
+		recorded.clear();
+		threadNames.clear();
+		recordingStart = System.nanoTime();
+		recording = true;
+		return true;
+	}
+
+	/**
+	 * Stops collecting spans and writes them as Chrome trace to the file. Only
+	 * to be called after {@link #startRecording()} returned true.
+	 */
+	public static void stopRecording(final File file) throws IOException {
+		final List<Span> spans;
+		final Map<Long, String> names;
+		final long start;
+		synchronized (Tracer.class) {
+			recording = false;
+			spans = new ArrayList<>(recorded);
+			names = new HashMap<>(threadNames);
+			start = recordingStart;
+			recorded.clear();
+			threadNames.clear();
+		}
+		final File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null) Files.createDirectories(dir.toPath());
+		try (Writer writer = Files.newBufferedWriter(file.toPath(),
+			StandardCharsets.UTF_8); JsonWriter json = new JsonWriter(writer))
+		{
+			json.beginObject().name("traceEvents").beginArray();
+			for (final Map.Entry<Long, String> thread : names.entrySet()) {
+				json.beginObject().name("name").value("thread_name").name("ph").value(
+					"M").name("pid").value(1).name("tid").value(thread.getKey()).name(
+						"args").beginObject().name("name").value(thread.getValue())
+					.endObject().endObject();
+			}
+			for (final Span span : spans) {
+				json.beginObject().name("name").value(span.stage).name("cat").value(
+					"csbdeep").name("ph").value("X").name("ts").value((span.start -
+						start) / 1000.0).name("dur").value((span.end - span.start) /
+							1000.0).name("pid").value(1).name("tid").value(span.thread);
+				json.name("args").beginObject();
+				if (span.tile != NO_TILE) json.name("tile").value(span.tile);
+				if (span.shape != null) json.name("shape").value(Arrays.toString(
+					span.shape));
+				json.endObject().endObject();
+			}
+			json.endArray().name("displayTimeUnit").value("ms").endObject();
+		}
+	}
+
+	private static synchronized void record(final Span span) {
+		if (!recording) return;
+		recorded.add(span);
+		threadNames.putIfAbsent(span.thread, Thread.currentThread().getName());
+	}
+
+	/**
+	 * Creates and commits JFR events via reflection.
+	 */
+	private static class JfrEvents {
+
+		private final Object eventType;
+		private final Object factory;
+		private final Method isEnabled;
+		private final Method newEvent;
+		private final Method begin;
+		private final Method end;
+		private final Method set;
+		private final Method commit;
+
+		private JfrEvents(final Object factory) throws ReflectiveOperationException {
+			this.factory = factory;
+			final Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+			final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+			eventType = factoryClass.getMethod("getEventType").invoke(factory);
+			isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+			newEvent = factoryClass.getMethod("newEvent");
+			begin = eventClass.getMethod("begin");
+			end = eventClass.getMethod("end");
+			set = eventClass.getMethod("set", int.class, Object.class);
+			commit = eventClass.getMethod("commit");
+		}
+
+		static JfrEvents create() {
+			try {
+				final Class<?> annotationClass = Class.forName(
+					"jdk.jfr.AnnotationElement");
+				final Constructor<?> annotation = annotationClass.getConstructor(
+					Class.class, Object.class);
+				final List<Object> annotations = new ArrayList<>();
+				annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Name"),
+					JFR_EVENT_NAME));
+				annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Label"),
+					"CSBDeep Pipeline"));
+				annotations.add(annotation.newInstance(Class.forName(
+					"jdk.jfr.Category"), new String[] { "CSBDeep" }));
+				final Constructor<?> field = Class.forName("jdk.jfr.ValueDescriptor")
+					.getConstructor(Class.class, String.class);
+				final List<Object> fields = new ArrayList<>();
+				fields.add(field.newInstance(String.class, "stage"));
+				fields.add(field.newInstance(long.class, "tile"));
+				fields.add(field.newInstance(String.class, "shape"));
+				final Object factory = Class.forName("jdk.jfr.EventFactory").getMethod(
+					"create", List.class, List.class).invoke(null, annotations, fields);
+				return new JfrEvents(factory);
+			}
+			catch (final ReflectiveOperationException | LinkageError
+					| RuntimeException e)
+			{
+				// no JFR in this runtime
+				return null;
+			}
+		}
+
+		boolean isEnabled() {
+			try {
+				return (Boolean) isEnabled.invoke(eventType);
+			}
+			catch (final ReflectiveOperationException e) {
+				return false;
+			}
+		}
+
+		Object begin() {
+			try {
+				final Object event = newEvent.invoke(factory);
+				begin.invoke(event);
+				return event;
+			}
+			catch (final ReflectiveOperationException e) {
+				return null;
+			}
+		}
+
+		void commit(final Object event, final String stage, final long tile,
+			final long[] shape)
+		{
+			try {
+				end.invoke(event);
+				set.invoke(event, 0, stage);
+				set.invoke(event, 1, tile);
+				set.invoke(event, 2, shape != null ? Arrays.toString(shape) : null);
+				commit.invoke(event);
+			}
+			catch (final ReflectiveOperationException e) {
+				// the span is lost
+			}
+		}
+	}
+
+}
@@ -2,13 +2,17 @@
 package de.csbdresden.csbdeep.network;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 
 import de.csbdresden.csbdeep.network.model.Network;
 import de.csbdresden.csbdeep.task.DefaultTask;
+import de.csbdresden.csbdeep.util.ModelDownloader;
 import net.imagej.Dataset;
 
 public class DefaultModelLoader extends DefaultTask implements ModelLoader {
 
+	private Dataset loadedInput;
+
 	@Override
 	public void run(final String modelName, final Network network,
 		final String modelFileUrl, final Dataset input) throws FileNotFoundException {
@@ -27,6 +31,16 @@ public class DefaultModelLoader extends DefaultTask implements ModelLoader {
 				return;
 			}
 			network.preprocess();
+			loadedInput = input;
+		}
+		else if (loadedInput != null && loadedInput != input) {
+			// the model stays loaded, only the nodes depend on the input and are
+			// reused from a previous input of the same shape if possible
+			if (!network.applyExecutionPlan(input)) {
+				loadNodes(network, input);
+				network.preprocess();
+			}
+			loadedInput = input;
 		}
 
 		setFinished();
@@ -38,12 +52,56 @@ public class DefaultModelLoader extends DefaultTask implements ModelLoader {
 
 		if(modelFileUrl.isEmpty()) return;
 
+		if (ModelDownloader.isDownloadable(modelFileUrl)) {
+			awaitDownload(modelFileUrl);
+		}
 		boolean loaded = network.loadModel(modelFileUrl, modelName);
 		if(!loaded) return;
+		loadNodes(network, input);
+
+	}
+
+	/**
+	 * Waits for the download of the model and reports its progress.
+	 */
+	private void awaitDownload(final String url) {
+		final ModelDownloader.Download download = ModelDownloader.getDefault()
+			.getDownload(url);
+		if (download.isDone()) return;
+		log("Downloading model from " + url);
+		setNumSteps(100);
+		final int[] reported = { -1 };
+		final ModelDownloader.ProgressListener listener = (bytes, totalBytes,
+			bytesPerSecond) -> {
+			final int percent = totalBytes > 0 ? (int) (100 * bytes / totalBytes)
+				: 0;
+			setCurrentStep(percent);
+			if (percent / 10 != reported[0]) {
+				reported[0] = percent / 10;
+				log(String.format("Downloaded %.1f MB%s (%.1f MB/s)", bytes / 1e6,
+					totalBytes > 0 ? String.format(" of %.1f MB", totalBytes / 1e6) : "",
+					bytesPerSecond / 1e6));
+			}
+		};
+		download.addListener(listener);
+		try {
+			download.get();
+		}
+		catch (final IOException e) {
+			log("Download failed, loading the model from the URL: " + e
+				.getMessage());
+		}
+		finally {
+			download.removeListener(listener);
+			setNumSteps(1);
+			setCurrentStep(0);
+		}
+	}
+
+	protected void loadNodes(final Network network, final Dataset input) {
 		network.loadInputNode(input);
 		network.loadOutputNode(input);
 		network.initMapping();
-
 	}
 
 }
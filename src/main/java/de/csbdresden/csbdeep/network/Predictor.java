@@ -0,0 +1,400 @@
+package de.csbdresden.csbdeep.network;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import org.scijava.Context;
+import org.scijava.Disposable;
+import org.scijava.log.LogService;
+import org.scijava.plugin.Parameter;
+
+import de.csbdresden.csbdeep.commands.GenericNetwork;
+import de.csbdresden.csbdeep.io.DatasetOutputProcessor;
+import de.csbdresden.csbdeep.io.DefaultInputProcessor;
+import de.csbdresden.csbdeep.network.model.ExecutionPlan;
+import de.csbdresden.csbdeep.network.model.Network;
+import de.csbdresden.csbdeep.network.model.NetworkSettings;
+import de.csbdresden.csbdeep.network.model.tensorflow.TensorFlowNetwork;
+import de.csbdresden.csbdeep.normalize.PercentileNormalizer;
+import de.csbdresden.csbdeep.task.DefaultTask;
+import de.csbdresden.csbdeep.task.LogTaskManager;
+import de.csbdresden.csbdeep.task.TaskManager;
+import de.csbdresden.csbdeep.tiling.AdvancedTiledView;
+import de.csbdresden.csbdeep.tiling.DefaultInputTiler;
+import de.csbdresden.csbdeep.tiling.DefaultOutputTiler;
+import de.csbdresden.csbdeep.tiling.DefaultTiling;
+import de.csbdresden.csbdeep.util.DatasetHelper;
+import de.csbdresden.csbdeep.util.IOHelper;
+import de.csbdresden.csbdeep.util.ModelSourceIndex;
+import net.imagej.Dataset;
+import net.imagej.DatasetService;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imagej.ops.OpService;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Runs a model on images without the command lifecycle of
+ * {@link de.csbdresden.csbdeep.commands.GenericCoreNetwork}. The model is
+ * loaded once when the predictor is built, the settings cannot change
+ * afterwards. {@link #predict(Dataset)} can be called from many threads at the
+ * same time, each call uses its own network instance sharing the loaded
+ * model.
+ *
+ * <pre>
+ * Predictor predictor = new Predictor.Builder().setModelFile(file)
+ * 	.setNTiles(4).build(context);
+ * Dataset output = predictor.predict(input);
+ * predictor.dispose();
+ * </pre>
+ */
+public class Predictor implements Disposable {
+
+	@Parameter
+	private DatasetService datasetService;
+
+	@Parameter
+	private OpService opService;
+
+	@Parameter
+	private LogService log;
+
+	private final boolean normalizeInput;
+	private final float percentileBottom;
+	private final float percentileTop;
+	private final boolean clip;
+	private final int nTiles;
+	private final int blockMultiple;
+	private final int overlap;
+	private final int batchSize;
+	private final boolean useModelTilingSettings;
+
+	private static final int MAX_TILES = 1 << 16;
+
+	private final TaskManager taskManager;
+	private final Network<FloatType> model;
+
+	private Predictor(final Builder builder, final Context context)
+		throws FileNotFoundException
+	{
+		context.inject(this);
+		normalizeInput = builder.normalizeInput;
+		percentileBottom = builder.percentileBottom;
+		percentileTop = builder.percentileTop;
+		clip = builder.clip;
+		nTiles = builder.nTiles;
+		blockMultiple = builder.blockMultiple;
+		overlap = builder.overlap;
+		batchSize = builder.batchSize;
+		useModelTilingSettings = builder.useModelTilingSettings;
+		taskManager = new LogTaskManager(log);
+
+		final DefaultTask loader = new DefaultTask();
+		taskManager.add(loader);
+		model = new TensorFlowNetwork<>(loader);
+		context.inject(model);
+		model.loadLibrary();
+		if (!model.libraryLoaded()) {
+			throw new IllegalStateException("Could not load TensorFlow");
+		}
+		final String modelFileUrl = builder.modelFile != null ? builder.modelFile
+			.getAbsolutePath() : builder.modelUrl;
+		if (!model.loadModel(modelFileUrl, builder.getCacheName())) {
+			throw new IllegalArgumentException("Could not load model " +
+				modelFileUrl);
+		}
+	}
+
+	/**
+	 * Runs the model on the input, tiled and normalized according to the
+	 * settings of the predictor. This method is thread safe.
+	 *
+	 * @return the output of the model
+	 * @throws IncompatibleTypeException if the input does not fit the model
+	 * @throws ExecutionException if the execution of the model failed
+	 */
+	public Dataset predict(final Dataset input) throws ExecutionException {
+		final ModelExecutor<FloatType> executor = new DefaultModelExecutor<>();
+		taskManager.add(executor);
+		final Network<FloatType> network = model.createSharedInstance(executor);
+		try {
+			DatasetHelper.assignUnknownDimensions(input);
+			if (!network.applyExecutionPlan(input)) {
+				network.loadInputNode(input);
+				network.loadOutputNode(input);
+				network.initMapping();
+				network.preprocess();
+			}
+			final DefaultInputValidator validator = new DefaultInputValidator();
+			taskManager.add(validator);
+			validator.run(input, network);
+
+			final DefaultInputProcessor<?> inputProcessor =
+				new DefaultInputProcessor<>();
+			taskManager.add(inputProcessor);
+			final List<RandomAccessibleInterval<FloatType>> processedInput =
+				inputProcessor.run(normalize(input), network);
+
+			int tiles = nTiles;
+			while (true) {
+				try {
+					return run(network, executor, processedInput, tiles);
+				}
+				catch (final OutOfMemoryError e) {
+					// try again with smaller tiles, like the commands do
+					if (tiles >= MAX_TILES || !network.getInputNode()
+						.getTilingAllowed()) throw e;
+					tiles *= 2;
+					taskManager.logWarning("Out of memory exception occurred. " +
+						"Trying with " + tiles + " tiles...");
+				}
+			}
+		}
+		finally {
+			network.dispose();
+		}
+	}
+
+	/**
+	 * Runs the model on an image with the given axes, see
+	 * {@link #predict(Dataset)}.
+	 *
+	 * @param axes the axes of the input, X, Y, Z, channel and time if omitted
+	 * @return the output of the model, axes as in
+	 *         {@link #getOutputAxes(Dataset)}
+	 */
+	public <T extends RealType<T>> RandomAccessibleInterval<FloatType> predict(
+		final RandomAccessibleInterval<T> input, AxisType... axes)
+		throws ExecutionException
+	{
+		if (axes.length == 0) axes = defaultAxes(input.numDimensions());
+		final Dataset dataset = datasetService.create(input);
+		for (int i = 0; i < axes.length; i++) {
+			dataset.axis(i).setType(axes[i]);
+		}
+		return (RandomAccessibleInterval<FloatType>) (RandomAccessibleInterval) predict(
+			dataset).getImgPlus();
+	}
+
+	/**
+	 * @return the axes of an output returned by
+	 *         {@link #predict(RandomAccessibleInterval, AxisType...)}
+	 */
+	public static AxisType[] getOutputAxes(final Dataset output) {
+		final AxisType[] axes = new AxisType[output.numDimensions()];
+		for (int i = 0; i < axes.length; i++) {
+			axes[i] = output.axis(i).type();
+		}
+		return axes;
+	}
+
+	private static AxisType[] defaultAxes(final int numDimensions) {
+		final AxisType[] defaults = { Axes.X, Axes.Y, Axes.Z, Axes.CHANNEL,
+			Axes.TIME };
+		if (numDimensions > defaults.length) {
+			throw new IllegalArgumentException("Please provide the axes of the input");
+		}
+		final AxisType[] axes = new AxisType[numDimensions];
+		System.arraycopy(defaults, 0, axes, 0, numDimensions);
+		return axes;
+	}
+
+	private Dataset normalize(final Dataset input) {
+		if (!normalizeInput) return input;
+		// the normalizer stores the percentiles of the current image
+		final PercentileNormalizer<?> normalizer = new PercentileNormalizer<>();
+		normalizer.setup(new float[] { percentileBottom, percentileTop },
+			new float[] { 0, 1 }, clip);
+		return normalizer.normalize(input, opService, datasetService);
+	}
+
+	private Dataset run(final Network<FloatType> network,
+		final ModelExecutor<FloatType> executor,
+		final List<RandomAccessibleInterval<FloatType>> input, final int tiles)
+		throws ExecutionException
+	{
+		final DefaultTiling<FloatType> tiling = createTiling(network, tiles);
+		// the plan is stored by the input processor when dropping singletons,
+		// without a plan the axes of the nodes are used like in the commands
+		final ExecutionPlan plan = network.getExecutionPlan();
+		final AxisType[] inputAxes = plan != null ? plan.getInputAxes() : network
+			.getInputNode().getFinalAxesArray();
+		final List<AdvancedTiledView<FloatType>> tiledInput;
+		if (network.getInputNode().getTilingAllowed()) {
+			final DefaultInputTiler<FloatType> inputTiler = new DefaultInputTiler<>();
+			taskManager.add(inputTiler);
+			tiledInput = inputTiler.run(input, inputAxes, tiling, plan != null ? plan
+				.getTilingActions() : network.getInputNode().getTilingActions());
+		}
+		else {
+			final RandomAccessibleInterval<FloatType> image = input.get(0);
+			final long[] blockSize = new long[image.numDimensions()];
+			image.dimensions(blockSize);
+			tiledInput = Collections.singletonList(new AdvancedTiledView<>(image,
+				blockSize, new long[blockSize.length], inputAxes));
+		}
+
+		final List<AdvancedTiledView<FloatType>> tiledOutput = executor.run(
+			tiledInput, network);
+		if (tiledOutput == null) {
+			throw new ExecutionException(new IllegalStateException(
+				"Prediction was canceled or failed"));
+		}
+		final List<RandomAccessibleInterval<FloatType>> output;
+		if (network.getOutputNode().getTilingAllowed()) {
+			final DefaultOutputTiler<FloatType> outputTiler =
+				new DefaultOutputTiler<>();
+			taskManager.add(outputTiler);
+			output = outputTiler.run(tiledOutput, tiling, plan != null ? plan
+				.getOutputAxes() : network.getOutputNode().getFinalAxesArray());
+		}
+		else {
+			output = Collections.singletonList(tiledOutput.get(0)
+				.getProcessedTiles().get(0));
+		}
+		for (final AdvancedTiledView<FloatType> view : tiledOutput) {
+			view.dispose();
+		}
+		final DatasetOutputProcessor<FloatType> outputProcessor =
+			new DatasetOutputProcessor<>(datasetService);
+		taskManager.add(outputProcessor);
+		return outputProcessor.run(output, network.getOutputNode());
+	}
+
+	private DefaultTiling<FloatType> createTiling(
+		final Network<FloatType> network, final int tiles)
+	{
+		final DefaultTiling<FloatType> tiling = new DefaultTiling<>(tiles,
+			batchSize, blockMultiple, overlap);
+		final NetworkSettings settings = network.getNetworkSettings();
+		if (useModelTilingSettings && settings != null) {
+			final Map<AxisType, Integer> axesOverlap = settings.getTileOverlap();
+			final Map<AxisType, Integer> axesDivBy = settings.getAxesDivBy();
+			tiling.setAxesOverlap(axesOverlap);
+			tiling.setAxesDivBy(axesDivBy);
+		}
+		return tiling;
+	}
+
+	/**
+	 * Releases the model, it is closed unless other networks of the process
+	 * share it. Predictions running at the same time fail.
+	 */
+	@Override
+	public void dispose() {
+		model.dispose();
+	}
+
+	/**
+	 * Collects the model and the settings of a {@link Predictor}. The defaults
+	 * are the defaults of the commands.
+	 */
+	public static class Builder {
+
+		private File modelFile;
+		private String modelUrl;
+		private boolean normalizeInput = true;
+		private float percentileBottom = 3.0f;
+		private float percentileTop = 99.8f;
+		private boolean clip = false;
+		private int nTiles = 8;
+		private int blockMultiple = 32;
+		private int overlap = 32;
+		private int batchSize = 1;
+		private boolean useModelTilingSettings = true;
+
+		public Builder setModelFile(final File modelFile) {
+			this.modelFile = modelFile;
+			return this;
+		}
+
+		public Builder setModelUrl(final String modelUrl) {
+			this.modelUrl = modelUrl;
+			return this;
+		}
+
+		public Builder setNormalizeInput(final boolean normalizeInput) {
+			this.normalizeInput = normalizeInput;
+			return this;
+		}
+
+		public Builder setPercentiles(final float bottom, final float top) {
+			percentileBottom = bottom;
+			percentileTop = top;
+			return this;
+		}
+
+		public Builder setClip(final boolean clip) {
+			this.clip = clip;
+			return this;
+		}
+
+		public Builder setNTiles(final int nTiles) {
+			this.nTiles = nTiles;
+			return this;
+		}
+
+		public Builder setBlockMultiple(final int blockMultiple) {
+			this.blockMultiple = blockMultiple;
+			return this;
+		}
+
+		public Builder setOverlap(final int overlap) {
+			this.overlap = overlap;
+			return this;
+		}
+
+		public Builder setBatchSize(final int batchSize) {
+			this.batchSize = batchSize;
+			return this;
+		}
+
+		public Builder setUseModelTilingSettings(
+			final boolean useModelTilingSettings)
+		{
+			this.useModelTilingSettings = useModelTilingSettings;
+			return this;
+		}
+
+		/**
+		 * Loads the model.
+		 *
+		 * @throws FileNotFoundException if the model file or URL does not exist
+		 * @throws IllegalArgumentException if the model could not be loaded
+		 */
+		public Predictor build(final Context context)
+			throws FileNotFoundException
+		{
+			if (modelFile == null && (modelUrl == null || modelUrl.isEmpty())) {
+				throw new IllegalArgumentException(
+					"Please provide a model file or URL");
+			}
+			return new Predictor(this, context);
+		}
+
+		private String getCacheName() throws FileNotFoundException {
+			// same cache as the commands, the model is extracted only once
+			try {
+				return modelFile != null ? IOHelper.getFileCacheName(
+					GenericNetwork.class, modelFile) : ModelSourceIndex.getDefault()
+						.getCacheName(GenericNetwork.class, modelUrl);
+			}
+			catch (final FileNotFoundException e) {
+				throw e;
+			}
+			catch (final IOException e) {
+				throw new IllegalArgumentException("Could not read model " +
+					(modelFile != null ? modelFile : modelUrl), e);
+			}
+		}
+	}
+
+}
@@ -3,27 +3,44 @@ package de.csbdresden.csbdeep.network.model;
 
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.scijava.io.location.Location;
 
 import de.csbdresden.csbdeep.imglib2.TiledView;
+import de.csbdresden.csbdeep.metrics.MemoryAccounting;
+import de.csbdresden.csbdeep.metrics.RunMetrics;
+import de.csbdresden.csbdeep.metrics.Tracer;
 import de.csbdresden.csbdeep.task.Task;
+import de.csbdresden.csbdeep.tiling.AdvancedTiledView;
+import de.csbdresden.csbdeep.tiling.TileFilter;
 import de.csbdresden.csbdeep.util.IOHelper;
+import de.csbdresden.csbdeep.util.MemoryPressure;
 import net.imagej.Dataset;
-import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 
 public abstract class DefaultNetwork<T extends RealType<T>> implements
 		Network<T>
 {
 
+	// longest time a run holds a tile back while memory is low
+	private static final long MEMORY_WAIT_SECONDS = 30;
+
 	protected Task status;
 	protected ImageTensor inputNode = null;
 	protected ImageTensor outputNode = null;
@@ -31,7 +48,17 @@ public abstract class DefaultNetwork<T extends RealType<T>> implements
 	protected Integer doneTileCount;
 	protected boolean dropSingletonDims = false;
 	protected NetworkSettings networkSettings;
+	protected final List<TileFilter<T>> tileFilters = new ArrayList<>();
+	protected TileResultCache resultCache;
+	protected RunMetrics metrics;
+	// index of the tile which is executed, used for tracing
+	protected volatile long currentTile = Tracer.NO_TILE;
+	protected String modelName;
+	protected ExecutionPlanCache executionPlans = new ExecutionPlanCache();
+	protected ExecutionPlan executionPlan;
+	private String executionPlanKey;
 	ExecutorService pool;
+	private boolean memoryAwaited;
 
 	public DefaultNetwork(Task associatedTask) {
 		this.status = associatedTask;
@@ -45,6 +72,8 @@ public abstract class DefaultNetwork<T extends RealType<T>> implements
 	{
 
 		final Location source = IOHelper.loadFileOrURL(pathOrURL);
+		this.modelName = modelName;
+		clearExecutionPlans();
 		return loadModel(source, modelName);
 
 	}
@@ -57,62 +86,209 @@ public abstract class DefaultNetwork<T extends RealType<T>> implements
 		throws IllegalArgumentException, ExecutionException, OutOfMemoryError
 	{
 
-		pool = Executors.newSingleThreadExecutor();
+		final ExecutorService callPool = Executors.newSingleThreadExecutor();
+		pool = callPool;
+		memoryAwaited = false;
+		MemoryPressure.getDefault().runStarted();
+		try {
+			return processTiles();
+		}
+		finally {
+			MemoryPressure.getDefault().runFinished();
+			// the network is reused for following inputs, each call has its own
+			// thread
+			callPool.shutdown();
+		}
+	}
 
-		final boolean multithreading = false;
+	private List<RandomAccessibleInterval<T>> processTiles()
+		throws ExecutionException
+	{
 
-		final Cursor<RandomAccessibleInterval<T>> cursor = Views.iterable(tiledView)
-			.cursor();
+		final long[] grid = Intervals.dimensionsAsLongArray(tiledView);
+		final int numTiles = (int) Intervals.numElements(tiledView);
+		final RandomAccess<RandomAccessibleInterval<T>> tileAccess = tiledView
+			.randomAccess();
+		final long[] position = new long[grid.length];
+
+		// Loop over the tiles and execute the prediction, the results are stored
+		// in cursor order independent of the processing order
+		final List<RandomAccessibleInterval<T>> results = new ArrayList<>(
+			Collections.nCopies(numTiles, null));
+
+		// skippable tiles which need the output of another tile to create their
+		// result are handled after all other tiles, the filter gets the same tile
+		// again
+		final Map<Long, RandomAccessibleInterval<T>> deferredTiles =
+			new LinkedHashMap<>();
+		final Map<Long, TileFilter<T>> tileFilterMatches = new HashMap<>();
+		RandomAccessibleInterval<T> template = null;
+		int skippedTiles = 0;
+
+		for (final long index : getTileOrder(numTiles)) {
+			final RandomAccessibleInterval<T> tile = getTile(tileAccess, index,
+				grid, position);
+
+			final TileFilter<T> filter = findTileFilter(position, tile);
+			if (filter != null) {
+				final RandomAccessibleInterval<T> skipped = filter
+					.createSkippedResult(tile, template);
+				if (skipped != null) {
+					results.set((int) index, skipped);
+					skippedTiles++;
+					recordSkippedTile(tile);
+					upTileCount();
+					continue;
+				}
+				if (template == null) {
+					deferredTiles.put(index, tile);
+					tileFilterMatches.put(index, filter);
+					continue;
+				}
+			}
 
-		// Loop over the tiles and execute the prediction
-		final List<RandomAccessibleInterval<T>> results = new ArrayList<>();
-		final List<Future<RandomAccessibleInterval<T>>> futures = new ArrayList<>();
+			final RandomAccessibleInterval<T> res = executeTile(tile, index);
+			if (res == null) return null;
+			if (filter != null) filter.tileProcessed(tile, res);
+			if (template == null) template = res;
+			results.set((int) index, res);
+			upTileCount();
+		}
 
-		while (cursor.hasNext()) {
-			final RandomAccessibleInterval<T> tile = cursor.next();
+		for (final Map.Entry<Long, RandomAccessibleInterval<T>> deferred :
+			deferredTiles.entrySet())
+		{
+			final long index = deferred.getKey();
+			final RandomAccessibleInterval<T> tile = deferred.getValue();
+			final TileFilter<T> filter = tileFilterMatches.get(index);
+			RandomAccessibleInterval<T> res = template == null ? null : filter
+				.createSkippedResult(tile, template);
+			if (res != null) {
+				skippedTiles++;
+				recordSkippedTile(tile);
+			}
+			else {
+				res = executeTile(tile, index);
+				if (res == null) return null;
+				filter.tileProcessed(tile, res);
+				if (template == null) template = res;
+			}
+			results.set((int) index, res);
+			upTileCount();
+		}
 
-			final Future<RandomAccessibleInterval<T>> future = pool.submit(() -> execute(tile));
+		if (skippedTiles > 0) {
+			log("Skipped network execution for " + skippedTiles + " of " +
+				numTiles + " tile(s).");
+		}
 
-			log("Processing tile " + (doneTileCount + 1) + "..");
+		return results;
+	}
 
-			futures.add(future);
+	private TileFilter<T> findTileFilter(final long[] position,
+		final RandomAccessibleInterval<T> tile)
+	{
+		for (final TileFilter<T> filter : tileFilters) {
+			if (filter.canSkip(tiledView, position, tile)) return filter;
+		}
+		return null;
+	}
 
-			if (!multithreading) {
-				try {
-					final RandomAccessibleInterval<T> res = future.get();
-					if (res == null) return null;
-					results.add(res);
-					upTileCount();
-				}
-				catch (final IllegalArgumentException exc) {
-					pool.shutdownNow();
-					fail();
-					throw  exc;
-				}
-				catch (final InterruptedException exc) {
-					pool.shutdownNow();
-//					fail();
-					return null;
-				}
+	private RandomAccessibleInterval<T> getTile(
+		final RandomAccess<RandomAccessibleInterval<T>> tileAccess,
+		final long index, final long[] grid, final long[] position)
+	{
+		try (Tracer.Span span = Tracer.begin("tile extraction", index, null)) {
+			IntervalIndexer.indexToPosition(index, grid, position);
+			tileAccess.setPosition(position);
+			final RandomAccessibleInterval<T> tile = tileAccess.get();
+			span.setShape(Intervals.dimensionsAsLongArray(tile));
+			return tile;
+		}
+	}
+
+	private RandomAccessibleInterval<T> executeTile(
+		final RandomAccessibleInterval<T> tile, final long index)
+		throws ExecutionException
+	{
+		String cacheKey = null;
+		if (resultCache != null && Views.iterable(tile)
+			.firstElement() instanceof FloatType)
+		{
+			cacheKey = resultCache.getKey(tile);
+			final RandomAccessibleInterval<FloatType> cached = resultCache.get(
+				cacheKey);
+			if (cached != null) {
+				log("Using cached output for tile " + (doneTileCount + 1) + "..");
+				recordSkippedTile(tile);
+				return (RandomAccessibleInterval<T>) cached;
 			}
 		}
-		if (multithreading) {
-			for (final Future<RandomAccessibleInterval<T>> future : futures) {
-				try {
-					final RandomAccessibleInterval<T> res = future.get();
-					if (res == null) return null;
-					results.add(res);
-					upTileCount();
-				}
-				catch (final InterruptedException exc) {
-					pool.shutdownNow();
-					fail();
-					return null;
-				}
+
+		currentTile = index;
+		try {
+			awaitMemory();
+		}
+		catch (final InterruptedException exc) {
+			pool.shutdownNow();
+			return null;
+		}
+		final long start = System.nanoTime();
+		final Future<RandomAccessibleInterval<T>> future = pool.submit(() -> execute(tile));
+
+		log("Processing tile " + (doneTileCount + 1) + "..");
+
+		try {
+			final RandomAccessibleInterval<T> res = future.get();
+			if (res != null && metrics != null) {
+				metrics.addTile(System.nanoTime() - start, Intervals.numElements(tile));
 			}
+			if (res != null && cacheKey != null) resultCache.put(cacheKey, res);
+			return res;
 		}
+		catch (final IllegalArgumentException exc) {
+			pool.shutdownNow();
+			fail();
+			throw  exc;
+		}
+		catch (final InterruptedException exc) {
+			pool.shutdownNow();
+			return null;
+		}
+	}
 
-		return results;
+	/**
+	 * Holds the next tile back while memory is low and waiting can bring
+	 * relief, at most once per run. Otherwise the tiles are processed right
+	 * away, the tiling of the run is already adapted to the pressure.
+	 */
+	private void awaitMemory() throws InterruptedException {
+		final MemoryPressure memoryPressure = MemoryPressure.getDefault();
+		if (memoryAwaited || !memoryPressure.isUnderPressure() || !memoryPressure
+			.isReliefExpected()) return;
+		memoryAwaited = true;
+		log("Memory is low, waiting before processing tile " + (doneTileCount +
+			1) + "..");
+		if (!memoryPressure.awaitRelief(MEMORY_WAIT_SECONDS, TimeUnit.SECONDS)) {
+			log("Memory is still low, processing tile " + (doneTileCount + 1) +
+				" anyway..");
+		}
+	}
+
+	private void recordSkippedTile(final RandomAccessibleInterval<T> tile) {
+		if (metrics != null) metrics.addSkippedTile(Intervals.numElements(tile));
+	}
+
+	private long[] getTileOrder(final int numTiles) {
+		if (tiledView instanceof AdvancedTiledView) {
+			final long[] order = ((AdvancedTiledView<T>) tiledView).getTileOrder();
+			if (order != null && order.length == numTiles) return order;
+		}
+		final long[] order = new long[numTiles];
+		for (int i = 0; i < numTiles; i++) {
+			order[i] = i;
+		}
+		return order;
 	}
 
 	@Override
@@ -124,6 +300,11 @@ public abstract class DefaultNetwork<T extends RealType<T>> implements
 		return status;
 	}
 
+	@Override
+	public NetworkSettings getNetworkSettings() {
+		return networkSettings;
+	}
+
 	@Override
 	public ImageTensor getInputNode() {
 		return inputNode;
@@ -138,6 +319,48 @@ public abstract class DefaultNetwork<T extends RealType<T>> implements
 	public void loadInputNode(final Dataset dataset) {
 		inputNode = new ImageTensor();
 		inputNode.initialize(dataset);
+		executionPlan = null;
+		executionPlanKey = ExecutionPlan.createKey(modelName, dataset);
+	}
+
+	@Override
+	public boolean applyExecutionPlan(final Dataset input) {
+		final ExecutionPlan plan = executionPlans.get(ExecutionPlan.createKey(
+			modelName, input));
+		if (plan == null) return false;
+		usePlan(plan);
+		return true;
+	}
+
+	/**
+	 * Replaces the nodes with copies of the nodes of the plan.
+	 */
+	protected void usePlan(final ExecutionPlan plan) {
+		inputNode = plan.getInputNode();
+		outputNode = plan.getOutputNode();
+		executionPlan = plan;
+		executionPlanKey = plan.getKey();
+	}
+
+	/**
+	 * Caches the current state of the nodes as plan for the current input.
+	 */
+	protected void storeExecutionPlan(final List<Integer> droppedDims) {
+		if (executionPlanKey == null) return;
+		executionPlan = new ExecutionPlan(executionPlanKey, inputNode, outputNode,
+			droppedDims);
+		executionPlans.put(executionPlan);
+	}
+
+	@Override
+	public ExecutionPlan getExecutionPlan() {
+		return executionPlan;
+	}
+
+	@Override
+	public void clearExecutionPlans() {
+		executionPlans.clear();
+		executionPlan = null;
 	}
 
 	@Override
@@ -171,6 +394,31 @@ public abstract class DefaultNetwork<T extends RealType<T>> implements
 		this.tiledView = tiledView;
 	}
 
+	@Override
+	public List<TileFilter<T>> getTileFilters() {
+		return tileFilters;
+	}
+
+	@Override
+	public void setResultCache(final TileResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	@Override
+	public void setMetrics(final RunMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return the accounting of the run set with {@link #setMetrics} or, if
+	 *         there is none, of the process
+	 */
+	protected MemoryAccounting getMemoryAccounting() {
+		final RunMetrics runMetrics = metrics;
+		return runMetrics != null ? runMetrics.getMemoryAccounting()
+			: MemoryAccounting.getDefault();
+	}
+
 	protected void log(final String text) {
 		if (status != null) {
 			status.log(text);
@@ -193,7 +441,7 @@ public abstract class DefaultNetwork<T extends RealType<T>> implements
 
 	@Override
 	public void cancel(String reason) {
-		pool.shutdownNow();
+		if (pool != null) pool.shutdownNow();
 	}
 
 	@Override
@@ -241,5 +489,7 @@ public abstract class DefaultNetwork<T extends RealType<T>> implements
 	public void clear() {
 		inputNode = null;
 		outputNode = null;
+		executionPlan = null;
+		executionPlanKey = null;
 	}
 }
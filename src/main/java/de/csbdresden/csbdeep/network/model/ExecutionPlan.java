@@ -0,0 +1,128 @@
+package de.csbdresden.csbdeep.network.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.csbdresden.csbdeep.tiling.Tiling;
+import de.csbdresden.csbdeep.util.DatasetHelper;
+import net.imagej.Dataset;
+import net.imagej.axis.AxisType;
+
+/**
+ * The decisions a {@link Network} takes for one input shape before the tiles
+ * can be processed: shapes and axes of the input and output nodes, dropped
+ * singleton dimensions, permutations between image and tensor and the tiling
+ * actions. A plan only depends on the model and on the dimensions, axes and
+ * type of the input, it can be reused for all inputs with the same
+ * {@link #createKey(String, Dataset) key}. Plans are immutable, the nodes are
+ * copied when they are handed out.
+ */
+public class ExecutionPlan {
+
+	private final String key;
+	private final ImageTensor inputNode;
+	private final ImageTensor outputNode;
+	private final List<Integer> droppedDims;
+	private final AxisType[] inputAxes;
+	private final AxisType[] outputAxes;
+	private final Tiling.TilingAction[] tilingActions;
+	private final int[] inputImgMapping;
+	private final int[] outputImgMapping;
+
+	/**
+	 * Captures the current state of the nodes, called after the mapping was
+	 * computed and the singleton dimensions were dropped.
+	 *
+	 * @param droppedDims the dropped singleton dimensions of the input
+	 */
+	public ExecutionPlan(final String key, final ImageTensor inputNode,
+		final ImageTensor outputNode, final List<Integer> droppedDims)
+	{
+		this.key = key;
+		this.inputNode = new ImageTensor(inputNode);
+		this.outputNode = new ImageTensor(outputNode);
+		this.droppedDims = Collections.unmodifiableList(new ArrayList<>(
+			droppedDims));
+		inputAxes = inputNode.getFinalAxesArray();
+		outputAxes = outputNode.getFinalAxesArray();
+		tilingActions = inputNode.getTilingActions();
+		inputImgMapping = toImgMapping(inputNode.getMappingIndices());
+		outputImgMapping = toImgMapping(outputNode.getMappingIndices());
+	}
+
+	/**
+	 * @return the key of plans for the input when processed with the model
+	 */
+	public static String createKey(final String modelName, final Dataset input) {
+		final long[] dims = new long[input.numDimensions()];
+		input.dimensions(dims);
+		return modelName + "_" + Arrays.toString(dims) + "_" + Arrays.toString(
+			DatasetHelper.getDimensionsAllAssigned(input)) + "_" + input
+				.getTypeLabelLong();
+	}
+
+	/**
+	 * Inverts the mapping from tensor dimensions to image dimensions.
+	 */
+	public static int[] toImgMapping(final int[] nodeMapping) {
+		final int[] res = new int[nodeMapping.length];
+		for (int i = 0; i < nodeMapping.length; i++) {
+			for (int j = 0; j < nodeMapping.length; j++) {
+				if (i == nodeMapping[j]) {
+					res[i] = j;
+					break;
+				}
+			}
+		}
+		return res;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return a copy of the input node
+	 */
+	public ImageTensor getInputNode() {
+		return new ImageTensor(inputNode);
+	}
+
+	/**
+	 * @return a copy of the output node
+	 */
+	public ImageTensor getOutputNode() {
+		return new ImageTensor(outputNode);
+	}
+
+	public List<Integer> getDroppedDims() {
+		return droppedDims;
+	}
+
+	public AxisType[] getInputAxes() {
+		return inputAxes.clone();
+	}
+
+	public AxisType[] getOutputAxes() {
+		return outputAxes.clone();
+	}
+
+	public Tiling.TilingAction[] getTilingActions() {
+		return tilingActions == null ? null : tilingActions.clone();
+	}
+
+	public boolean getTilingAllowed() {
+		return inputNode.getTilingAllowed();
+	}
+
+	public int[] getInputImgMapping() {
+		return inputImgMapping.clone();
+	}
+
+	public int[] getOutputImgMapping() {
+		return outputImgMapping.clone();
+	}
+
+}
@@ -0,0 +1,51 @@
+package de.csbdresden.csbdeep.network.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recently used {@link ExecutionPlan}s. The cache is thread
+ * safe and can be shared by networks using the same model.
+ */
+public class ExecutionPlanCache {
+
+	public static final int DEFAULT_SIZE = 32;
+
+	private final Map<String, ExecutionPlan> plans;
+
+	public ExecutionPlanCache() {
+		this(DEFAULT_SIZE);
+	}
+
+	public ExecutionPlanCache(final int maxSize) {
+		plans = new LinkedHashMap<String, ExecutionPlan>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(
+				final Map.Entry<String, ExecutionPlan> eldest)
+			{
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @return the plan with the key or {@code null}
+	 */
+	public synchronized ExecutionPlan get(final String key) {
+		return plans.get(key);
+	}
+
+	public synchronized void put(final ExecutionPlan plan) {
+		plans.put(plan.getKey(), plan);
+	}
+
+	public synchronized void clear() {
+		plans.clear();
+	}
+
+	public synchronized int size() {
+		return plans.size();
+	}
+
+}
@@ -58,6 +58,26 @@ public class ImageTensor {
 	public ImageTensor() {
 	}
 
+	/**
+	 * Creates a copy of the shapes, axes and mapping of another tensor.
+	 */
+	public ImageTensor(final ImageTensor other) {
+		name = other.name;
+		tilingAllowed = other.tilingAllowed;
+		image = copyDimensions(other.image);
+		node = copyDimensions(other.node);
+		finalMapping.addAll(other.finalMapping);
+	}
+
+	private List<Dimension> copyDimensions(final List<Dimension> dimensions) {
+		if (dimensions == null) return null;
+		final List<Dimension> res = new ArrayList<>(dimensions.size());
+		for (final Dimension dim : dimensions) {
+			res.add(new Dimension(dim.getType(), dim.getSize()));
+		}
+		return res;
+	}
+
 	public void initialize(final Dataset dataset) {
 		image = new ArrayList<>();
 		AxisType[] axes = DatasetHelper.getDimensionsAllAssigned(dataset);
@@ -317,13 +337,13 @@ public class ImageTensor {
 	}
 
 	public AxisType[] getAxesArray() {
-		int numDim = getNodeShape().length;
+		int numDim = node.size();
 		boolean hasChannel = imageHasChannel();
 		if(!hasChannel && numDim <= image.size()) numDim = image.size()+1;
 		final AxisType[] res = new AxisType[numDim];
 		Arrays.fill(res, Axes.unknown());
 		if(!hasChannel) res[image.size()] = Axes.CHANNEL;
-		for (int i = 0; i < getMapping().length; i++) {
+		for (int i = 0; i < node.size(); i++) {
 			int nodeI = getNodeDimByDatasetDim(i);
 			if(nodeI >= 0) {
 				res[i] = node.get(nodeI).type;
@@ -334,7 +354,7 @@ public class ImageTensor {
 
 
 	public AxisType[] getFinalAxesArray() {
-		AxisType[] res = new AxisType[getNodeShape().length];
+		AxisType[] res = new AxisType[node.size()];
 		Arrays.fill(res, Axes.unknown());
 		for (int i = 0; i < res.length; i++) {
 			int imgI = finalMapping.indexOf(i);
@@ -352,12 +372,13 @@ public class ImageTensor {
 
 	public Tiling.TilingAction[] getTilingActions() {
 
-		if(getNodeShape().length == 0) return null;
-		Tiling.TilingAction[] actions = new Tiling.TilingAction[Math.max(getImageDimensions().size(), getNodeShape().length)];
+		final int nodeDims = node.size();
+		if(nodeDims == 0) return null;
+		Tiling.TilingAction[] actions = new Tiling.TilingAction[Math.max(image.size(), nodeDims)];
 		Arrays.fill(actions, Tiling.TilingAction.NO_TILING);
 		actions[0] = Tiling.TilingAction.TILE_WITHOUT_PADDING; // img batch dimension
-		for (int i = 1; i < getNodeShape().length-1; i++) {
-			if(getNodeShape()[i] < 0) {
+		for (int i = 1; i < nodeDims-1; i++) {
+			if(node.get(i).getSize() < 0) {
 				actions[i] = Tiling.TilingAction.TILE_WITH_PADDING;
 			}
 		}
@@ -0,0 +1,202 @@
+package de.csbdresden.csbdeep.network.model;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import de.csbdresden.csbdeep.util.ModelFingerprints;
+
+/**
+ * Keeps exploded SavedModel directories addressed by the SHA-256 of the model
+ * zip (cached by {@link ModelFingerprints}), so each model is extracted once,
+ * independent of the name it is loaded with. The store can be shared by
+ * several processes, e.g. batch jobs on one node: a model is installed while
+ * holding a file lock, extracted into a temporary directory and moved to its
+ * final location in one step, so a directory in the store is always
+ * complete.
+ * <p>
+ * The default store is {@code ~/.csbdeep/models}, it can be changed with the
+ * system property {@value #STORE_PROPERTY}.
+ */
+public class ModelStore {
+
+	public static final String STORE_PROPERTY = "csbdeep.modelStore";
+	public static final String SAVED_MODEL_FILE = "saved_model.pb";
+
+	private static ModelStore defaultStore;
+	private static final Map<String, Object> installLocks =
+		new ConcurrentHashMap<>();
+
+	private final File root;
+
+	/**
+	 * @param root the directory the models are stored in
+	 */
+	public ModelStore(final File root) {
+		this.root = root;
+	}
+
+	public static synchronized ModelStore getDefault() {
+		if (defaultStore == null) {
+			final String dir = System.getProperty(STORE_PROPERTY);
+			defaultStore = new ModelStore(dir != null ? new File(dir) : new File(
+				System.getProperty("user.home"), ".csbdeep" + File.separator +
+					"models"));
+		}
+		return defaultStore;
+	}
+
+	public File getRoot() {
+		return root;
+	}
+
+	/**
+	 * @param modelFile a model zip or an exploded SavedModel directory
+	 * @return the directory containing the {@value #SAVED_MODEL_FILE} of the
+	 *         model, zips are installed into the store if needed
+	 */
+	public File getModelDir(final File modelFile) throws IOException {
+		if (modelFile.isDirectory()) {
+			final File dir = findSavedModel(modelFile);
+			if (dir == null) {
+				throw new FileNotFoundException("No " + SAVED_MODEL_FILE +
+					" found in " + modelFile);
+			}
+			return dir;
+		}
+		// the fingerprints only save hashing the zip again
+		return install(modelFile, ModelFingerprints.getDefault().getSha256(
+			modelFile));
+	}
+
+	File install(final File zip, final String hash) throws IOException {
+		final File target = new File(root, hash);
+		if (target.isDirectory()) return target;
+		// file locks are held per process, threads of this process wait here
+		synchronized (installLocks.computeIfAbsent(hash, key -> new Object())) {
+			if (target.isDirectory()) return target;
+			Files.createDirectories(root.toPath());
+			try (FileChannel channel = FileChannel.open(new File(root, hash +
+				".lock").toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE); FileLock lock = channel.lock())
+			{
+				// installed by another process while waiting for the lock
+				if (target.isDirectory()) return target;
+				final Path tmp = Files.createTempDirectory(root.toPath(), hash + ".");
+				try {
+					extract(zip, tmp);
+					final File savedModel = findSavedModel(tmp.toFile());
+					if (savedModel == null) {
+						throw new IOException("No " + SAVED_MODEL_FILE + " found in " +
+							zip);
+					}
+					Files.move(savedModel.toPath(), target.toPath(),
+						StandardCopyOption.ATOMIC_MOVE);
+				}
+				finally {
+					delete(tmp);
+				}
+			}
+		}
+		return target;
+	}
+
+	/**
+	 * Extracts the entries of the zip in parallel.
+	 */
+	static void extract(final File zip, final Path target) throws IOException {
+		final ExecutorService pool = Executors.newFixedThreadPool(Runtime
+			.getRuntime().availableProcessors());
+		try (ZipFile zipFile = new ZipFile(zip)) {
+			final List<Future<?>> extracting = new ArrayList<>();
+			final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				final Path path = target.resolve(entry.getName()).normalize();
+				if (!path.startsWith(target)) {
+					throw new IOException("Invalid entry " + entry.getName() + " in " +
+						zip);
+				}
+				if (entry.isDirectory()) {
+					Files.createDirectories(path);
+					continue;
+				}
+				Files.createDirectories(path.getParent());
+				extracting.add(pool.submit(() -> {
+					try (InputStream in = zipFile.getInputStream(entry)) {
+						Files.copy(in, path);
+					}
+					return null;
+				}));
+			}
+			for (final Future<?> future : extracting) {
+				future.get();
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Extraction of " + zip +
+				" interrupted");
+		}
+		catch (final ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e
+				.getCause();
+			throw new IOException("Could not extract " + zip, e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the directory closest to {@code dir} which contains a
+	 *         {@value #SAVED_MODEL_FILE} or {@code null}
+	 */
+	static File findSavedModel(final File dir) {
+		final Deque<File> dirs = new ArrayDeque<>();
+		dirs.add(dir);
+		while (!dirs.isEmpty()) {
+			final File current = dirs.poll();
+			if (new File(current, SAVED_MODEL_FILE).isFile()) return current;
+			final File[] children = current.listFiles(File::isDirectory);
+			if (children != null) {
+				for (final File child : children) {
+					dirs.add(child);
+				}
+			}
+		}
+		return null;
+	}
+
+	private static void delete(final Path dir) throws IOException {
+		if (!Files.exists(dir)) return;
+		try (Stream<Path> paths = Files.walk(dir)) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(
+				File::delete);
+		}
+	}
+
+}
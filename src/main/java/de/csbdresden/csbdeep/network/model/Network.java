@@ -9,7 +9,10 @@ import org.scijava.Cancelable;
 import org.scijava.Disposable;
 
 import de.csbdresden.csbdeep.imglib2.TiledView;
+import de.csbdresden.csbdeep.metrics.OpProfile;
+import de.csbdresden.csbdeep.metrics.RunMetrics;
 import de.csbdresden.csbdeep.task.Task;
+import de.csbdresden.csbdeep.tiling.TileFilter;
 import net.imagej.Dataset;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.type.numeric.RealType;
@@ -28,6 +31,12 @@ public interface Network<T extends RealType<T>> extends
 
 	Task getStatus();
 
+	/**
+	 * @return the settings of the loaded model, e.g. the overlap needed between
+	 *         tiles, or null if the network does not provide any
+	 */
+	NetworkSettings getNetworkSettings();
+
 	ImageTensor getInputNode();
 
 	ImageTensor getOutputNode();
@@ -44,6 +53,77 @@ public interface Network<T extends RealType<T>> extends
 
 	void setTiledView(TiledView<T> tiledView);
 
+	/**
+	 * @return the filters deciding which tiles can be skipped, the first filter
+	 *         matching a tile provides its result
+	 */
+	List<TileFilter<T>> getTileFilters();
+
+	/**
+	 * @param resultCache cache for the outputs of single tiles, {@code null}
+	 *          to disable caching
+	 */
+	void setResultCache(TileResultCache resultCache);
+
+	/**
+	 * Creates a network sharing the loaded model of this network. The new
+	 * instance has its own nodes, mapping and tiles, so both can run
+	 * predictions on different inputs concurrently. Disposing the new instance
+	 * does not unload the model.
+	 *
+	 * @param associatedTask the task receiving the progress of the new instance
+	 */
+	default Network<T> createSharedInstance(final Task associatedTask) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() +
+			" cannot share its model");
+	}
+
+	/**
+	 * Restores the nodes and the mapping from the {@link ExecutionPlan} cached
+	 * for inputs like the given one instead of loading the nodes and computing
+	 * the mapping.
+	 *
+	 * @return true if a plan was cached for the input
+	 */
+	default boolean applyExecutionPlan(final Dataset input) {
+		return false;
+	}
+
+	/**
+	 * @return the plan of the current input or {@code null} if it has not been
+	 *         computed yet
+	 */
+	default ExecutionPlan getExecutionPlan() {
+		return null;
+	}
+
+	/**
+	 * Removes the cached plans, e.g. after the mapping was changed manually.
+	 */
+	default void clearExecutionPlans() {}
+
+	/**
+	 * @return the shape of the input tensor of the last processed tile or
+	 *         {@code null}, used to warm up the model for the next run
+	 */
+	default long[] getLastTileShape() {
+		return null;
+	}
+
+	/**
+	 * Sets the metrics the processed tiles are recorded in, {@code null} to stop
+	 * recording. Tensors are accounted with the memory accounting of the
+	 * metrics.
+	 */
+	default void setMetrics(RunMetrics metrics) {}
+
+	/**
+	 * Sets the profile the operations of sampled tiles are recorded in,
+	 * {@code null} to stop profiling. Networks which cannot trace their
+	 * operations ignore it.
+	 */
+	default void setOpProfile(OpProfile profile) {}
+
 	default void loadLibrary(){}
 
 	/**
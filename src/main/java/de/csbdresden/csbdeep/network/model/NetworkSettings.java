@@ -1,6 +1,12 @@
 package de.csbdresden.csbdeep.network.model;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
 
 public class NetworkSettings {
 
@@ -10,4 +16,58 @@ public class NetworkSettings {
 	public List tileOverlap;
 	public List tilingAllowed;
 
+	/**
+	 * Values estimated from the graph of the network, used for axes which are
+	 * not configured in the meta file of the model.
+	 */
+	public Map<AxisType, Integer> estimatedAxesDivBy = new HashMap<>();
+	public Map<AxisType, Integer> estimatedTileOverlap = new HashMap<>();
+
+	private static final List<AxisType> spatialAxes = Arrays.asList(Axes.X,
+		Axes.Y, Axes.Z);
+
+	/**
+	 * @return the overlap needed between tiles for each axis of the input image
+	 *         as configured in the meta file of the model
+	 */
+	public Map<AxisType, Integer> getTileOverlap() {
+		return toAxisMap(tileOverlap, new HashMap<>());
+	}
+
+	/**
+	 * @return the overlap needed between tiles for each axis of the input
+	 *         image, estimated from the graph for axes which are not configured
+	 *         in the meta file of the model
+	 */
+	public Map<AxisType, Integer> getEstimatedTileOverlap() {
+		return toAxisMap(tileOverlap, estimatedTileOverlap);
+	}
+
+	/**
+	 * @return the number the size of each axis of the input image has to be
+	 *         divisible by
+	 */
+	public Map<AxisType, Integer> getAxesDivBy() {
+		return toAxisMap(axesDivBy, estimatedAxesDivBy);
+	}
+
+	private Map<AxisType, Integer> toAxisMap(final List values,
+		final Map<AxisType, Integer> estimated)
+	{
+		final Map<AxisType, Integer> res = new HashMap<>(estimated);
+		if (values == null || values.isEmpty()) return res;
+		if (axesIn != null && axesIn.size() == values.size()) {
+			for (int i = 0; i < values.size(); i++) {
+				final AxisType axis = (AxisType) axesIn.get(i);
+				if (spatialAxes.contains(axis)) res.put(axis, (Integer) values.get(i));
+			}
+		}
+		else if (values.size() == 1) {
+			for (AxisType axis : spatialAxes) {
+				res.put(axis, (Integer) values.get(0));
+			}
+		}
+		return res;
+	}
+
 }
@@ -0,0 +1,238 @@
+package de.csbdresden.csbdeep.network.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import de.csbdresden.csbdeep.metrics.MemoryAccounting;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Stores network outputs of single tiles on disk, addressed by the content of
+ * the tile input and a context describing the model and the parameters the
+ * tile was processed with. The least recently used entries are removed if
+ * the size of the cache exceeds the limit. Only {@link FloatType} outputs are
+ * cached.
+ */
+public class TileResultCache {
+
+	private static final String SUFFIX = ".tile";
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final File dir;
+	private final long maxBytes;
+	private String context = "";
+	private long currentBytes = 0;
+	private MemoryAccounting memory = MemoryAccounting.getDefault();
+	// access ordered, the first entry is the least recently used one
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16,
+		0.75f, true);
+
+	/**
+	 * @param dir the directory the tile outputs are stored in
+	 * @param maxBytes the maximum size of all stored tile outputs
+	 */
+	public TileResultCache(final File dir, final long maxBytes) {
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		dir.mkdirs();
+		final File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+		if (files != null) {
+			Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+			for (final File file : files) {
+				final String key = file.getName().substring(0, file.getName()
+					.length() - SUFFIX.length());
+				entries.put(key, file.length());
+				currentBytes += file.length();
+			}
+		}
+	}
+
+	public static File getDefaultDirectory() {
+		return new File(System.getProperty("user.home"), ".csbdeep" +
+			File.separator + "tile-cache");
+	}
+
+	/**
+	 * Sets the context tiles are processed in, e.g. the hash of the model and
+	 * the input mapping. Outputs are only reused within the same context.
+	 */
+	public void setContext(final String context) {
+		this.context = context;
+	}
+
+	/**
+	 * Sets the accounting the images read from the cache are recorded in.
+	 */
+	public void setMemoryAccounting(final MemoryAccounting memory) {
+		this.memory = memory;
+	}
+
+	/**
+	 * @return the key of the tile, a hash of the current context, the tile
+	 *         dimensions and the tile content
+	 */
+	public <T extends RealType<T>> String getKey(
+		final RandomAccessibleInterval<T> tile)
+	{
+		final MessageDigest digest = DigestUtils.getSha256Digest();
+		digest.update(context.getBytes(StandardCharsets.UTF_8));
+		final long[] dims = Intervals.dimensionsAsLongArray(tile);
+		final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		for (final long dim : dims) {
+			buffer.putLong(dim);
+		}
+		for (final T value : Views.flatIterable(tile)) {
+			if (buffer.remaining() < Float.BYTES) {
+				digest.update(buffer.array(), 0, buffer.position());
+				buffer.clear();
+			}
+			buffer.putFloat(value.getRealFloat());
+		}
+		digest.update(buffer.array(), 0, buffer.position());
+		return Hex.encodeHexString(digest.digest());
+	}
+
+	/**
+	 * @return the stored output for the key or {@code null} if there is none
+	 */
+	public synchronized RandomAccessibleInterval<FloatType> get(
+		final String key)
+	{
+		// marks the entry as recently used
+		if (entries.get(key) == null) return null;
+		final File file = getFile(key);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel())
+		{
+			final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size())
+				.order(ByteOrder.LITTLE_ENDIAN);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) throw new IOException(
+					"Unexpected end of file " + file);
+			}
+			buffer.flip();
+			final long[] dims = new long[buffer.getInt()];
+			for (int i = 0; i < dims.length; i++) {
+				dims[i] = buffer.getLong();
+			}
+			final float[] data = new float[(int) Intervals.numElements(dims)];
+			memory.imageAllocated("tile cache", (long) data.length *
+				Float.BYTES);
+			buffer.asFloatBuffer().get(data);
+			file.setLastModified(System.currentTimeMillis());
+			return ArrayImgs.floats(data, dims);
+		}
+		catch (IOException | RuntimeException e) {
+			remove(key);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the output of a tile. Outputs of other types than
+	 * {@link FloatType} are ignored.
+	 */
+	public synchronized <T extends RealType<T>> void put(final String key,
+		final RandomAccessibleInterval<T> output)
+	{
+		if (entries.containsKey(key) || !(Views.iterable(output)
+			.firstElement() instanceof FloatType)) return;
+		final long[] dims = Intervals.dimensionsAsLongArray(output);
+		final long size = Integer.BYTES + dims.length * Long.BYTES + Intervals
+			.numElements(dims) * Float.BYTES;
+		if (size > maxBytes) return;
+		final File file = getFile(key);
+		final File tmp = new File(dir, key + ".tmp");
+		try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+				FileChannel channel = raf.getChannel())
+		{
+			final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(
+				ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(dims.length);
+			for (final long dim : dims) {
+				buffer.putLong(dim);
+			}
+			for (final T value : Views.flatIterable(output)) {
+				if (buffer.remaining() < Float.BYTES) {
+					write(channel, buffer);
+				}
+				buffer.putFloat(value.getRealFloat());
+			}
+			write(channel, buffer);
+		}
+		catch (IOException e) {
+			tmp.delete();
+			return;
+		}
+		try {
+			Files.move(tmp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			tmp.delete();
+			return;
+		}
+		entries.put(key, size);
+		currentBytes += size;
+		evict();
+	}
+
+	private static void write(final FileChannel channel, final ByteBuffer buffer)
+		throws IOException
+	{
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private void evict() {
+		while (currentBytes > maxBytes && !entries.isEmpty()) {
+			remove(entries.keySet().iterator().next());
+		}
+	}
+
+	private void remove(final String key) {
+		final Long size = entries.remove(key);
+		if (size != null) currentBytes -= size;
+		getFile(key).delete();
+	}
+
+	/**
+	 * Removes all stored outputs.
+	 */
+	public synchronized void clear() {
+		for (final String key : entries.keySet().toArray(new String[0])) {
+			remove(key);
+		}
+	}
+
+	public synchronized long getSize() {
+		return currentBytes;
+	}
+
+	private File getFile(final String key) {
+		return new File(dir, key + SUFFIX);
+	}
+
+}
@@ -0,0 +1,379 @@
+package de.csbdresden.csbdeep.network.model.tensorflow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.tensorflow.framework.AttrValue;
+import org.tensorflow.framework.GraphDef;
+import org.tensorflow.framework.NodeDef;
+import org.tensorflow.framework.TensorShapeProto;
+
+/**
+ * Estimates the receptive field of a network and the number each spatial
+ * input dimension has to be divisible by from the convolution, pooling and
+ * upsampling operations of the graph. The graph is followed backwards from
+ * the output, where branches join (e.g. skip connections) the branch with the
+ * largest receptive field is taken, so operations of other outputs or of
+ * shorter branches are not counted.
+ */
+public class ReceptiveField {
+
+	private final long[] size;
+	private final long[] divBy;
+
+	private ReceptiveField(final long[] size, final long[] divBy) {
+		this.size = size;
+		this.divBy = divBy;
+	}
+
+	/**
+	 * The receptive field of a node of the graph, along the path with the
+	 * largest receptive field from the input.
+	 */
+	private static class State {
+
+		private final long[] size;
+		private final long[] scale;
+		private final long[] divBy;
+		private final Downsampling downsamplings;
+		private final boolean convolved;
+
+		private State(final long[] size, final long[] scale, final long[] divBy,
+			final Downsampling downsamplings, final boolean convolved)
+		{
+			this.size = size;
+			this.scale = scale;
+			this.divBy = divBy;
+			this.downsamplings = downsamplings;
+			this.convolved = convolved;
+		}
+
+		private static State initial(final int numSpatialDims) {
+			final long[] ones = new long[numSpatialDims];
+			Arrays.fill(ones, 1);
+			return new State(ones, ones, ones, null, false);
+		}
+
+		private long totalSize() {
+			long res = 0;
+			for (final long s : size) {
+				res += s;
+			}
+			return res;
+		}
+
+		/**
+		 * @return the state after an operation with the given kernel, dilations
+		 *         and strides
+		 */
+		private State convolve(final long[] kernel, final long[] dilations,
+			final long[] strides, final boolean convolution)
+		{
+			final long[] newSize = size.clone();
+			final long[] newScale = scale.clone();
+			final long[] newDivBy = divBy.clone();
+			boolean downsampled = false;
+			for (int i = 0; i < size.length; i++) {
+				newSize[i] += (kernel[i] - 1) * dilations[i] * scale[i];
+				if (strides[i] > 1) downsampled = true;
+				newScale[i] *= strides[i];
+				newDivBy[i] = Math.max(newDivBy[i], newScale[i]);
+			}
+			return new State(newSize, newScale, newDivBy, downsampled
+				? new Downsampling(strides, downsamplings) : downsamplings,
+				convolved || convolution);
+		}
+
+		/**
+		 * @param factors upsampling factors or {@code null} to revert the last
+		 *          downsampling
+		 */
+		private State upsample(final long[] factors) {
+			final long[] f = factors != null ? factors : downsamplings != null
+				? downsamplings.factors : null;
+			final Downsampling rest = downsamplings != null ? downsamplings.next
+				: null;
+			if (f == null) return new State(size, scale, divBy, rest, convolved);
+			final long[] newScale = scale.clone();
+			for (int i = 0; i < scale.length; i++) {
+				newScale[i] = Math.max(1, scale[i] / f[i]);
+			}
+			return new State(size, newScale, divBy, rest, convolved);
+		}
+
+	}
+
+	/** Immutable stack of the downsampling factors along a path. */
+	private static class Downsampling {
+
+		private final long[] factors;
+		private final Downsampling next;
+
+		private Downsampling(final long[] factors, final Downsampling next) {
+			this.factors = factors;
+			this.next = next;
+		}
+	}
+
+	/**
+	 * Estimates the receptive field at the node computing the output tensor or,
+	 * if it is not found, the largest receptive field of all nodes.
+	 *
+	 * @param graph the graph of the network
+	 * @param numSpatialDims number of spatial dimensions of the input tensor
+	 * @param output name of the output tensor, e.g. {@code "output:0"}, or
+	 *          {@code null}
+	 * @return the estimate or {@code null} if there is no known convolution
+	 *         operation on the path to the output
+	 */
+	public static ReceptiveField estimate(final GraphDef graph,
+		final int numSpatialDims, final String output)
+	{
+		final Map<String, NodeDef> nodes = new HashMap<>();
+		for (final NodeDef node : graph.getNodeList()) {
+			nodes.put(node.getName(), node);
+		}
+		final Map<String, State> states = new HashMap<>();
+		State result = null;
+		final NodeDef outputNode = output != null ? nodes.get(nodeName(output))
+			: null;
+		if (outputNode != null) {
+			result = computeState(outputNode, nodes, states, numSpatialDims);
+		}
+		else {
+			for (final NodeDef node : graph.getNodeList()) {
+				final State state = computeState(node, nodes, states,
+					numSpatialDims);
+				if (result == null || state.totalSize() > result.totalSize()) {
+					result = state;
+				}
+			}
+		}
+		if (result == null || !result.convolved) return null;
+		return new ReceptiveField(result.size, result.divBy);
+	}
+
+	/**
+	 * Computes the states of the node and of all nodes it depends on, in
+	 * topological order without recursion, since graphs can be deep.
+	 */
+	private static State computeState(final NodeDef target,
+		final Map<String, NodeDef> nodes, final Map<String, State> states,
+		final int numSpatialDims)
+	{
+		final Deque<NodeDef> stack = new ArrayDeque<>();
+		final Set<String> expanded = new HashSet<>();
+		stack.push(target);
+		while (!stack.isEmpty()) {
+			final NodeDef node = stack.peek();
+			if (states.containsKey(node.getName())) {
+				stack.pop();
+				continue;
+			}
+			boolean ready = true;
+			if (expanded.add(node.getName())) {
+				for (final String input : getDataInputs(node)) {
+					final NodeDef inputNode = nodes.get(nodeName(input));
+					// an expanded input without state is on the current path
+					if (inputNode != null && !states.containsKey(inputNode.getName()) &&
+						!expanded.contains(inputNode.getName()))
+					{
+						stack.push(inputNode);
+						ready = false;
+					}
+				}
+			}
+			if (!ready) continue;
+			stack.pop();
+			states.put(node.getName(), apply(node, nodes, states, numSpatialDims));
+		}
+		return states.get(target.getName());
+	}
+
+	/**
+	 * @return the state of the node from the state of its input with the
+	 *         largest receptive field
+	 */
+	private static State apply(final NodeDef node,
+		final Map<String, NodeDef> nodes, final Map<String, State> states,
+		final int numSpatialDims)
+	{
+		State in = null;
+		long[] divBy = null;
+		for (final String input : getDataInputs(node)) {
+			final State state = states.get(nodeName(input));
+			// inputs without state are part of a cycle, e.g. a loop
+			if (state == null) continue;
+			if (in == null || state.totalSize() > in.totalSize()) in = state;
+			if (divBy == null) divBy = state.divBy.clone();
+			for (int i = 0; i < numSpatialDims; i++) {
+				divBy[i] = Math.max(divBy[i], state.divBy[i]);
+			}
+		}
+		if (in == null) in = State.initial(numSpatialDims);
+		else in = new State(in.size, in.scale, divBy, in.downsamplings,
+			in.convolved);
+		final long[] ones = new long[numSpatialDims];
+		Arrays.fill(ones, 1);
+		switch (node.getOp()) {
+			case "Conv2D":
+			case "Conv3D":
+			case "DepthwiseConv2dNative": {
+				final long[] kernel = getKernelSize(node, nodes, numSpatialDims);
+				if (kernel == null) return in;
+				return in.convolve(kernel, getSpatialList(node, "dilations",
+					numSpatialDims), getSpatialList(node, "strides", numSpatialDims),
+					true);
+			}
+			case "MaxPool":
+			case "AvgPool":
+			case "MaxPool3D":
+			case "AvgPool3D":
+				return in.convolve(getSpatialList(node, "ksize", numSpatialDims),
+					ones, getSpatialList(node, "strides", numSpatialDims), false);
+			case "Conv2DBackpropInput":
+			case "Conv3DBackpropInputV2": {
+				final long[] kernel = getKernelSize(node, nodes, numSpatialDims);
+				final State convolved = kernel != null ? in.convolve(kernel, ones,
+					ones, false) : in;
+				return convolved.upsample(getSpatialList(node, "strides",
+					numSpatialDims));
+			}
+			case "ResizeNearestNeighbor":
+			case "ResizeBilinear":
+			case "ResizeBicubic":
+				// the target size is computed at runtime, assume it reverts the
+				// last downsampling
+				return in.upsample(null);
+			default:
+				return in;
+		}
+	}
+
+	/**
+	 * @return the inputs of the node carrying the image, without the filters of
+	 *         convolutions and without control dependencies
+	 */
+	private static List<String> getDataInputs(final NodeDef node) {
+		final List<String> inputs = new ArrayList<>();
+		switch (node.getOp()) {
+			case "Conv2D":
+			case "Conv3D":
+			case "DepthwiseConv2dNative":
+			case "ResizeNearestNeighbor":
+			case "ResizeBilinear":
+			case "ResizeBicubic":
+				if (node.getInputCount() > 0) inputs.add(node.getInput(0));
+				return inputs;
+			case "Conv2DBackpropInput":
+			case "Conv3DBackpropInputV2":
+				if (node.getInputCount() > 2) inputs.add(node.getInput(2));
+				return inputs;
+			default:
+				for (final String input : node.getInputList()) {
+					if (!input.startsWith("^")) inputs.add(input);
+				}
+				return inputs;
+		}
+	}
+
+	/**
+	 * @return the spatial entries of a list attribute given in data format NHWC
+	 *         or NCHW, {@code 1} for each entry if the attribute is missing
+	 */
+	private static long[] getSpatialList(final NodeDef node, final String name,
+		final int numSpatialDims)
+	{
+		final long[] res = new long[numSpatialDims];
+		Arrays.fill(res, 1);
+		final AttrValue attr = node.getAttrMap().get(name);
+		if (attr == null) return res;
+		final List<Long> values = attr.getList().getIList();
+		final int offset = isChannelsFirst(node) ? 2 : 1;
+		for (int i = 0; i < numSpatialDims && i + offset < values.size(); i++) {
+			res[i] = values.get(i + offset);
+		}
+		return res;
+	}
+
+	private static boolean isChannelsFirst(final NodeDef node) {
+		final AttrValue format = node.getAttrMap().get("data_format");
+		return format != null && format.getS().toStringUtf8().startsWith("NC");
+	}
+
+	/**
+	 * Follows the filter input of a convolution to the variable or constant
+	 * defining it and reads the spatial part of its shape.
+	 */
+	private static long[] getKernelSize(final NodeDef conv,
+		final Map<String, NodeDef> nodes, final int numSpatialDims)
+	{
+		if (conv.getInputCount() < 2) return null;
+		NodeDef node = nodes.get(nodeName(conv.getInput(1)));
+		for (int depth = 0; node != null && depth < 10; depth++) {
+			final TensorShapeProto shape = getShape(node);
+			if (shape != null && shape.getDimCount() >= numSpatialDims) {
+				final long[] res = new long[numSpatialDims];
+				for (int i = 0; i < numSpatialDims; i++) {
+					res[i] = shape.getDim(i).getSize();
+				}
+				return res;
+			}
+			if (node.getInputCount() == 0) return null;
+			node = nodes.get(nodeName(node.getInput(0)));
+		}
+		return null;
+	}
+
+	private static TensorShapeProto getShape(final NodeDef node) {
+		final Map<String, AttrValue> attrs = node.getAttrMap();
+		if (attrs.containsKey("shape") && attrs.get("shape").hasShape()) {
+			return attrs.get("shape").getShape();
+		}
+		if (node.getOp().equals("Const") && attrs.containsKey("value")) {
+			return attrs.get("value").getTensor().getTensorShape();
+		}
+		return null;
+	}
+
+	private static String nodeName(final String input) {
+		String name = input.startsWith("^") ? input.substring(1) : input;
+		final int index = name.lastIndexOf(':');
+		if (index > 0) name = name.substring(0, index);
+		return name;
+	}
+
+	/**
+	 * @return the receptive field size for each spatial dimension
+	 */
+	public long[] getSize() {
+		return size.clone();
+	}
+
+	/**
+	 * @return the number each spatial input dimension has to be divisible by
+	 */
+	public long[] getDivBy() {
+		return divBy.clone();
+	}
+
+	/**
+	 * @return the overlap needed on each side of a tile for each spatial
+	 *         dimension to compute the tile core without border effects
+	 */
+	public long[] getHalo() {
+		final long[] res = new long[size.length];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = size[i] / 2;
+		}
+		return res;
+	}
+
+}
@@ -0,0 +1,106 @@
+package de.csbdresden.csbdeep.network.model.tensorflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.scijava.io.location.FileLocation;
+import org.scijava.io.location.Location;
+import org.tensorflow.SavedModelBundle;
+
+import de.csbdresden.csbdeep.network.model.ModelStore;
+
+/**
+ * Loads local models from their directory in the {@link ModelStore} or from
+ * an exploded SavedModel directory. Each directory is loaded once per process
+ * and the session is shared by all networks using it, like the cache of the
+ * {@code TensorFlowService} does for remote models. Networks acquire the
+ * session and release it when they are cleared, it is closed once no network
+ * uses it anymore. A session loaded by {@link TensorFlowWarmUp} stays open
+ * until the first network acquired and released it or the warm up is
+ * discarded.
+ */
+class StoredModelBundles {
+
+	private static class Entry {
+
+		private final SavedModelBundle bundle;
+		private int references;
+		// the reference of the warm up is handed to the next network
+		private boolean warmedUp;
+
+		private Entry(final SavedModelBundle bundle) {
+			this.bundle = bundle;
+		}
+	}
+
+	private static final Map<String, Entry> bundles = new HashMap<>();
+
+	private StoredModelBundles() {}
+
+	/**
+	 * @return the SavedModel directory of a local model, {@code null} if the
+	 *         model is not stored in a file
+	 */
+	static File getModelDir(final Location source) throws IOException {
+		if (!(source instanceof FileLocation)) return null;
+		return ModelStore.getDefault().getModelDir(((FileLocation) source)
+			.getFile());
+	}
+
+	/**
+	 * Loads the model unless it is loaded already. Each call has to be
+	 * followed by one call of {@link #release(File)}.
+	 */
+	static synchronized SavedModelBundle acquire(final File modelDir) {
+		final Entry entry = getEntry(modelDir);
+		if (entry.warmedUp) entry.warmedUp = false;
+		else entry.references++;
+		return entry.bundle;
+	}
+
+	/**
+	 * Closes the model if no other network uses it.
+	 */
+	static synchronized void release(final File modelDir) {
+		final String key = modelDir.getAbsolutePath();
+		final Entry entry = bundles.get(key);
+		if (entry == null || --entry.references > 0) return;
+		bundles.remove(key);
+		entry.bundle.close();
+	}
+
+	/**
+	 * Releases the model after a warm up, it is kept open for the next network
+	 * unless a network acquired it during the warm up.
+	 */
+	static synchronized void releaseWarmedUp(final File modelDir) {
+		final Entry entry = bundles.get(modelDir.getAbsolutePath());
+		if (entry == null) return;
+		if (entry.references == 1) entry.warmedUp = true;
+		else release(modelDir);
+	}
+
+	/**
+	 * Closes the model if it is still waiting for a network after a warm up.
+	 */
+	static synchronized void releaseUnused(final File modelDir) {
+		final Entry entry = bundles.get(modelDir.getAbsolutePath());
+		if (entry == null || !entry.warmedUp) return;
+		entry.warmedUp = false;
+		release(modelDir);
+	}
+
+	private static Entry getEntry(final File modelDir) {
+		final String key = modelDir.getAbsolutePath();
+		Entry entry = bundles.get(key);
+		if (entry == null) {
+			entry = new Entry(SavedModelBundle.load(key,
+				TensorFlowNetwork.MODEL_TAG));
+			bundles.put(key, entry);
+		}
+		return entry;
+	}
+
+}
@@ -2,6 +2,7 @@
 package de.csbdresden.csbdeep.network.model.tensorflow;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -15,6 +16,7 @@ import org.scijava.command.CommandService;
 import org.scijava.io.location.Location;
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
+import org.tensorflow.SavedModelBundle;
 import org.tensorflow.Tensor;
 import org.tensorflow.TensorFlow;
 import org.tensorflow.TensorFlowException;
@@ -27,8 +29,12 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.protobuf.InvalidProtocolBufferException;
 
+import de.csbdresden.csbdeep.metrics.MemoryAccounting;
+import de.csbdresden.csbdeep.metrics.OpProfile;
+import de.csbdresden.csbdeep.metrics.Tracer;
 import de.csbdresden.csbdeep.network.DefaultInputMapper;
 import de.csbdresden.csbdeep.network.model.DefaultNetwork;
+import de.csbdresden.csbdeep.network.model.ExecutionPlan;
 import de.csbdresden.csbdeep.network.model.NetworkSettings;
 import de.csbdresden.csbdeep.task.Task;
 import net.imagej.Dataset;
@@ -58,18 +64,24 @@ public class TensorFlowNetwork<T extends RealType<T>> extends
 	@Parameter
 	private LogService logService;
 
-	private CachedModelBundle model;
+	private SavedModelBundle model;
+	// set if the model is loaded by the TensorFlowService
+	private CachedModelBundle cachedModel;
+	// set if the model is acquired from StoredModelBundles
+	private File storedModelDir;
 	private SignatureDef sig;
 	private Map meta;
 	private boolean tensorFlowLoaded = false;
 	private TensorInfo inputTensorInfo, outputTensorInfo;
 	private AxisType axisToRemove;
+	private volatile long[] lastTileShape;
+	private volatile OpProfile opProfile;
 	// Same as
 	// tf.saved_model.signature_constants.DEFAULT_SERVING_SIGNATURE_DEF_KEY
 	// in Python. Perhaps this should be an exported constant in TensorFlow's Java
 	// API.
-	private static final String MODEL_TAG = "serve";
-	private static final String DEFAULT_SERVING_SIGNATURE_DEF_KEY =
+	static final String MODEL_TAG = "serve";
+	static final String DEFAULT_SERVING_SIGNATURE_DEF_KEY =
 		"serving_default";
 
 	public TensorFlowNetwork(Task associatedTask)
@@ -77,6 +89,39 @@ public class TensorFlowNetwork<T extends RealType<T>> extends
 		super(associatedTask);
 	}
 
+	/**
+	 * Creates a network using the model loaded by another network. Only the
+	 * services, the model and its settings are shared, nodes, mapping and tiles
+	 * belong to the new instance.
+	 */
+	private TensorFlowNetwork(final TensorFlowNetwork<T> loaded,
+		final Task associatedTask)
+	{
+		super(associatedTask);
+		tensorFlowService = loaded.tensorFlowService;
+		datasetService = loaded.datasetService;
+		commandService = loaded.commandService;
+		logService = loaded.logService;
+		tensorFlowLoaded = loaded.tensorFlowLoaded;
+		model = loaded.model;
+		sig = loaded.sig;
+		meta = loaded.meta;
+		networkSettings = loaded.networkSettings;
+		dropSingletonDims = loaded.dropSingletonDims;
+		inputTensorInfo = loaded.inputTensorInfo;
+		outputTensorInfo = loaded.outputTensorInfo;
+		modelName = loaded.modelName;
+		executionPlans = loaded.executionPlans;
+	}
+
+	@Override
+	public TensorFlowNetwork<T> createSharedInstance(final Task associatedTask) {
+		if (!isInitialized()) {
+			throw new IllegalStateException("The model has not been loaded yet");
+		}
+		return new TensorFlowNetwork<>(this, associatedTask);
+	}
+
 	@Override
 	public void loadLibrary() {
 		tensorFlowService.loadLibrary();
@@ -105,6 +150,19 @@ public class TensorFlowNetwork<T extends RealType<T>> extends
 		}
 	}
 
+	@Override
+	public boolean applyExecutionPlan(final Dataset input) {
+		if (!super.applyExecutionPlan(input)) return false;
+		if (sig != null) {
+			// the tensors only depend on the model, not on the input
+			if (inputTensorInfo == null) inputTensorInfo = sig.getInputsOrThrow(
+				inputNode.getName());
+			if (outputTensorInfo == null) outputTensorInfo = sig.getOutputsOrThrow(
+				outputNode.getName());
+		}
+		return true;
+	}
+
 	@Override
 	public void loadOutputNode(Dataset dataset) {
 		super.loadOutputNode(dataset);
@@ -128,23 +186,41 @@ public class TensorFlowNetwork<T extends RealType<T>> extends
 	protected boolean loadModel(final Location source, final String modelName) {
 		if(!tensorFlowLoaded) return false;
 		log("Loading TensorFlow model " + modelName + " from source file " + source.getURI());
+		final File modelDir;
 		try {
-			if (model != null) {
-				model.close();
+			model = null;
+			releaseModel();
+			modelDir = StoredModelBundles.getModelDir(source);
+			if (modelDir != null) {
+				log("Using SavedModel directory " + modelDir);
+				model = StoredModelBundles.acquire(modelDir);
+				storedModelDir = modelDir;
+			}
+			else {
+				cachedModel = tensorFlowService.loadCachedModel(source, modelName,
+					MODEL_TAG);
+				model = cachedModel.model();
 			}
-			model = tensorFlowService.loadCachedModel(source, modelName, MODEL_TAG);
-//			loadNetworkSettingsFromJson(tensorFlowService.loadFile(source, modelName, "meta.json"));
 		}
 		catch (TensorFlowException | IOException e) {
 			e.printStackTrace();
 			return false;
 		}
+		try {
+			loadNetworkSettingsFromJson(getMetaFile(source, modelName, modelDir));
+		}
+		catch (IOException e) {
+			log("No meta.json file found for network.");
+			networkSettings = new NetworkSettings();
+		}
 		// Extract names from the model signature.
 		// The strings "input", "probabilities" and "patches" are meant to be
 		// in sync with the model exporter (export_saved_model()) in Python.
 		try {
-			sig = MetaGraphDef.parseFrom(model.model().metaGraphDef()).getSignatureDefOrThrow(
+			final MetaGraphDef metaGraph = MetaGraphDef.parseFrom(model.metaGraphDef());
+			sig = metaGraph.getSignatureDefOrThrow(
 				DEFAULT_SERVING_SIGNATURE_DEF_KEY);
+			estimateReceptiveField(metaGraph);
 		}
 		catch (final InvalidProtocolBufferException e) {
 			 e.printStackTrace();
@@ -152,6 +228,41 @@ public class TensorFlowNetwork<T extends RealType<T>> extends
 		return true;
 	}
 
+	private void estimateReceptiveField(final MetaGraphDef metaGraph) {
+		if (sig.getInputsCount() == 0) return;
+		// input tensors are expected to have a batch and a channel dimension
+		final int numSpatialDims = sig.getInputsMap().values().iterator().next()
+			.getTensorShape().getDimCount() - 2;
+		if (numSpatialDims < 2 || numSpatialDims > 3) return;
+		final String output = sig.getOutputsCount() > 0 ? sig.getOutputsMap()
+			.values().iterator().next().getName() : null;
+		final ReceptiveField field = ReceptiveField.estimate(metaGraph
+			.getGraphDef(), numSpatialDims, output);
+		if (field == null) return;
+		final AxisType[] axes = numSpatialDims == 2 ? new AxisType[] { Axes.Y,
+			Axes.X } : new AxisType[] { Axes.Z, Axes.Y, Axes.X };
+		final long[] halo = field.getHalo();
+		final long[] divBy = field.getDivBy();
+		for (int i = 0; i < numSpatialDims; i++) {
+			networkSettings.estimatedTileOverlap.put(axes[i], (int) halo[i]);
+			networkSettings.estimatedAxesDivBy.put(axes[i], (int) divBy[i]);
+		}
+		log("Estimated receptive field of network: " + Arrays.toString(field
+			.getSize()));
+	}
+
+	private File getMetaFile(final Location source, final String modelName,
+		final File modelDir) throws IOException
+	{
+		if (modelDir == null) {
+			return tensorFlowService.loadFile(source, modelName, "meta.json");
+		}
+		final File metaFile = new File(modelDir, "meta.json");
+		if (!metaFile.exists()) throw new FileNotFoundException(metaFile
+			.getAbsolutePath());
+		return metaFile;
+	}
+
 	private void loadNetworkSettingsFromJson(File jsonFile) {
 		networkSettings = new NetworkSettings();
 		try {
@@ -162,7 +273,7 @@ public class TensorFlowNetwork<T extends RealType<T>> extends
 				reader.close();
 			}
 		} catch (IOException e) {
-			log("No meta.json file found for network.");
+			log("Could not read meta.json file of network.");
 		}
 	}
 
@@ -248,8 +359,15 @@ public class TensorFlowNetwork<T extends RealType<T>> extends
 
 	@Override
 	public List<Integer> dropSingletonDims() {
+		if (executionPlan != null) {
+			// the nodes of the plan are reduced already, start from a fresh copy
+			usePlan(executionPlan);
+			return executionPlan.getDroppedDims();
+		}
 		outputNode.dropSingletonDims();
-		return inputNode.dropSingletonDims();
+		final List<Integer> droppedDims = inputNode.dropSingletonDims();
+		storeExecutionPlan(droppedDims);
+		return droppedDims;
 	}
 
 	@Override
@@ -320,36 +438,61 @@ public class TensorFlowNetwork<T extends RealType<T>> extends
 
 		long[] tileDims = new long[tile.numDimensions()];
 		tile.dimensions(tileDims);
-		final Tensor inputTensor = DatasetTensorFlowConverter.datasetToTensor(tile,
-			convertNodeMappingToImgMapping(getInputNode().getMappingIndices()));
-		if (inputTensor != null) {
+		final long tileIndex = currentTile;
+		final MemoryAccounting memory = getMemoryAccounting();
+		final Tensor inputTensor;
+		try (Tracer.Span span = Tracer.begin("tensor fill", tileIndex, tileDims)) {
+			inputTensor = TrackedTensors.track(DatasetTensorFlowConverter
+				.datasetToTensor(tile, executionPlan != null ? executionPlan
+					.getInputImgMapping() : ExecutionPlan.toImgMapping(getInputNode()
+						.getMappingIndices())), "tensor fill", memory);
+		}
+		if (inputTensor == null) return null;
+		Tensor outputTensor = null;
+		try {
+			lastTileShape = inputTensor.shape();
 			RandomAccessibleInterval<T> output = null;
-			Tensor outputTensor = TensorFlowRunner.executeGraph(model.model(), inputTensor,
-				getInputTensorInfo(), getOutputTensorInfo());
+			try (Tracer.Span span = Tracer.begin("Session.run", tileIndex,
+				lastTileShape))
+			{
+				outputTensor = TrackedTensors.track(TensorFlowRunner.executeGraph(
+					model, inputTensor, getInputTensorInfo(), getOutputTensorInfo(),
+					opProfile), "Session.run", memory);
+			}
 
 			if (outputTensor != null) {
-				output = DatasetTensorFlowConverter.tensorToDataset(outputTensor, tile
-					.randomAccess().get(), convertNodeMappingToImgMapping(getOutputNode().getMappingIndices()),
-					dropSingletonDims);
-				outputTensor.close();
+				if (metrics != null) {
+					metrics.addBytesConverted((long) inputTensor.numBytes() +
+						outputTensor.numBytes());
+				}
+				try (Tracer.Span span = Tracer.begin("tensor decode", tileIndex,
+					outputTensor.shape()))
+				{
+					output = DatasetTensorFlowConverter.tensorToDataset(outputTensor,
+						tile.randomAccess().get(), executionPlan != null ? executionPlan
+							.getOutputImgMapping() : ExecutionPlan.toImgMapping(
+								getOutputNode().getMappingIndices()),
+						dropSingletonDims);
+				}
+				memory.imageAllocated("tensor decode", outputTensor.numBytes());
 			}
-			inputTensor.close();
 			return output;
 		}
-		return null;
+		finally {
+			TrackedTensors.close(outputTensor, memory);
+			TrackedTensors.close(inputTensor, memory);
+			memory.sampleHeap("tensor decode");
+		}
 	}
 
-	private static int[] convertNodeMappingToImgMapping(int[] nodeMapping) {
-		int[] res = new int[nodeMapping.length];
-		for (int i = 0; i < nodeMapping.length; i++) {
-			for (int j = 0; j < nodeMapping.length; j++) {
-				if(i == nodeMapping[j]) {
-					res[i] = j;
-					break;
-				}
-			}
-		}
-		return res;
+	@Override
+	public void setOpProfile(final OpProfile profile) {
+		opProfile = profile;
+	}
+
+	@Override
+	public long[] getLastTileShape() {
+		return lastTileShape;
 	}
 
 	@Override
@@ -388,11 +531,24 @@ public class TensorFlowNetwork<T extends RealType<T>> extends
 		super.clear();
 		sig = null;
 		model = null;
+		releaseModel();
+		networkSettings = null;
 		inputTensorInfo = null;
 		outputTensorInfo = null;
 		axisToRemove = null;
 	}
 
+	/**
+	 * Closes or releases the model. Only the network which loaded the model
+	 * holds it, not the shared instances.
+	 */
+	private void releaseModel() {
+		if (cachedModel != null) cachedModel.close();
+		cachedModel = null;
+		if (storedModelDir != null) StoredModelBundles.release(storedModelDir);
+		storedModelDir = null;
+	}
+
 	@Override
 	public void dispose() {
 		super.dispose();
@@ -33,10 +33,22 @@ import java.util.concurrent.ExecutionException;
 
 import javax.swing.*;
 
+import org.tensorflow.Graph;
+import org.tensorflow.Operation;
 import org.tensorflow.SavedModelBundle;
+import org.tensorflow.Session;
 import org.tensorflow.Tensor;
+import org.tensorflow.framework.AllocatorMemoryUsed;
+import org.tensorflow.framework.DeviceStepStats;
+import org.tensorflow.framework.NodeExecStats;
+import org.tensorflow.framework.RunMetadata;
+import org.tensorflow.framework.RunOptions;
 import org.tensorflow.framework.TensorInfo;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import de.csbdresden.csbdeep.metrics.OpProfile;
+
 public class TensorFlowRunner {
 
 	/*
@@ -47,15 +59,40 @@ public class TensorFlowRunner {
 		final Tensor image, final TensorInfo inputTensorInfo,
 		final TensorInfo outputTensorInfo) throws IllegalArgumentException, ExecutionException
 	{
+		return executeGraph(model, image, inputTensorInfo, outputTensorInfo, null);
+	}
+
+	/*
+	 * runs graph on input tensor, with a full trace of the operations
+	 * recorded in the profile if it has samples left
+	 *
+	 */
+	public static Tensor executeGraph(final SavedModelBundle model,
+		final Tensor image, final TensorInfo inputTensorInfo,
+		final TensorInfo outputTensorInfo, final OpProfile profile)
+		throws IllegalArgumentException, ExecutionException
+	{
 
-		final Tensor output_t = model.session().runner() //
+		final Session.Runner runner = model.session().runner() //
 			.feed(opName(inputTensorInfo), image) //
-			.fetch(opName(outputTensorInfo)) //
-			.run().get(0);
+			.fetch(opName(outputTensorInfo));
+
+		final Tensor output_t;
+		if (profile != null && profile.nextSample()) {
+			final Session.Run run = runner.setOptions(RunOptions.newBuilder()
+				.setTraceLevel(RunOptions.TraceLevel.FULL_TRACE).build().toByteArray())
+				.runAndFetchMetadata();
+			output_t = run.outputs.get(0);
+			addStepStats(profile, model.graph(), run.metadata);
+		}
+		else {
+			output_t = runner.run().get(0);
+		}
 
 		if (output_t != null) {
 
 			if (output_t.numDimensions() == 0) {
+				output_t.close();
 				showError("Output tensor has no dimensions");
 				throw new ExecutionException("Output tensor has no dimensions", null);
 			}
@@ -66,6 +103,42 @@ public class TensorFlowRunner {
 		return output_t;
 	}
 
+	/**
+	 * Adds the compute time and allocated memory of each node in the step stats
+	 * of a traced run to the profile. Stream devices of GPUs are skipped, they
+	 * repeat the nodes of their device.
+	 */
+	private static void addStepStats(final OpProfile profile, final Graph graph,
+		final byte[] metadata)
+	{
+		if (metadata == null) return;
+		final RunMetadata runMetadata;
+		try {
+			runMetadata = RunMetadata.parseFrom(metadata);
+		}
+		catch (final InvalidProtocolBufferException e) {
+			return;
+		}
+		for (final DeviceStepStats device : runMetadata.getStepStats()
+			.getDevStatsList())
+		{
+			if (device.getDevice().contains("/stream:") || device.getDevice()
+				.contains("/memcpy")) continue;
+			for (final NodeExecStats node : device.getNodeStatsList()) {
+				final Operation operation = graph.operation(node.getNodeName());
+				final String type = operation != null ? operation.type() : node
+					.getNodeName();
+				long micros = node.getOpEndRelMicros() - node.getOpStartRelMicros();
+				if (micros <= 0) micros = node.getAllEndRelMicros();
+				long bytes = 0;
+				for (final AllocatorMemoryUsed memory : node.getMemoryList()) {
+					bytes += memory.getTotalBytes();
+				}
+				profile.addOp(node.getNodeName(), type, micros, bytes);
+			}
+		}
+	}
+
 	/**
 	 * The SignatureDef inputs and outputs contain names of the form
 	 * {@code <operation_name>:<output_index>}, where for this model,
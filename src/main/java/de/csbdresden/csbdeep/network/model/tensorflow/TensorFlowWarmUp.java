@@ -0,0 +1,218 @@
+package de.csbdresden.csbdeep.network.model.tensorflow;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.scijava.io.location.Location;
+import org.scijava.thread.ThreadService;
+import org.tensorflow.SavedModelBundle;
+import org.tensorflow.Tensor;
+import org.tensorflow.framework.MetaGraphDef;
+import org.tensorflow.framework.SignatureDef;
+import org.tensorflow.framework.TensorInfo;
+
+import de.csbdresden.csbdeep.util.IOHelper;
+import net.imagej.tensorflow.TensorFlowService;
+import net.imglib2.util.Intervals;
+
+/**
+ * Loads the TensorFlow library and a model in the background, e.g. while the
+ * dialog of a command is open, and runs a tile of zeros through the model.
+ * The first prediction then neither waits for the library and the model nor
+ * pays for optimizing the graph and allocating memory for the tile shape.
+ * <p>
+ * The model stays in the cache of the {@link TensorFlowService} or, for local
+ * models, of {@link StoredModelBundles}, the next network loading it gets the
+ * warmed up session. A local model which is not used by a network, e.g.
+ * because the dialog got canceled, is closed again by {@link #discard(String)}
+ * or {@link #UNUSED_TIMEOUT_MINUTES} after the warm up started.
+ */
+public class TensorFlowWarmUp {
+
+	public static final long UNUSED_TIMEOUT_MINUTES = 10;
+
+	private static class WarmUp {
+
+		private Future<?> future;
+		private File modelDir;
+		private boolean discarded;
+
+		/**
+		 * Keeps the warmed up local model for the next network unless the warm
+		 * up got discarded in the meantime.
+		 */
+		private synchronized void done(final File dir) {
+			if (discarded) {
+				StoredModelBundles.release(dir);
+				return;
+			}
+			StoredModelBundles.releaseWarmedUp(dir);
+			modelDir = dir;
+		}
+
+		private synchronized void discard() {
+			discarded = true;
+			if (modelDir != null) StoredModelBundles.releaseUnused(modelDir);
+		}
+	}
+
+	private static Future<?> library;
+	private static final Map<String, WarmUp> models = new ConcurrentHashMap<>();
+	private static final ScheduledExecutorService timeouts = Executors
+		.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "CSBDeep warm up timeout");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+	private TensorFlowWarmUp() {}
+
+	/**
+	 * Starts loading the TensorFlow library unless it was started before.
+	 */
+	public static synchronized Future<?> loadLibrary(
+		final TensorFlowService tensorFlowService,
+		final ThreadService threadService)
+	{
+		if (library == null) {
+			library = threadService.run(tensorFlowService::loadLibrary);
+		}
+		return library;
+	}
+
+	/**
+	 * Waits until the TensorFlow library is loaded, starting to load it if
+	 * needed.
+	 */
+	public static void awaitLibrary(final TensorFlowService tensorFlowService,
+		final ThreadService threadService)
+	{
+		try {
+			loadLibrary(tensorFlowService, threadService).get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			// the network reports the status of the library
+		}
+	}
+
+	/**
+	 * Starts loading the model and, if the tile shape is known, running a tile
+	 * of zeros through it. Nothing happens if the model is already warming up.
+	 *
+	 * @param modelFileUrl path or URL of the model
+	 * @param modelName the cache name of the model
+	 * @param tileShape shape of the input tensor of the planned tiles or
+	 *          {@code null}
+	 */
+	public static void warmUp(final TensorFlowService tensorFlowService,
+		final ThreadService threadService, final String modelFileUrl,
+		final String modelName, final long[] tileShape)
+	{
+		final Future<?> libraryLoading = loadLibrary(tensorFlowService,
+			threadService);
+		models.computeIfAbsent(modelName, name -> {
+			final WarmUp warmUp = new WarmUp();
+			warmUp.future = threadService.run(() -> warmUp(tensorFlowService,
+				libraryLoading, modelFileUrl, modelName, tileShape, warmUp));
+			timeouts.schedule(() -> discard(name, warmUp), UNUSED_TIMEOUT_MINUTES,
+				TimeUnit.MINUTES);
+			return warmUp;
+		});
+	}
+
+	private static void warmUp(final TensorFlowService tensorFlowService,
+		final Future<?> libraryLoading, final String modelFileUrl,
+		final String modelName, final long[] tileShape, final WarmUp warmUp)
+	{
+		try {
+			libraryLoading.get();
+			if (!tensorFlowService.getStatus().isLoaded()) return;
+			final Location source = IOHelper.loadFileOrURL(modelFileUrl);
+			final File modelDir = StoredModelBundles.getModelDir(source);
+			if (modelDir == null) {
+				final SavedModelBundle model = tensorFlowService.loadCachedModel(
+					source, modelName, TensorFlowNetwork.MODEL_TAG).model();
+				if (tileShape != null) runZeroTile(model, tileShape);
+				return;
+			}
+			final SavedModelBundle model = StoredModelBundles.acquire(modelDir);
+			try {
+				if (tileShape != null) runZeroTile(model, tileShape);
+			}
+			finally {
+				warmUp.done(modelDir);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (IOException | ExecutionException | RuntimeException e) {
+			// the network reports problems with the model when loading it
+		}
+	}
+
+	/**
+	 * Waits until the warm up of the model is done, so that the model does not
+	 * get loaded twice at the same time. The caller is expected to load the
+	 * model next, the warm up is consumed and the model can be warmed up again
+	 * afterwards.
+	 */
+	public static void await(final String modelName) {
+		final WarmUp warmUp = modelName == null ? null : models.remove(modelName);
+		if (warmUp == null) return;
+		try {
+			warmUp.future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			// see warmUp
+		}
+	}
+
+	/**
+	 * Forgets the warm up of the model if it was not consumed by
+	 * {@link #await(String)}, a warmed up local model is closed unless a
+	 * network uses it.
+	 */
+	public static void discard(final String modelName) {
+		final WarmUp warmUp = modelName == null ? null : models.remove(modelName);
+		if (warmUp != null) warmUp.discard();
+	}
+
+	private static void discard(final String modelName, final WarmUp warmUp) {
+		if (models.remove(modelName, warmUp)) warmUp.discard();
+	}
+
+	private static void runZeroTile(final SavedModelBundle model,
+		final long[] tileShape) throws IOException, ExecutionException
+	{
+		final SignatureDef sig = MetaGraphDef.parseFrom(model
+			.metaGraphDef()).getSignatureDefOrThrow(
+				TensorFlowNetwork.DEFAULT_SERVING_SIGNATURE_DEF_KEY);
+		if (sig.getInputsCount() == 0 || sig.getOutputsCount() == 0) return;
+		final TensorInfo input = sig.getInputsMap().values().iterator().next();
+		final TensorInfo output = sig.getOutputsMap().values().iterator().next();
+		final FloatBuffer zeros = FloatBuffer.allocate((int) Intervals
+			.numElements(tileShape));
+		try (Tensor<Float> tile = Tensor.create(tileShape, zeros);
+				Tensor<?> result = TensorFlowRunner.executeGraph(model, tile,
+					input, output))
+		{
+			// only the side effects of the run are of interest
+		}
+	}
+
+}
@@ -0,0 +1,37 @@
+package de.csbdresden.csbdeep.network.model.tensorflow;
+
+import org.tensorflow.Tensor;
+
+import de.csbdresden.csbdeep.metrics.MemoryAccounting;
+
+/**
+ * Registers the native memory of tensors with a {@link MemoryAccounting}.
+ */
+class TrackedTensors {
+
+	private TrackedTensors() {}
+
+	/**
+	 * @return the tensor, registered as allocated by the stage
+	 */
+	static Tensor track(final Tensor tensor, final String stage,
+		final MemoryAccounting memory)
+	{
+		if (tensor == null) return null;
+		return memory.allocated(tensor, tensor.numBytes(), stage);
+	}
+
+	/**
+	 * Closes the tensor and unregisters it, ignores {@code null}.
+	 */
+	static void close(final Tensor tensor, final MemoryAccounting memory) {
+		if (tensor == null) return;
+		try {
+			tensor.close();
+		}
+		finally {
+			memory.released(tensor);
+		}
+	}
+
+}
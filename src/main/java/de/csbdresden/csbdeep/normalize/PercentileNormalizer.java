@@ -47,6 +47,7 @@ public class PercentileNormalizer<T extends RealType<T> & NativeType<T>>
 	private float[] percentiles = new float[] { 3, 99.7f };
 	private float[] destValues = new float[] { 0, 1 };
 	private float[] resValues;
+	private float[] fixedResValues;
 	private boolean clip = false;
 
 	protected float min;
@@ -64,9 +65,14 @@ public class PercentileNormalizer<T extends RealType<T> & NativeType<T>>
 	public Dataset normalize(final Dataset im, OpService opService,
 		DatasetService datasetService)
 	{
-		HistogramPercentile<T> percentile = new HistogramPercentile<>();
-		resValues = percentile.computePercentiles((RandomAccessibleInterval<T>) im
-			.getImgPlus(), percentiles, opService);
+		if (fixedResValues != null) {
+			resValues = fixedResValues;
+		}
+		else {
+			HistogramPercentile<T> percentile = new HistogramPercentile<>();
+			resValues = percentile.computePercentiles((RandomAccessibleInterval<T>) im
+				.getImgPlus(), percentiles, opService);
+		}
 		min = destValues[0];
 		max = destValues[1];
 		if(resValues[1] - resValues[0] < 0.0000001) factor = 1;
@@ -109,4 +115,16 @@ public class PercentileNormalizer<T extends RealType<T> & NativeType<T>>
 		return resValues;
 	}
 
+	/**
+	 * Sets the intensities mapped to the destination values instead of
+	 * computing the percentiles of each normalized image, e.g. to normalize
+	 * parts of an image like the whole image.
+	 *
+	 * @param resValues the intensities of the bottom and top percentile or
+	 *          {@code null} to compute them from each image
+	 */
+	public void setResValues(final float[] resValues) {
+		this.fixedResValues = resValues;
+	}
+
 }
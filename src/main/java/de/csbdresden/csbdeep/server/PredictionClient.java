@@ -0,0 +1,138 @@
+package de.csbdresden.csbdeep.server;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Thin client of the {@link PredictionServer}. It only depends on the JDK so
+ * that it starts fast enough to be called for every image of a shell
+ * pipeline.
+ */
+public class PredictionClient {
+
+	private final String baseUrl;
+
+	public PredictionClient(final int port) {
+		this(PredictionServer.LOOPBACK, port);
+	}
+
+	public PredictionClient(final String host, final int port) {
+		baseUrl = "http://" + host + ":" + port;
+	}
+
+	/**
+	 * @return the status of the server as JSON
+	 */
+	public String status() throws IOException {
+		final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl +
+			"/status").openConnection();
+		try (InputStream in = checkResponse(connection)) {
+			return new String(PredictionServer.readAll(in), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Sends a TIFF file to the server and writes the TIFF response to the
+	 * output stream.
+	 *
+	 * @param model path or URL of the model, {@code null} for the default model
+	 *          of the server
+	 */
+	public void predict(final String model, final InputStream tiff,
+		final OutputStream out) throws IOException
+	{
+		final StringBuilder url = new StringBuilder(baseUrl).append("/predict");
+		if (model != null) {
+			url.append("?model=").append(URLEncoder.encode(model, "UTF-8"));
+		}
+		final HttpURLConnection connection = (HttpURLConnection) new URL(url
+			.toString()).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setChunkedStreamingMode(64 * 1024);
+		connection.setRequestProperty("Content-Type", "image/tiff");
+		try (OutputStream request = connection.getOutputStream()) {
+			copy(tiff, request);
+		}
+		try (InputStream in = checkResponse(connection)) {
+			copy(in, out);
+		}
+	}
+
+	private static InputStream checkResponse(final HttpURLConnection connection)
+		throws IOException
+	{
+		final int status = connection.getResponseCode();
+		if (status != HttpURLConnection.HTTP_OK) {
+			String message = "";
+			if (connection.getErrorStream() != null) {
+				try (InputStream error = connection.getErrorStream()) {
+					message = new String(PredictionServer.readAll(error),
+						StandardCharsets.UTF_8).trim();
+				}
+			}
+			throw new IOException("Server responded with " + status + ": " +
+				message);
+		}
+		return connection.getInputStream();
+	}
+
+	private static void copy(final InputStream in, final OutputStream out)
+		throws IOException
+	{
+		final byte[] buffer = new byte[64 * 1024];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Command line client, use {@code -} as input or output to read from stdin
+	 * or write to stdout.
+	 */
+	public static void main(final String... args) {
+		int port = PredictionServer.DEFAULT_PORT;
+		String model = null;
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("--"); i += 2) {
+			if (i + 1 >= args.length) break;
+			if (args[i].equals("--port")) port = Integer.parseInt(args[i + 1]);
+			else if (args[i].equals("--model")) model = args[i + 1];
+		}
+		final PredictionClient client = new PredictionClient(port);
+		try {
+			if (args.length == i + 1 && args[i].equals("status")) {
+				System.out.println(client.status());
+				return;
+			}
+			if (args.length == i + 3 && args[i].equals("predict")) {
+				try (InputStream in = args[i + 1].equals("-") ? System.in
+					: new FileInputStream(args[i + 1]);
+						OutputStream out = args[i + 2].equals("-") ? System.out
+							: new FileOutputStream(args[i + 2]))
+				{
+					client.predict(model, in, out);
+				}
+				return;
+			}
+		}
+		catch (final IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+		System.err.println("Usage: PredictionClient [--port <port>] status\n" +
+			"       PredictionClient [--port <port>] [--model <model.zip>] " +
+			"predict <input.tif|-> <output.tif|->");
+		System.exit(2);
+	}
+
+}
@@ -0,0 +1,443 @@
+package de.csbdresden.csbdeep.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.scif.services.DatasetIOService;
+import net.imagej.Dataset;
+import net.imagej.DatasetService;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Local HTTP server running predictions for other processes, e.g. scripts or
+ * shell pipelines, without starting ImageJ and loading the model for each
+ * call. The server only listens on the loopback interface.
+ * <p>
+ * Endpoints:
+ * <ul>
+ * <li>{@code POST /predict?model=<path or URL>} with a TIFF file as body,
+ * responds with the output as TIFF file</li>
+ * <li>{@code POST /predict?format=raw&dims=<x,y,..>&axes=<X,Y,..>} with
+ * little endian float32 pixels as body, responds with float32 pixels and the
+ * output dimensions and axes in the {@code X-Dims} and {@code X-Axes}
+ * headers</li>
+ * <li>{@code GET /status} responds with the number of queued and running
+ * predictions as JSON</li>
+ * </ul>
+ * Request bodies larger than {@link #setMaxRequestSize(long)} are rejected
+ * with status 413, models the backend does not allow with status 403.
+ */
+public class PredictionServer {
+
+	public static final int DEFAULT_PORT = 8765;
+	static final String LOOPBACK = "127.0.0.1";
+
+	public static final String FORMAT_TIFF = "tiff";
+	public static final String FORMAT_RAW = "raw";
+
+	public static final long DEFAULT_MAX_REQUEST_BYTES = 1L << 30;
+
+	/** Largest byte array the JVM allocates. */
+	private static final long MAX_ARRAY_BYTES = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Runs the predictions of the server, called concurrently by up to
+	 * {@code threads} request threads.
+	 */
+	public interface Backend {
+
+		/**
+		 * @param model the model of the request, {@code null} for the default
+		 *          model of the backend
+		 * @return the output or {@code null} if the prediction failed
+		 * @throws SecurityException if the backend does not allow the model
+		 */
+		Dataset predict(String model, Dataset input) throws Exception;
+
+		/**
+		 * @return the models currently loaded by the backend
+		 */
+		default Collection<String> getLoadedModels() {
+			return Collections.emptyList();
+		}
+	}
+
+	private final DatasetService datasetService;
+	private final DatasetIOService datasetIOService;
+	private final Backend backend;
+	private final int threads;
+	private final int maxQueued;
+	private final Semaphore slots;
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicLong processed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private volatile long maxRequestBytes = DEFAULT_MAX_REQUEST_BYTES;
+	private HttpServer server;
+	private ExecutorService pool;
+
+	/**
+	 * @param threads number of predictions running at the same time
+	 * @param maxQueued number of requests waiting for a free prediction slot,
+	 *          further requests are rejected with status 503
+	 */
+	public PredictionServer(final DatasetService datasetService,
+		final DatasetIOService datasetIOService, final Backend backend,
+		final int threads, final int maxQueued)
+	{
+		this.datasetService = datasetService;
+		this.datasetIOService = datasetIOService;
+		this.backend = backend;
+		this.threads = threads;
+		this.maxQueued = maxQueued;
+		slots = new Semaphore(threads, true);
+	}
+
+	/**
+	 * Starts listening on the loopback interface.
+	 *
+	 * @param port the port, 0 to pick a free one (see {@link #getPort()})
+	 */
+	public void start(final int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(LOOPBACK, port), 0);
+		server.createContext("/predict", this::handlePredict);
+		server.createContext("/status", this::handleStatus);
+		// request threads mostly wait for a prediction slot or transfer data
+		pool = Executors.newCachedThreadPool();
+		server.setExecutor(pool);
+		server.start();
+	}
+
+	public void stop() {
+		if (server != null) server.stop(0);
+		if (pool != null) pool.shutdownNow();
+		server = null;
+		pool = null;
+	}
+
+	public int getPort() {
+		return server == null ? -1 : server.getAddress().getPort();
+	}
+
+	/**
+	 * @param maxRequestBytes largest accepted request body, raw inputs are
+	 *          additionally limited to 2 GB
+	 */
+	public void setMaxRequestSize(final long maxRequestBytes) {
+		this.maxRequestBytes = maxRequestBytes;
+	}
+
+	public int getQueued() {
+		return queued.get();
+	}
+
+	public int getRunning() {
+		return running.get();
+	}
+
+	private void handleStatus(final HttpExchange exchange) throws IOException {
+		final JsonObject status = new JsonObject();
+		status.addProperty("queued", queued.get());
+		status.addProperty("running", running.get());
+		status.addProperty("threads", threads);
+		status.addProperty("maxQueued", maxQueued);
+		status.addProperty("processed", processed.get());
+		status.addProperty("failed", failed.get());
+		final JsonArray models = new JsonArray();
+		for (final String model : backend.getLoadedModels()) {
+			models.add(model);
+		}
+		status.add("models", models);
+		send(exchange, 200, "application/json", status.toString().getBytes(
+			StandardCharsets.UTF_8));
+	}
+
+	private void handlePredict(final HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				sendError(exchange, 405, "Use POST to send the input image");
+				return;
+			}
+			final Map<String, String> query = parseQuery(exchange.getRequestURI()
+				.getRawQuery());
+			final String format = query.getOrDefault("format", FORMAT_TIFF);
+			if (!FORMAT_TIFF.equals(format) && !FORMAT_RAW.equals(format)) {
+				sendError(exchange, 400, "Unknown format " + format);
+				return;
+			}
+			final String length = exchange.getRequestHeaders().getFirst(
+				"Content-Length");
+			if (length != null && Long.parseLong(length) > maxRequestBytes) {
+				sendError(exchange, 413, "Request body exceeds " + maxRequestBytes +
+					" bytes");
+				return;
+			}
+			if (queued.incrementAndGet() > maxQueued) {
+				queued.decrementAndGet();
+				sendError(exchange, 503, "Too many queued requests");
+				return;
+			}
+			final Dataset input;
+			try {
+				input = FORMAT_RAW.equals(format) ? readRaw(exchange
+					.getRequestBody(), query) : readTiff(exchange.getRequestBody());
+				slots.acquire();
+			}
+			finally {
+				queued.decrementAndGet();
+			}
+			final Dataset output;
+			running.incrementAndGet();
+			try {
+				output = backend.predict(query.get("model"), input);
+			}
+			finally {
+				running.decrementAndGet();
+				slots.release();
+			}
+			if (output == null) {
+				failed.incrementAndGet();
+				sendError(exchange, 500, "Prediction failed");
+				return;
+			}
+			if (FORMAT_RAW.equals(format)) sendRaw(exchange, output);
+			else sendTiff(exchange, output);
+			processed.incrementAndGet();
+		}
+		catch (final RequestTooLargeException e) {
+			sendError(exchange, 413, e.getMessage());
+		}
+		catch (final IllegalArgumentException e) {
+			sendError(exchange, 400, e.getMessage());
+		}
+		catch (final SecurityException e) {
+			sendError(exchange, 403, e.getMessage());
+		}
+		catch (final Exception e) {
+			failed.incrementAndGet();
+			sendError(exchange, 500, String.valueOf(e.getMessage()));
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	private Dataset readTiff(final InputStream in) throws IOException {
+		final File file = File.createTempFile("csbdeep-input", ".tif");
+		try {
+			try (OutputStream out = Files.newOutputStream(file.toPath())) {
+				copy(in, out, maxRequestBytes);
+			}
+			return datasetIOService.open(file.getAbsolutePath());
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	private void sendTiff(final HttpExchange exchange, final Dataset output)
+		throws IOException
+	{
+		final File file = File.createTempFile("csbdeep-output", ".tif");
+		try {
+			// the writer does not overwrite existing files
+			file.delete();
+			datasetIOService.save(output, file.getAbsolutePath());
+			// streamed, the output can be larger than an array
+			exchange.getResponseHeaders().set("Content-Type", "image/tiff");
+			exchange.sendResponseHeaders(200, file.length());
+			try (OutputStream out = exchange.getResponseBody()) {
+				Files.copy(file.toPath(), out);
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	private Dataset readRaw(final InputStream in,
+		final Map<String, String> query) throws IOException
+	{
+		final String dimsParam = query.get("dims");
+		if (dimsParam == null) {
+			throw new IllegalArgumentException(
+				"Raw input needs the dimensions (dims=x,y,..)");
+		}
+		final String[] dimsValues = dimsParam.split(",");
+		final long[] dims = new long[dimsValues.length];
+		for (int i = 0; i < dims.length; i++) {
+			dims[i] = Long.parseLong(dimsValues[i].trim());
+		}
+		final AxisType[] axes = parseAxes(query.get("axes"), dims.length);
+		final long expected = Intervals.numElements(dims) * 4;
+		if (expected > Math.min(maxRequestBytes, MAX_ARRAY_BYTES)) {
+			throw new RequestTooLargeException("Raw input of " + expected +
+				" bytes exceeds " + Math.min(maxRequestBytes, MAX_ARRAY_BYTES) +
+				" bytes, use the TIFF format for large inputs");
+		}
+		final byte[] bytes = readAll(in, expected);
+		if (bytes.length != expected) {
+			throw new IllegalArgumentException("Expected " + expected +
+				" bytes of float32 pixels, got " + bytes.length);
+		}
+		final float[] data = new float[bytes.length / 4];
+		ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(
+			data);
+		final Dataset dataset = datasetService.create(ArrayImgs.floats(data,
+			dims));
+		for (int i = 0; i < axes.length; i++) {
+			dataset.axis(i).setType(axes[i]);
+		}
+		return dataset;
+	}
+
+	private static AxisType[] parseAxes(final String axesParam,
+		final int numDimensions)
+	{
+		final AxisType[] defaults = { Axes.X, Axes.Y, Axes.Z, Axes.CHANNEL,
+			Axes.TIME };
+		final AxisType[] axes = new AxisType[numDimensions];
+		final String[] labels = axesParam == null ? new String[0] : axesParam
+			.split(",");
+		if (axesParam != null && labels.length != numDimensions) {
+			throw new IllegalArgumentException("Number of axes and dimensions differ");
+		}
+		for (int i = 0; i < numDimensions; i++) {
+			if (axesParam != null) axes[i] = Axes.get(labels[i].trim());
+			else if (i < defaults.length) axes[i] = defaults[i];
+			else throw new IllegalArgumentException("Please provide the axes");
+		}
+		return axes;
+	}
+
+	private void sendRaw(final HttpExchange exchange, final Dataset output)
+		throws IOException
+	{
+		final RandomAccessibleInterval<? extends RealType<?>> img = output
+			.getImgPlus();
+		final long size = Intervals.numElements(img) * 4;
+		if (size > MAX_ARRAY_BYTES) {
+			throw new IllegalStateException("Output of " + size +
+				" bytes is too large for the raw format, use the TIFF format");
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate((int) size).order(
+			ByteOrder.LITTLE_ENDIAN);
+		for (final RealType<?> pixel : Views.flatIterable(img)) {
+			buffer.putFloat(pixel.getRealFloat());
+		}
+		final StringBuilder dims = new StringBuilder();
+		final StringBuilder axes = new StringBuilder();
+		for (int i = 0; i < output.numDimensions(); i++) {
+			if (i > 0) {
+				dims.append(',');
+				axes.append(',');
+			}
+			dims.append(output.dimension(i));
+			axes.append(output.axis(i).type().getLabel());
+		}
+		exchange.getResponseHeaders().add("X-Dims", dims.toString());
+		exchange.getResponseHeaders().add("X-Axes", axes.toString());
+		send(exchange, 200, "application/octet-stream", buffer.array());
+	}
+
+	private static void send(final HttpExchange exchange, final int status,
+		final String contentType, final byte[] body) throws IOException
+	{
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static void sendError(final HttpExchange exchange, final int status,
+		final String message) throws IOException
+	{
+		send(exchange, status, "text/plain; charset=utf-8", (message + "\n")
+			.getBytes(StandardCharsets.UTF_8));
+	}
+
+	static byte[] readAll(final InputStream in) throws IOException {
+		return readAll(in, MAX_ARRAY_BYTES);
+	}
+
+	/**
+	 * @throws RequestTooLargeException if the stream is longer than
+	 *           {@code maxBytes}
+	 */
+	static byte[] readAll(final InputStream in, final long maxBytes)
+		throws IOException
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		copy(in, out, maxBytes);
+		return out.toByteArray();
+	}
+
+	private static void copy(final InputStream in, final OutputStream out,
+		final long maxBytes) throws IOException
+	{
+		final byte[] buffer = new byte[64 * 1024];
+		long total = 0;
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			total += read;
+			if (total > maxBytes) {
+				throw new RequestTooLargeException("Request body exceeds " +
+					maxBytes + " bytes");
+			}
+			out.write(buffer, 0, read);
+		}
+	}
+
+	static Map<String, String> parseQuery(final String query)
+		throws UnsupportedEncodingException
+	{
+		final Map<String, String> res = new HashMap<>();
+		if (query == null || query.isEmpty()) return res;
+		for (final String pair : query.split("&")) {
+			final int split = pair.indexOf('=');
+			if (split < 0) res.put(URLDecoder.decode(pair, "UTF-8"), "");
+			else res.put(URLDecoder.decode(pair.substring(0, split), "UTF-8"),
+				URLDecoder.decode(pair.substring(split + 1), "UTF-8"));
+		}
+		return res;
+	}
+
+	static class RequestTooLargeException extends IllegalArgumentException {
+
+		RequestTooLargeException(final String message) {
+			super(message);
+		}
+	}
+
+}
@@ -1,6 +1,9 @@
 
 package de.csbdresden.csbdeep.task;
 
+import de.csbdresden.csbdeep.metrics.MemoryAccounting;
+import de.csbdresden.csbdeep.metrics.RunMetrics;
+
 public class DefaultTask implements Task {
 
 	protected boolean started = false;
@@ -12,6 +15,12 @@ public class DefaultTask implements Task {
 	protected int currentIteration = 0;
 	protected int currentStep = 0;
 	protected String title;
+	private long startTime = -1;
+	private long startThread;
+	private long startCpuTime;
+	private long wallTime;
+	private long cpuTime;
+	private MemoryAccounting memory = MemoryAccounting.getDefault();
 
 	@Override
 	public void setManager(final TaskManager manager) {
@@ -43,6 +52,7 @@ public class DefaultTask implements Task {
 	public void setStarted() {
 		started = true;
 		failed = false;
+		startTiming();
 		debug(getClassName() + " started");
 		updateManager();
 	}
@@ -51,6 +61,7 @@ public class DefaultTask implements Task {
 	public void setIdle() {
 		started = false;
 		failed = false;
+		stopTiming();
 		debug(getClassName() + " idle");
 
 		updateManager();
@@ -59,6 +70,7 @@ public class DefaultTask implements Task {
 	@Override
 	public void setFailed() {
 		failed = true;
+		stopTiming();
 		debug(getClassName() + " failed");
 		updateManager();
 	}
@@ -72,9 +84,57 @@ public class DefaultTask implements Task {
 	@Override
 	public void setFinished(final boolean finished) {
 		this.finished = finished;
+		if (finished) stopTiming();
 		updateManager();
 	}
 
+	private void startTiming() {
+		if (startTime >= 0) return;
+		startTime = System.nanoTime();
+		startThread = Thread.currentThread().getId();
+		startCpuTime = RunMetrics.getThreadCpuTime(startThread);
+	}
+
+	private void stopTiming() {
+		if (startTime < 0) return;
+		wallTime += System.nanoTime() - startTime;
+		cpuTime += getCpuTimeSinceStart();
+		startTime = -1;
+		memory.sampleHeap(getTitle());
+	}
+
+	/**
+	 * @return CPU time of the thread which started the task, the time of
+	 *         threads the task hands work to is not included
+	 */
+	private long getCpuTimeSinceStart() {
+		final long time = RunMetrics.getThreadCpuTime(startThread);
+		return time >= startCpuTime ? time - startCpuTime : 0;
+	}
+
+	@Override
+	public long getWallTime() {
+		return startTime < 0 ? wallTime : wallTime + System.nanoTime() -
+			startTime;
+	}
+
+	@Override
+	public long getCpuTime() {
+		return startTime < 0 ? cpuTime : cpuTime + getCpuTimeSinceStart();
+	}
+
+	@Override
+	public void setMemoryAccounting(final MemoryAccounting memory) {
+		this.memory = memory != null ? memory : MemoryAccounting.getDefault();
+	}
+
+	@Override
+	public void resetTime() {
+		wallTime = 0;
+		cpuTime = 0;
+		startTime = -1;
+	}
+
 	@Override
 	public boolean hasMultipleSteps() {
 		return numSteps() > 1;
@@ -0,0 +1,69 @@
+package de.csbdresden.csbdeep.task;
+
+import org.scijava.log.LogService;
+
+/**
+ * Task manager without progress dialog, forwarding messages of its tasks to
+ * a {@link LogService}. Informational messages are logged at debug level.
+ * The manager does not keep track of its tasks and can be shared between
+ * threads.
+ */
+public class LogTaskManager implements TaskManager {
+
+	private final LogService logger;
+
+	public LogTaskManager(final LogService logger) {
+		this.logger = logger;
+	}
+
+	@Override
+	public void initialize() {}
+
+	@Override
+	public void add(final Task task) {
+		task.setManager(this);
+	}
+
+	@Override
+	public void debug(final String msg) {
+		logger.trace(msg);
+	}
+
+	@Override
+	public void log(final String msg) {
+		logger.debug(msg);
+	}
+
+	@Override
+	public void logWarning(final String msg) {
+		logger.warn(msg);
+	}
+
+	@Override
+	public void logError(final String msg) {
+		logger.error(msg);
+	}
+
+	@Override
+	public void finalizeSetup() {}
+
+	@Override
+	public void update(final Task task) {}
+
+	@Override
+	public void close() {}
+
+	@Override
+	public boolean isCanceled() {
+		return false;
+	}
+
+	@Override
+	public void cancel(final String reason) {}
+
+	@Override
+	public String getCancelReason() {
+		return null;
+	}
+
+}
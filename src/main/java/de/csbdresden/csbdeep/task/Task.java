@@ -3,6 +3,8 @@ package de.csbdresden.csbdeep.task;
 
 import org.scijava.Cancelable;
 
+import de.csbdresden.csbdeep.metrics.MemoryAccounting;
+
 public interface Task extends Cancelable {
 
 	void setManager(TaskManager manager);
@@ -62,4 +64,24 @@ public interface Task extends Cancelable {
 	void setTitle(String title);
 
 	void logWarning(String s);
+
+	/**
+	 * @return nanoseconds the task was running since the last
+	 *         {@link #resetTime()}
+	 */
+	long getWallTime();
+
+	/**
+	 * @return nanoseconds of CPU time the thread running the task used since
+	 *         the last {@link #resetTime()}
+	 */
+	long getCpuTime();
+
+	void resetTime();
+
+	/**
+	 * Sets the accounting the heap usage is sampled into when the task stops,
+	 * {@code null} for the accounting of the process.
+	 */
+	default void setMemoryAccounting(MemoryAccounting memory) {}
 }
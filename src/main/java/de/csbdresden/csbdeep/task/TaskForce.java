@@ -1,6 +1,8 @@
 
 package de.csbdresden.csbdeep.task;
 
+import de.csbdresden.csbdeep.metrics.MemoryAccounting;
+
 public class TaskForce extends DefaultTask {
 
 	private final Task[] tasks;
@@ -82,4 +84,37 @@ public class TaskForce extends DefaultTask {
 	public void setFinished() {
 		setFinished(true);
 	}
+
+	@Override
+	public long getWallTime() {
+		long wallTime = 0;
+		for (final Task task : tasks) {
+			wallTime += task.getWallTime();
+		}
+		return wallTime;
+	}
+
+	@Override
+	public long getCpuTime() {
+		long cpuTime = 0;
+		for (final Task task : tasks) {
+			cpuTime += task.getCpuTime();
+		}
+		return cpuTime;
+	}
+
+	@Override
+	public void resetTime() {
+		for (final Task task : tasks) {
+			task.resetTime();
+		}
+	}
+
+	@Override
+	public void setMemoryAccounting(final MemoryAccounting memory) {
+		super.setMemoryAccounting(memory);
+		for (final Task task : tasks) {
+			task.setMemoryAccounting(memory);
+		}
+	}
 }
@@ -59,6 +59,10 @@ public class TaskForceManager extends DefaultTaskManager {
 		}
 	}
 
+	public List<TaskForce> getTaskForces() {
+		return taskForces;
+	}
+
 	public <T extends Task> void createTaskForce(final String codeName,
 		final T... tasks)
 	{
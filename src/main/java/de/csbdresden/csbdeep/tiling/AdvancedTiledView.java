@@ -16,6 +16,7 @@ public class AdvancedTiledView<T extends RealType<T>> extends TiledView<T> {
 	private final Map<AxisType, Long> originalDims;
 	private final AxisType[] originalAxes;
 	private List<RandomAccessibleInterval<T>> processedTiles;
+	private long[] tileOrder;
 	// protected int blockMultiple;
 	// protected long blockWidth;
 
@@ -48,6 +49,19 @@ public class AdvancedTiledView<T extends RealType<T>> extends TiledView<T> {
 		return originalAxes;
 	}
 
+	/**
+	 * @return the flat indices of the tiles in the order they should be
+	 *         processed or {@code null} if they should be processed in cursor
+	 *         order
+	 */
+	public long[] getTileOrder() {
+		return tileOrder;
+	}
+
+	public void setTileOrder(long[] tileOrder) {
+		this.tileOrder = tileOrder;
+	}
+
 	public void dispose() {
 		// if(originalDims != null) {
 		// originalDims.clear();
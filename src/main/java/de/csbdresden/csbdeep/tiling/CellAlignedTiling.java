@@ -0,0 +1,58 @@
+package de.csbdresden.csbdeep.tiling;
+
+import java.util.Map;
+
+import net.imagej.axis.AxisType;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+
+/**
+ * Tiling for images stored in cells (e.g. {@code CellImg} or disk cached
+ * images). Tile sizes are rounded to multiples of the cell size wherever the
+ * block multiple of the network allows it, so that the tile cores start at
+ * cell boundaries. The tiles are processed along a Z-order curve to reuse
+ * cells which were already loaded for the previous tiles.
+ */
+public class CellAlignedTiling<T extends RealType<T>> extends DefaultTiling<T> {
+
+	private final Map<AxisType, Long> cellDimensions;
+
+	public CellAlignedTiling(final int tilesNum, final int batchSize,
+		final int blockMultiple, final int overlap,
+		final Map<AxisType, Long> cellDimensions)
+	{
+		super(tilesNum, batchSize, blockMultiple, overlap);
+		this.cellDimensions = cellDimensions;
+	}
+
+	@Override
+	protected long getBlockMultiple(final RandomAccessibleInterval<T> input,
+		final int d)
+	{
+		final long multiple = super.getBlockMultiple(input, d);
+		final Long cellSize = axes != null && d < axes.length ? cellDimensions
+			.get(axes[d]) : null;
+		// only align if the cell size fits the block multiple of the network and
+		// the dimension holds more than one cell
+		if (cellSize == null || cellSize <= multiple || cellSize % multiple != 0 ||
+			cellSize * 2 > input.dimension(d))
+		{
+			return multiple;
+		}
+		return cellSize;
+	}
+
+	@Override
+	protected AdvancedTiledView<T> createTiledView(
+		final RandomAccessibleInterval<T> input, final long[] tileSize,
+		final long[] padding, final AxisType[] types)
+	{
+		final AdvancedTiledView<T> tiledView = super.createTiledView(input,
+			tileSize, padding, types);
+		tiledView.setTileOrder(TileOrder.zOrder(Intervals.dimensionsAsLongArray(
+			tiledView)));
+		return tiledView;
+	}
+
+}
@@ -0,0 +1,160 @@
+package de.csbdresden.csbdeep.tiling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+
+/**
+ * Tiling which searches all tile grids for the one with the least computed
+ * voxels (tile cores, overlap and padding to the block multiple) while no
+ * single tile exceeds a voxel limit. If no limit is given, the size of the
+ * largest tile {@link DefaultTiling} would create for the requested number of
+ * tiles is used as limit.
+ */
+public class CostOptimizedTiling<T extends RealType<T>> extends
+	DefaultTiling<T>
+{
+
+	private final long maxTileVoxels;
+	private double overheadRatio = 1;
+
+	public CostOptimizedTiling(final int tilesNum, final int batchSize,
+		final int blockMultiple, final int overlap)
+	{
+		this(tilesNum, batchSize, blockMultiple, overlap, 0);
+	}
+
+	public CostOptimizedTiling(final int tilesNum, final int batchSize,
+		final int blockMultiple, final int overlap, final long maxTileVoxels)
+	{
+		super(tilesNum, batchSize, blockMultiple, overlap);
+		this.maxTileVoxels = maxTileVoxels;
+	}
+
+	@Override
+	protected long[] computeTiling(final RandomAccessibleInterval<T> input,
+		final long[] tiling, final TilingAction[] tilingActions)
+	{
+		long limit = maxTileVoxels;
+		if (limit <= 0) {
+			final long[] reference = super.computeTiling(input, tiling.clone(),
+				tilingActions);
+			limit = getVoxelsPerTile(input, reference, tilingActions);
+		}
+
+		final List<long[]> candidates = new ArrayList<>();
+		for (int i = 0; i < tiling.length; i++) {
+			candidates.add(tilingActions[i] == TilingAction.TILE_WITH_PADDING
+				? getTileNumCandidates(input, i) : new long[] { tiling[i] });
+		}
+
+		final long[] current = tiling.clone();
+		final long[] best = new long[tiling.length];
+		final long[] bestCost = { -1, -1 };
+		final long[] smallest = new long[tiling.length];
+		final long[] smallestTile = { -1 };
+		search(input, tilingActions, candidates, 0, current, limit, best, bestCost,
+			smallest, smallestTile);
+
+		if (bestCost[0] < 0) {
+			// nothing fits into the limit, use the grid with the smallest tiles
+			System.arraycopy(smallest, 0, tiling, 0, tiling.length);
+		}
+		else {
+			System.arraycopy(best, 0, tiling, 0, tiling.length);
+		}
+
+		final long computed = getVoxelsPerTile(input, tiling, tilingActions) *
+			arrayProduct(tiling);
+		overheadRatio = (double) computed / (double) Intervals.numElements(input);
+		if (status != null) {
+			status.log("Tiling " + Arrays.toString(tiling) +
+				" computes " + String.format("%.2f", overheadRatio) +
+				" voxels per input voxel (tile limit: " + limit + " voxels)");
+		}
+		return tiling;
+	}
+
+	private void search(final RandomAccessibleInterval<T> input,
+		final TilingAction[] tilingActions, final List<long[]> candidates,
+		final int d, final long[] current, final long limit, final long[] best,
+		final long[] bestCost, final long[] smallest, final long[] smallestTile)
+	{
+		if (d == current.length) {
+			final long perTile = getVoxelsPerTile(input, current, tilingActions);
+			final long tiles = arrayProduct(current);
+			final long cost = perTile * tiles;
+			if (smallestTile[0] < 0 || perTile < smallestTile[0]) {
+				smallestTile[0] = perTile;
+				System.arraycopy(current, 0, smallest, 0, current.length);
+			}
+			if (perTile <= limit && (bestCost[0] < 0 || cost < bestCost[0] ||
+				(cost == bestCost[0] && tiles < bestCost[1])))
+			{
+				bestCost[0] = cost;
+				bestCost[1] = tiles;
+				System.arraycopy(current, 0, best, 0, current.length);
+			}
+			return;
+		}
+		for (final long tiles : candidates.get(d)) {
+			current[d] = tiles;
+			search(input, tilingActions, candidates, d + 1, current, limit, best,
+				bestCost, smallest, smallestTile);
+		}
+	}
+
+	/**
+	 * @return all numbers of tiles in dimension {@code d} leading to different
+	 *         tile sizes, for each size only the smallest number of tiles
+	 */
+	private long[] getTileNumCandidates(final RandomAccessibleInterval<T> input,
+		final int d)
+	{
+		final long multiple = getBlockMultiple(input, d);
+		final long maxTiles = Math.max(1, (long) Math.ceil(input.dimension(d) /
+			(double) multiple));
+		final long[] tiling = new long[input.numDimensions()];
+		final List<Long> res = new ArrayList<>();
+		long lastSize = -1;
+		for (long tiles = 1; tiles <= maxTiles; tiles++) {
+			tiling[d] = tiles;
+			final long size = getTileSize(input, d, tiling, multiple);
+			if (size != lastSize) {
+				res.add(tiles);
+				lastSize = size;
+			}
+		}
+		return res.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	private long getVoxelsPerTile(final RandomAccessibleInterval<T> input,
+		final long[] tiling, final TilingAction[] tilingActions)
+	{
+		long voxels = 1;
+		for (int i = 0; i < tiling.length; i++) {
+			if (tilingActions[i] == TilingAction.TILE_WITH_PADDING) {
+				long size = getTileSize(input, i, tiling, getBlockMultiple(input, i));
+				if (tiling[i] > 1) size += 2 * getOverlap(i);
+				voxels *= size;
+			}
+			else {
+				voxels *= input.dimension(i);
+			}
+		}
+		return voxels;
+	}
+
+	/**
+	 * @return computed voxels (including overlap and padding) per input voxel of
+	 *         the last computed tiling
+	 */
+	public double getOverheadRatio() {
+		return overheadRatio;
+	}
+
+}
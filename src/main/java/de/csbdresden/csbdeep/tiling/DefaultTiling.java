@@ -30,10 +30,12 @@
 package de.csbdresden.csbdeep.tiling;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import de.csbdresden.csbdeep.imglib2.GridView;
+import de.csbdresden.csbdeep.metrics.Tracer;
 import de.csbdresden.csbdeep.task.Task;
 import de.csbdresden.csbdeep.util.DatasetHelper;
 import net.imagej.axis.Axes;
@@ -53,6 +55,9 @@ public class DefaultTiling<T extends RealType<T>> implements Tiling<T> {
 	protected int overlap;
 	protected Task status;
 	protected TilingAction[] tilingActions;
+	protected AxisType[] axes;
+	protected Map<AxisType, Integer> axesOverlap = new HashMap<>();
+	protected Map<AxisType, Integer> axesDivBy = new HashMap<>();
 
 	public DefaultTiling(final int tilesNum, final int batchSize,
 		final int blockMultiple, final int overlap)
@@ -71,6 +76,7 @@ public class DefaultTiling<T extends RealType<T>> implements Tiling<T> {
 
 		this.status = parent;
 		this.tilingActions = tilingActions;
+		this.axes = axes;
 
 		if (input != null) {
 
@@ -161,8 +167,9 @@ public class DefaultTiling<T extends RealType<T>> implements Tiling<T> {
 			int maxDim = -1;
 			for (int i = 0; i < singleTile.length; i++) {
 				if (tilingActions[i] == TilingAction.TILE_WITH_PADDING) {
-					singleTile[i] = getTileSize(input, i, tiling, blockMultiple);
-					if (singleTile[i] > blockMultiple && (maxDim < 0 ||
+					final long multiple = getBlockMultiple(input, i);
+					singleTile[i] = getTileSize(input, i, tiling, multiple);
+					if (singleTile[i] > multiple && (maxDim < 0 ||
 						singleTile[i] > singleTile[maxDim]))
 					{
 						maxDim = i;
@@ -179,14 +186,74 @@ public class DefaultTiling<T extends RealType<T>> implements Tiling<T> {
 		}
 	}
 
-	private long getTileSize(RandomAccessibleInterval<T> dataset, int dimension, long[] tiling, int tileMultiple) {
+	/**
+	 * Sets the overlap between tiles needed by the network for single axes. The
+	 * overlap is rounded up to a multiple of the block multiple of the axis and
+	 * only used if it is larger than the default overlap, axes not contained
+	 * use the default overlap.
+	 */
+	public void setAxesOverlap(final Map<AxisType, Integer> axesOverlap) {
+		this.axesOverlap = axesOverlap;
+	}
+
+	/**
+	 * Sets the number the tile size of single axes has to be divisible by, in
+	 * addition to the default block multiple.
+	 */
+	public void setAxesDivBy(final Map<AxisType, Integer> axesDivBy) {
+		this.axesDivBy = axesDivBy;
+	}
+
+	/**
+	 * @return the value the size of a tile in dimension {@code d} has to be a
+	 *         multiple of
+	 */
+	protected long getBlockMultiple(RandomAccessibleInterval<T> input, int d) {
+		return getNetworkBlockMultiple(d);
+	}
+
+	private long getNetworkBlockMultiple(int d) {
+		final Integer divBy = getAxisValue(axesDivBy, d);
+		if (divBy == null || divBy <= 1) return blockMultiple;
+		return lcm(blockMultiple, divBy);
+	}
+
+	/**
+	 * @return the overlap between tiles in dimension {@code d}
+	 */
+	protected long getOverlap(int d) {
+		final Integer axisOverlap = getAxisValue(axesOverlap, d);
+		if (axisOverlap == null || tilingActions[d] != TilingAction.TILE_WITH_PADDING) {
+			return overlap;
+		}
+		final long multiple = getNetworkBlockMultiple(d);
+		return Math.max(overlap, (long) Math.ceil(axisOverlap /
+			(double) multiple) * multiple);
+	}
+
+	private Integer getAxisValue(Map<AxisType, Integer> values, int d) {
+		if (values == null || axes == null || d >= axes.length) return null;
+		return values.get(axes[d]);
+	}
+
+	private static long lcm(long a, long b) {
+		long x = a, y = b;
+		while (y != 0) {
+			long t = y;
+			y = x % y;
+			x = t;
+		}
+		return a / x * b;
+	}
+
+	protected long getTileSize(RandomAccessibleInterval<T> dataset, int dimension, long[] tiling, long tileMultiple) {
 		return (long) (Math.ceil(dataset.dimension(dimension) / tiling[dimension] / (double) tileMultiple) * tileMultiple);
 	}
 
 	protected long[] getPadding(long[] tiling) {
 		long[] padding = new long[tiling.length];
 		for (int i = 0; i < padding.length; i++) {
-			if (tiling[i] > 1) padding[i] = overlap;
+			if (tiling[i] > 1) padding[i] = getOverlap(i);
 		}
 		return padding;
 	}
@@ -196,7 +263,8 @@ public class DefaultTiling<T extends RealType<T>> implements Tiling<T> {
 	{
 		for (int i = 0; i < dataset.numDimensions(); i++) {
 			if (tilingActions[i] == TilingAction.TILE_WITH_PADDING) {
-				dataset = expandDimToSize(dataset, i, getTileSize(dataset, i, tiling, blockMultiple) * tiling[i]);
+				dataset = expandDimToSize(dataset, i, getTileSize(dataset, i, tiling,
+					getBlockMultiple(dataset, i)) * tiling[i]);
 			}
 		}
 		return dataset;
@@ -259,8 +327,12 @@ public class DefaultTiling<T extends RealType<T>> implements Tiling<T> {
 				}
 			}
 			for (int i = 0; i < resultData.size(); i++) {
-				resultData.set(i, removePadding(resultData.get(i), results.getOverlapComplete(),
-					results.getOriginalAxes(), axisTypes));
+				try (Tracer.Span span = Tracer.begin("padding removal", i, Intervals
+					.dimensionsAsLongArray(resultData.get(i))))
+				{
+					resultData.set(i, removePadding(resultData.get(i), results
+						.getOverlapComplete(), results.getOriginalAxes(), axisTypes));
+				}
 			}
 
 			// TODO log padding / test padding
@@ -269,8 +341,10 @@ public class DefaultTiling<T extends RealType<T>> implements Tiling<T> {
 
 			parent.log("Merging tiles..");
 
-			final RandomAccessibleInterval<T> mergedResult = arrangeAndCombineTiles(
-				resultData, grid);
+			final RandomAccessibleInterval<T> mergedResult;
+			try (Tracer.Span span = Tracer.begin("stitch", Tracer.NO_TILE, grid)) {
+				mergedResult = arrangeAndCombineTiles(resultData, grid);
+			}
 
 			DatasetHelper.debugDim(parent, "merge", mergedResult);
 			parent.log("Crop to original size..");
@@ -0,0 +1,168 @@
+package de.csbdresden.csbdeep.tiling;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import de.csbdresden.csbdeep.imglib2.TiledView;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Skips tiles containing only background. A tile is considered empty if its
+ * maximum does not exceed a threshold and, if set, its variance does not
+ * exceed a threshold. The statistics include the overlap of the tile, since it
+ * contributes to the prediction of the tile core. A filter is meant to be used
+ * for a single run, the background responses are not valid for other images.
+ */
+public class EmptyTileFilter<T extends RealType<T>> implements TileFilter<T> {
+
+	public enum Mode {
+			/**
+			 * Executes the network for the first empty tile of each tile size and
+			 * mean value and uses its output for all further empty tiles of the
+			 * same size and a mean value within the mean tolerance.
+			 */
+			BACKGROUND_RESPONSE,
+			/**
+			 * Fills the output of empty tiles with a constant value.
+			 */
+			CONSTANT
+	}
+
+	private final Mode mode;
+	private double maxThreshold = Double.NEGATIVE_INFINITY;
+	private double varianceThreshold = Double.POSITIVE_INFINITY;
+	private double fillValue = 0;
+	private double meanTolerance = 1e-3;
+	private final Map<String, RandomAccessibleInterval<T>> backgroundResponses =
+		new HashMap<>();
+	// keys of the tiles found empty by canSkip, so that the tile is read only
+	// once; the same tile is passed to createSkippedResult and tileProcessed
+	private final Map<RandomAccessibleInterval<T>, String> tileKeys =
+		new IdentityHashMap<>();
+
+	public EmptyTileFilter(final Mode mode) {
+		this.mode = mode;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Tiles with all values below or equal to this threshold are considered
+	 * empty, by default no tile is empty.
+	 */
+	public void setMaxThreshold(final double maxThreshold) {
+		this.maxThreshold = maxThreshold;
+	}
+
+	/**
+	 * Additionally restricts empty tiles to tiles with a variance below or equal
+	 * to this threshold, {@code 0} matches constant tiles only. By default the
+	 * variance is not restricted.
+	 */
+	public void setVarianceThreshold(final double varianceThreshold) {
+		this.varianceThreshold = varianceThreshold;
+	}
+
+	/**
+	 * The value empty tiles are filled with in {@link Mode#CONSTANT}.
+	 */
+	public void setFillValue(final double fillValue) {
+		this.fillValue = fillValue;
+	}
+
+	/**
+	 * Empty tiles whose mean values differ by less than this tolerance share
+	 * the background response in {@link Mode#BACKGROUND_RESPONSE}.
+	 */
+	public void setMeanTolerance(final double meanTolerance) {
+		this.meanTolerance = meanTolerance;
+	}
+
+	@Override
+	public boolean canSkip(final TiledView<T> view, final long[] position,
+		final RandomAccessibleInterval<T> tile)
+	{
+		double max = Double.NEGATIVE_INFINITY;
+		double mean = 0;
+		double m2 = 0;
+		long count = 0;
+		for (final T value : Views.iterable(tile)) {
+			final double v = value.getRealDouble();
+			if (v > max) max = v;
+			count++;
+			final double delta = v - mean;
+			mean += delta / count;
+			m2 += delta * (v - mean);
+		}
+		if (count == 0) return false;
+		final boolean empty = max <= maxThreshold &&
+			m2 / count <= varianceThreshold;
+		if (empty && mode == Mode.BACKGROUND_RESPONSE) {
+			tileKeys.put(tile, getKey(tile, mean));
+		}
+		return empty;
+	}
+
+	@Override
+	public RandomAccessibleInterval<T> createSkippedResult(
+		final RandomAccessibleInterval<T> tile,
+		final RandomAccessibleInterval<T> template)
+	{
+		if (mode == Mode.BACKGROUND_RESPONSE) {
+			final RandomAccessibleInterval<T> response = backgroundResponses.get(
+				getKey(tile));
+			if (response != null) tileKeys.remove(tile);
+			return response;
+		}
+		if (template == null) return null;
+		return TileFilter.createConstantResult(template, fillValue);
+	}
+
+	@Override
+	public void tileProcessed(final RandomAccessibleInterval<T> tile,
+		final RandomAccessibleInterval<T> result)
+	{
+		if (mode == Mode.BACKGROUND_RESPONSE) {
+			backgroundResponses.put(getKey(tile), result);
+			tileKeys.remove(tile);
+		}
+	}
+
+	/**
+	 * @return the key computed by {@link #canSkip}, the tile is only read if it
+	 *         was not passed to it before
+	 */
+	private String getKey(final RandomAccessibleInterval<T> tile) {
+		final String key = tileKeys.get(tile);
+		if (key != null) return key;
+		double sum = 0;
+		long count = 0;
+		for (final T value : Views.iterable(tile)) {
+			sum += value.getRealDouble();
+			count++;
+		}
+		return getKey(tile, count == 0 ? 0 : sum / count);
+	}
+
+	/**
+	 * Background responses are only valid for tiles of the same size and a
+	 * similar mean value, e.g. a constant background. The mean is quantized by
+	 * the mean tolerance, the exact mean hardly ever repeats.
+	 */
+	private String getKey(final RandomAccessibleInterval<T> tile,
+		final double mean)
+	{
+		final long quantized = meanTolerance > 0 ? Math.round(mean /
+			meanTolerance) : Double.doubleToLongBits(mean);
+		return Arrays.toString(Intervals.dimensionsAsLongArray(tile)) + "_" +
+			quantized;
+	}
+
+}
@@ -0,0 +1,112 @@
+package de.csbdresden.csbdeep.tiling;
+
+import java.util.Arrays;
+
+import de.csbdresden.csbdeep.imglib2.TiledView;
+import net.imagej.axis.AxisType;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * Skips tiles whose core does not contain any nonzero pixel of a mask. The
+ * axes of the mask are matched to the axes of the tiled input by type, axes
+ * missing in the mask are not restricted. The output of skipped tiles is
+ * filled with a constant value.
+ */
+public class MaskTileFilter<T extends RealType<T>> implements TileFilter<T> {
+
+	private final RandomAccessibleInterval<? extends RealType<?>> mask;
+	private final AxisType[] maskAxes;
+	private double fillValue = 0;
+
+	public MaskTileFilter(
+		final RandomAccessibleInterval<? extends RealType<?>> mask,
+		final AxisType[] maskAxes)
+	{
+		this.mask = mask;
+		this.maskAxes = maskAxes;
+	}
+
+	/**
+	 * The value the output of tiles outside of the mask is filled with.
+	 */
+	public void setFillValue(final double fillValue) {
+		this.fillValue = fillValue;
+	}
+
+	@Override
+	public boolean canSkip(final TiledView<T> view, final long[] position,
+		final RandomAccessibleInterval<T> tile)
+	{
+		if (!(view instanceof AdvancedTiledView)) return false;
+		final AxisType[] axes = ((AdvancedTiledView<T>) view).getOriginalAxes();
+		final long[] blockSize = view.getBlockSize();
+		final long[] min = new long[mask.numDimensions()];
+		final long[] max = new long[mask.numDimensions()];
+		mask.min(min);
+		mask.max(max);
+		for (int d = 0; d < min.length; d++) {
+			final int j = indexOf(axes, maskAxes[d]);
+			if (j < 0 || j >= position.length) continue;
+			final long coreMin = mask.min(d) + position[j] * blockSize[j];
+			min[d] = Math.max(min[d], coreMin);
+			max[d] = Math.min(max[d], coreMin + blockSize[j] - 1);
+			if (min[d] > max[d]) return true;
+		}
+		for (final RealType<?> value : Views.iterable(Views.interval(mask, min,
+			max)))
+		{
+			if (value.getRealDouble() != 0) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public RandomAccessibleInterval<T> createSkippedResult(
+		final RandomAccessibleInterval<T> tile,
+		final RandomAccessibleInterval<T> template)
+	{
+		if (template == null) return null;
+		return TileFilter.createConstantResult(template, fillValue);
+	}
+
+	/**
+	 * @return the bounding box of all nonzero pixels of the mask or
+	 *         {@code null} if the mask is empty
+	 */
+	public static Interval getBoundingBox(
+		final RandomAccessibleInterval<? extends RealType<?>> mask)
+	{
+		final int n = mask.numDimensions();
+		final long[] min = new long[n];
+		final long[] max = new long[n];
+		final long[] position = new long[n];
+		Arrays.fill(min, Long.MAX_VALUE);
+		Arrays.fill(max, Long.MIN_VALUE);
+		final Cursor<? extends RealType<?>> cursor = Views.iterable(
+			mask).localizingCursor();
+		boolean empty = true;
+		while (cursor.hasNext()) {
+			if (cursor.next().getRealDouble() == 0) continue;
+			empty = false;
+			cursor.localize(position);
+			for (int d = 0; d < n; d++) {
+				min[d] = Math.min(min[d], position[d]);
+				max[d] = Math.max(max[d], position[d]);
+			}
+		}
+		return empty ? null : new FinalInterval(min, max);
+	}
+
+	private static int indexOf(final AxisType[] axes, final AxisType axis) {
+		for (int i = 0; i < axes.length; i++) {
+			if (axes[i] == axis) return i;
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,60 @@
+package de.csbdresden.csbdeep.tiling;
+
+import de.csbdresden.csbdeep.imglib2.TiledView;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.ConstantUtils;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Decides before the network is executed for a tile if the execution can be
+ * skipped and provides the result for skipped tiles instead.
+ */
+public interface TileFilter<T extends RealType<T>> {
+
+	/**
+	 * @param view the tiled view the tile belongs to
+	 * @param position the position of the tile in the tile grid
+	 * @param tile the network input of the tile, including its overlap
+	 * @return true if the network does not have to be executed for this tile
+	 */
+	boolean canSkip(TiledView<T> view, long[] position,
+		RandomAccessibleInterval<T> tile);
+
+	/**
+	 * @param tile the network input of a skippable tile
+	 * @param template the network output of another tile of the same tiled
+	 *          view, or {@code null} if no tile has been processed yet
+	 * @return the output for the tile or {@code null} if the network has to be
+	 *         executed for it after all
+	 */
+	RandomAccessibleInterval<T> createSkippedResult(
+		RandomAccessibleInterval<T> tile, RandomAccessibleInterval<T> template);
+
+	/**
+	 * Called if the network had to be executed for a skippable tile because
+	 * {@link #createSkippedResult} returned {@code null}.
+	 */
+	default void tileProcessed(RandomAccessibleInterval<T> tile,
+		RandomAccessibleInterval<T> result)
+	{}
+
+	/**
+	 * @return a read only view of the size and type of {@code template} with
+	 *         {@code value} at each position, no pixel memory is allocated
+	 */
+	static <T extends RealType<T>> RandomAccessibleInterval<T>
+		createConstantResult(final RandomAccessibleInterval<T> template,
+			final double value)
+	{
+		final T constant = Views.iterable(template).firstElement()
+			.createVariable();
+		constant.setReal(value);
+		return Views.interval(ConstantUtils.constantRandomAccessible(constant,
+			template.numDimensions()), new FinalInterval(Intervals
+				.dimensionsAsLongArray(template)));
+	}
+
+}
@@ -0,0 +1,46 @@
+package de.csbdresden.csbdeep.tiling;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import net.imglib2.util.IntervalIndexer;
+
+public class TileOrder {
+
+	/**
+	 * Sorts the tiles of a grid along a Z-order (Morton) curve. Consecutive
+	 * tiles are spatial neighbours most of the time, which keeps the cells they
+	 * share in the cache of the source image.
+	 *
+	 * @param grid number of tiles in each dimension
+	 * @return the flat indices of all tiles, ordered along the curve
+	 */
+	public static long[] zOrder(final long[] grid) {
+		final int numTiles = (int) DefaultTiling.arrayProduct(grid);
+		final long[] position = new long[grid.length];
+		final long[][] keys = new long[numTiles][];
+		for (int i = 0; i < numTiles; i++) {
+			IntervalIndexer.indexToPosition(i, grid, position);
+			keys[i] = new long[] { interleaveBits(position), i };
+		}
+		Arrays.sort(keys, Comparator.comparingLong(key -> key[0]));
+		final long[] order = new long[numTiles];
+		for (int i = 0; i < numTiles; i++) {
+			order[i] = keys[i][1];
+		}
+		return order;
+	}
+
+	private static long interleaveBits(final long[] position) {
+		final int n = Math.max(1, position.length);
+		final int bitsPerDim = 63 / n;
+		long code = 0;
+		for (int bit = 0; bit < bitsPerDim; bit++) {
+			for (int d = 0; d < position.length; d++) {
+				code |= ((position[d] >> bit) & 1L) << (bit * n + d);
+			}
+		}
+		return code;
+	}
+
+}
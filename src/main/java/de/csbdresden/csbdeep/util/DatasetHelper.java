@@ -4,7 +4,9 @@ package de.csbdresden.csbdeep.util;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.OptionalLong;
 
 import javax.swing.*;
@@ -14,6 +16,9 @@ import net.imagej.Dataset;
 import net.imagej.axis.Axes;
 import net.imagej.axis.AxisType;
 import net.imglib2.Interval;
+import net.imglib2.img.Img;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.CellGrid;
 
 public class DatasetHelper {
 
@@ -87,6 +92,21 @@ public class DatasetHelper {
 
 	}
 
+	/**
+	 * @return the cell size of each axis if the image of the dataset is stored
+	 *         in cells, otherwise {@code null}
+	 */
+	public static Map<AxisType, Long> getCellDimensions(final Dataset dataset) {
+		final Img<?> img = dataset.getImgPlus().getImg();
+		if (!(img instanceof AbstractCellImg)) return null;
+		final CellGrid grid = ((AbstractCellImg) img).getCellGrid();
+		final Map<AxisType, Long> cellDimensions = new HashMap<>();
+		for (int i = 0; i < dataset.numDimensions(); i++) {
+			cellDimensions.put(dataset.axis(i).type(), (long) grid.cellDimension(i));
+		}
+		return cellDimensions;
+	}
+
 	public static boolean validate(final Dataset dataset, final String formatDesc, boolean headless,
 	                            final OptionalLong... expectedDims) {
 		try {
@@ -2,7 +2,6 @@
 package de.csbdresden.csbdeep.util;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.HttpURLConnection;
@@ -31,6 +30,15 @@ public class IOHelper {
 		final File file = new File(path);
 		Location source;
 		if (!file.exists()) {
+			if (ModelDownloader.isDownloadable(path)) {
+				try {
+					return new FileLocation(ModelDownloader.getDefault().getDownload(path)
+						.get());
+				}
+				catch (IOException e) {
+					// load the model directly from the URL
+				}
+			}
 			try {
 				source = new HTTPLocation(path);
 			}
@@ -63,18 +71,7 @@ public class IOHelper {
 	}
 
 	public static String getFileCacheName(Class<? extends GenericNetwork> parentClass, File file) throws IOException {
-		FileInputStream fis = null;
-		try {
-			fis = new FileInputStream(file);
-			String md5 = org.apache.commons.codec.digest.DigestUtils.md5Hex(fis);
-			return parentClass.getSimpleName() + "_" + md5;
-		} catch (IOException e) {
-			throw e;
-		} finally {
-			if(fis != null) {
-				fis.close();
-			}
-		}
+		return parentClass.getSimpleName() + "_" + ModelFingerprints.getDefault().getSha256(file);
 	}
 
 	public static String getUrlCacheName(Class<? extends GenericNetwork> parentClass, String modelUrl) throws IOException {
@@ -0,0 +1,63 @@
+package de.csbdresden.csbdeep.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Reads and writes caches stored as JSON files. Caches are optional, so
+ * missing, unreadable or corrupt files are treated as empty and failing
+ * writes are ignored.
+ */
+class JsonFiles {
+
+	private JsonFiles() {}
+
+	/**
+	 * @return the content of the file or {@code null} if it does not exist or
+	 *         cannot be read
+	 */
+	static <T> T read(final Gson gson, final File file, final Type type) {
+		if (!file.exists()) return null;
+		try (Reader reader = Files.newBufferedReader(file.toPath(),
+			StandardCharsets.UTF_8))
+		{
+			return gson.fromJson(reader, type);
+		}
+		catch (IOException | JsonParseException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes to a temporary file which replaces the file afterwards, so other
+	 * processes never read a partially written file.
+	 */
+	static void write(final Gson gson, final File file, final Object content) {
+		final File dir = file.getAbsoluteFile().getParentFile();
+		if (!dir.exists() && !dir.mkdirs()) return;
+		try {
+			final File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+			try (Writer writer = Files.newBufferedWriter(tmp.toPath(),
+				StandardCharsets.UTF_8))
+			{
+				gson.toJson(content, writer);
+			}
+			Files.move(tmp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			// the file is only a cache
+		}
+	}
+
+}
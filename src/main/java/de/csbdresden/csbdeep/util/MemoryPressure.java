@@ -0,0 +1,176 @@
+package de.csbdresden.csbdeep.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.NotificationEmitter;
+
+import de.csbdresden.csbdeep.metrics.MemoryAccounting;
+
+/**
+ * Detects memory pressure before an {@link OutOfMemoryError} occurs. The heap
+ * pools get a collection usage threshold at a fraction of their maximum size,
+ * crossing it is reported by a JMX notification and lasts until a garbage
+ * collection brings the usage below the threshold again. Native memory is
+ * under pressure while the tensor bytes of the {@link MemoryAccounting}
+ * exceed a limit.
+ * <p>
+ * The fraction is read from the system property {@code csbdeep.heapThreshold}
+ * (default {@value #DEFAULT_HEAP_THRESHOLD}), the native limit in bytes from
+ * {@code csbdeep.nativeMemoryLimit} (default no limit).
+ */
+public class MemoryPressure {
+
+	public static final double DEFAULT_HEAP_THRESHOLD = 0.85;
+	private static final long POLL_MILLIS = 50;
+
+	private static MemoryPressure defaultPressure;
+
+	private final MemoryAccounting accounting;
+	private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+	private volatile long nativeLimit;
+	private volatile boolean heapExceeded;
+	private volatile long notifications;
+	private final AtomicInteger activeRuns = new AtomicInteger();
+
+	public static synchronized MemoryPressure getDefault() {
+		if (defaultPressure == null) {
+			defaultPressure = new MemoryPressure(getHeapThreshold(), Long.getLong(
+				"csbdeep.nativeMemoryLimit", 0), MemoryAccounting.getDefault());
+		}
+		return defaultPressure;
+	}
+
+	/**
+	 * @param heapThreshold fraction of the maximum size of the heap pools, 0 to
+	 *          ignore the heap
+	 * @param nativeLimit limit of the native tensor bytes, 0 for no limit
+	 */
+	public MemoryPressure(final double heapThreshold, final long nativeLimit,
+		final MemoryAccounting accounting)
+	{
+		this.nativeLimit = nativeLimit;
+		this.accounting = accounting;
+		if (heapThreshold > 0) watchHeap(heapThreshold);
+	}
+
+	private void watchHeap(final double threshold) {
+		for (final MemoryPoolMXBean pool : ManagementFactory
+			.getMemoryPoolMXBeans())
+		{
+			if (pool.getType() != MemoryType.HEAP || !pool
+				.isCollectionUsageThresholdSupported()) continue;
+			final long max = pool.getUsage().getMax();
+			if (max <= 0) continue;
+			final long bytes = (long) (max * threshold);
+			// keep lower thresholds set by others, they are reported as well
+			if (pool.getCollectionUsageThreshold() == 0 || pool
+				.getCollectionUsageThreshold() > bytes)
+			{
+				pool.setCollectionUsageThreshold(bytes);
+			}
+			pools.add(pool);
+		}
+		if (pools.isEmpty()) return;
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+			.addNotificationListener((notification, handback) -> {
+				if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(
+					notification.getType()))
+				{
+					heapExceeded = true;
+					notifications++;
+				}
+			}, null, null);
+	}
+
+	/**
+	 * @return true if the heap stayed above the threshold after the last
+	 *         garbage collection or the native tensor memory exceeds the limit
+	 */
+	public boolean isUnderPressure() {
+		return isHeapUnderPressure() || isNativeUnderPressure();
+	}
+
+	public boolean isHeapUnderPressure() {
+		if (!heapExceeded) return false;
+		for (final MemoryPoolMXBean pool : pools) {
+			if (pool.isCollectionUsageThresholdExceeded()) return true;
+		}
+		heapExceeded = false;
+		return false;
+	}
+
+	public boolean isNativeUnderPressure() {
+		return nativeLimit > 0 && accounting.getLiveBytes() > nativeLimit;
+	}
+
+	/**
+	 * Registers a run processing tiles, see {@link #isReliefExpected()}.
+	 */
+	public void runStarted() {
+		activeRuns.incrementAndGet();
+	}
+
+	public void runFinished() {
+		activeRuns.decrementAndGet();
+	}
+
+	/**
+	 * @return true if waiting can bring relief: native memory is freed when
+	 *         tiles finish, memory of other runs when they finish. A heap
+	 *         filled by the images of the only run stays full.
+	 */
+	public boolean isReliefExpected() {
+		return isNativeUnderPressure() || activeRuns.get() > 1;
+	}
+
+	/**
+	 * Waits until the pressure is gone, e.g. because memory of other jobs on the
+	 * machine or of finished stages was freed.
+	 *
+	 * @return false if the pressure lasted longer than the timeout
+	 */
+	public boolean awaitRelief(final long timeout, final TimeUnit unit)
+		throws InterruptedException
+	{
+		if (!isUnderPressure()) return true;
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (isUnderPressure()) {
+			if (System.nanoTime() >= deadline) return false;
+			Thread.sleep(POLL_MILLIS);
+		}
+		return true;
+	}
+
+	public long getNativeLimit() {
+		return nativeLimit;
+	}
+
+	public void setNativeLimit(final long nativeLimit) {
+		this.nativeLimit = nativeLimit;
+	}
+
+	/**
+	 * @return number of threshold notifications received
+	 */
+	public long getNotifications() {
+		return notifications;
+	}
+
+	private static double getHeapThreshold() {
+		try {
+			return Double.parseDouble(System.getProperty("csbdeep.heapThreshold",
+				String.valueOf(DEFAULT_HEAP_THRESHOLD)));
+		}
+		catch (final NumberFormatException e) {
+			return DEFAULT_HEAP_THRESHOLD;
+		}
+	}
+
+}
@@ -0,0 +1,419 @@
+package de.csbdresden.csbdeep.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Downloads models in the background into a local folder, so they can be
+ * loaded like model files. Interrupted downloads are kept as {@code .part}
+ * file and resumed with a range request, guarded by {@code If-Range} so that a
+ * file which changed on the server is downloaded from the start. A finished
+ * download is verified before it is moved to its final name: its length, its
+ * SHA-256 checksum if one was registered for the URL and, for zip files, the
+ * CRC of each entry. Downloaded files are revalidated with a conditional
+ * request and used without network access if the server cannot be reached.
+ */
+public class ModelDownloader {
+
+	public static final int DEFAULT_RETRIES = 3;
+	private static final int TIMEOUT = 10 * 1000;
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final long PROGRESS_INTERVAL = 200;
+
+	private static ModelDownloader defaultDownloader;
+
+	private final File dir;
+	private final int retries;
+	private final Map<String, Download> downloads = new HashMap<>();
+	private final Map<String, String> checksums = new ConcurrentHashMap<>();
+	private final ExecutorService pool = Executors.newCachedThreadPool(
+		runnable -> {
+			final Thread thread = new Thread(runnable, "CSBDeep model download");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+	/**
+	 * Receives the progress of a download.
+	 */
+	public interface ProgressListener {
+
+		/**
+		 * @param bytes bytes of the file which are downloaded
+		 * @param totalBytes size of the file or -1 if unknown
+		 * @param bytesPerSecond throughput since the download (re)started
+		 */
+		void progress(long bytes, long totalBytes, double bytesPerSecond);
+	}
+
+	/**
+	 * A running or finished download.
+	 */
+	public static class Download {
+
+		private final String url;
+		private final List<ProgressListener> listeners =
+			new CopyOnWriteArrayList<>();
+		private Future<File> result;
+		private volatile long bytes;
+		private volatile long totalBytes = -1;
+		private volatile double bytesPerSecond;
+
+		private Download(final String url) {
+			this.url = url;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getTotalBytes() {
+			return totalBytes;
+		}
+
+		public double getBytesPerSecond() {
+			return bytesPerSecond;
+		}
+
+		public void addListener(final ProgressListener listener) {
+			listeners.add(listener);
+		}
+
+		public void removeListener(final ProgressListener listener) {
+			listeners.remove(listener);
+		}
+
+		public boolean isDone() {
+			return result.isDone();
+		}
+
+		/**
+		 * Waits for the download to finish.
+		 *
+		 * @return the downloaded file
+		 */
+		public File get() throws IOException {
+			try {
+				return result.get();
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Download of " + url +
+					" interrupted");
+			}
+			catch (final ExecutionException e) {
+				if (e.getCause() instanceof IOException) throw (IOException) e
+					.getCause();
+				throw new IOException("Could not download " + url, e.getCause());
+			}
+		}
+
+		private boolean isFailed() {
+			if (!result.isDone()) return false;
+			try {
+				result.get();
+				return false;
+			}
+			catch (final InterruptedException | ExecutionException e) {
+				return true;
+			}
+		}
+
+		private void update(final long bytes, final long totalBytes,
+			final double bytesPerSecond)
+		{
+			this.bytes = bytes;
+			this.totalBytes = totalBytes;
+			this.bytesPerSecond = bytesPerSecond;
+			for (final ProgressListener listener : listeners) {
+				listener.progress(bytes, totalBytes, bytesPerSecond);
+			}
+		}
+	}
+
+	/**
+	 * @param dir the folder the models are downloaded to
+	 * @param retries how often a download is resumed after a failure
+	 */
+	public ModelDownloader(final File dir, final int retries) {
+		this.dir = dir;
+		this.retries = retries;
+	}
+
+	/**
+	 * @return the downloader using the CSBDeep folder of the user
+	 */
+	public static synchronized ModelDownloader getDefault() {
+		if (defaultDownloader == null) {
+			defaultDownloader = new ModelDownloader(new File(System.getProperty(
+				"user.home"), ".csbdeep" + File.separator + "downloads"),
+				DEFAULT_RETRIES);
+		}
+		return defaultDownloader;
+	}
+
+	public static boolean isDownloadable(final String path) {
+		return path != null && (path.startsWith("http://") || path.startsWith(
+			"https://"));
+	}
+
+	/**
+	 * Registers the SHA-256 checksum the download of the URL is verified with.
+	 */
+	public void setChecksum(final String url, final String sha256) {
+		checksums.put(url, sha256.toLowerCase());
+	}
+
+	/**
+	 * @return the file the URL is downloaded to
+	 */
+	public File getFile(final String url) throws IOException {
+		final String path = new URL(url).getPath();
+		final String name = path.substring(path.lastIndexOf('/') + 1);
+		final CRC32 crc = new CRC32();
+		crc.update(url.getBytes(StandardCharsets.UTF_8));
+		// the checksum of the URL keeps files of different servers apart
+		return new File(dir, String.format("%08x", crc.getValue()) + "_" + (name
+			.isEmpty() ? "model.zip" : name));
+	}
+
+	/**
+	 * Starts downloading the URL in the background unless it is already being
+	 * downloaded. Failed downloads are started again.
+	 */
+	public synchronized Download start(final String url) {
+		final Download running = downloads.get(url);
+		if (running != null && !running.isFailed()) return running;
+		return startDownload(url);
+	}
+
+	/**
+	 * @return the download of the URL, started if there is none yet. In
+	 *         contrast to {@link #start(String)} failed downloads are not
+	 *         repeated.
+	 */
+	public synchronized Download getDownload(final String url) {
+		final Download download = downloads.get(url);
+		return download != null ? download : startDownload(url);
+	}
+
+	private Download startDownload(final String url) {
+		final Download download = new Download(url);
+		download.result = pool.submit(() -> download(download));
+		downloads.put(url, download);
+		return download;
+	}
+
+	private File download(final Download download) throws IOException {
+		final File file = getFile(download.url);
+		Files.createDirectories(dir.toPath());
+		IOException failure = null;
+		for (int attempt = 0; attempt <= retries; attempt++) {
+			try {
+				if (attempt > 0) Thread.sleep(1000L * attempt);
+				return downloadOnce(download, file);
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Download of " + download.url +
+					" interrupted");
+			}
+			catch (final IOException e) {
+				failure = e;
+			}
+		}
+		// offline, the last downloaded version is still valid
+		if (file.exists()) return file;
+		throw failure;
+	}
+
+	private File downloadOnce(final Download download, final File file)
+		throws IOException
+	{
+		final File part = new File(file.getPath() + ".part");
+		final File validatorFile = new File(file.getPath() + ".part.validator");
+		long offset = part.exists() ? part.length() : 0;
+		String validator = offset > 0 && validatorFile.exists() ? new String(Files
+			.readAllBytes(validatorFile.toPath()), StandardCharsets.UTF_8) : null;
+		// without validator the part could belong to another version of the file
+		if (validator == null) offset = 0;
+
+		final HttpURLConnection connection = (HttpURLConnection) new URL(
+			download.url).openConnection();
+		try {
+			connection.setConnectTimeout(TIMEOUT);
+			connection.setReadTimeout(TIMEOUT);
+			if (offset > 0) {
+				connection.setRequestProperty("Range", "bytes=" + offset + "-");
+				connection.setRequestProperty("If-Range", validator);
+			}
+			else if (file.exists()) {
+				connection.setIfModifiedSince(file.lastModified());
+			}
+			final int status = connection.getResponseCode();
+			if (status == HttpURLConnection.HTTP_NOT_MODIFIED && file.exists()) {
+				download.update(file.length(), file.length(), 0);
+				return file;
+			}
+			final long totalBytes;
+			if (status == HttpURLConnection.HTTP_PARTIAL && offset > 0) {
+				totalBytes = getTotalBytes(connection.getHeaderField("Content-Range"),
+					offset);
+			}
+			else if (status == HttpURLConnection.HTTP_OK) {
+				offset = 0;
+				totalBytes = connection.getContentLengthLong();
+				validator = connection.getHeaderField("ETag");
+				if (validator == null) validator = connection.getHeaderField(
+					"Last-Modified");
+				if (validator != null) {
+					Files.write(validatorFile.toPath(), validator.getBytes(
+						StandardCharsets.UTF_8));
+				}
+				else {
+					Files.deleteIfExists(validatorFile.toPath());
+				}
+			}
+			else {
+				throw new IOException("Could not download " + download.url + ": " +
+					status + " " + connection.getResponseMessage());
+			}
+
+			transfer(download, connection, part, offset, totalBytes);
+			if (totalBytes >= 0 && part.length() != totalBytes) {
+				throw new IOException("Download of " + download.url +
+					" incomplete: " + part.length() + " of " + totalBytes + " bytes");
+			}
+			try {
+				verify(download.url, part);
+			}
+			catch (final IOException e) {
+				// corrupt data, the next attempt starts from the beginning
+				Files.deleteIfExists(part.toPath());
+				throw e;
+			}
+			Files.move(part.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			Files.deleteIfExists(validatorFile.toPath());
+			if (connection.getLastModified() > 0) {
+				file.setLastModified(connection.getLastModified());
+			}
+			return file;
+		}
+		finally {
+			connection.disconnect();
+		}
+	}
+
+	private static long getTotalBytes(final String contentRange,
+		final long offset) throws IOException
+	{
+		// bytes <first>-<last>/<total or *>
+		if (contentRange == null || !contentRange.startsWith("bytes " + offset +
+			"-"))
+		{
+			throw new IOException("Unexpected content range " + contentRange);
+		}
+		final String total = contentRange.substring(contentRange.indexOf('/') +
+			1);
+		return total.equals("*") ? -1 : Long.parseLong(total);
+	}
+
+	private static void transfer(final Download download,
+		final HttpURLConnection connection, final File part, final long offset,
+		final long totalBytes) throws IOException
+	{
+		final long start = System.nanoTime();
+		long lastUpdate = 0;
+		long bytes = offset;
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = connection.getInputStream();
+				OutputStream out = Files.newOutputStream(part.toPath(),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE, offset > 0
+						? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				out.write(buffer, 0, read);
+				bytes += read;
+				final long now = System.nanoTime();
+				if (now - lastUpdate > PROGRESS_INTERVAL * 1000000) {
+					lastUpdate = now;
+					download.update(bytes, totalBytes, getRate(bytes - offset, start,
+						now));
+				}
+			}
+		}
+		finally {
+			download.update(bytes, totalBytes, getRate(bytes - offset, start, System
+				.nanoTime()));
+		}
+	}
+
+	private static double getRate(final long bytes, final long start,
+		final long now)
+	{
+		return now > start ? bytes * 1e9 / (now - start) : 0;
+	}
+
+	private void verify(final String url, final File file) throws IOException {
+		final String checksum = checksums.get(url);
+		if (checksum != null) {
+			final MessageDigest digest = DigestUtils.getSha256Digest();
+			try (InputStream in = Files.newInputStream(file.toPath())) {
+				DigestUtils.updateDigest(digest, in);
+			}
+			final String actual = Hex.encodeHexString(digest.digest());
+			if (!actual.equals(checksum)) {
+				throw new IOException("Checksum of " + url + " does not match: " +
+					actual + " instead of " + checksum);
+			}
+		}
+		if (url.endsWith(".zip")) {
+			// reading each entry completely checks its CRC
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			try (ZipInputStream in = new ZipInputStream(Files.newInputStream(file
+				.toPath())))
+			{
+				if (in.getNextEntry() == null) {
+					throw new IOException(url + " is not a zip file");
+				}
+				do {
+					while (in.read(buffer) > 0) {
+						// only the check is of interest
+					}
+				}
+				while (in.getNextEntry() != null);
+			}
+		}
+	}
+
+}
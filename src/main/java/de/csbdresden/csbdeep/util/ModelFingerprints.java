@@ -0,0 +1,224 @@
+package de.csbdresden.csbdeep.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Remembers the content hashes of model files, stored next to the preferences
+ * of the commands, one preference per file. A file is identified by its
+ * absolute path, size, modification time and file key (the inode on most file
+ * systems), the hashes are only computed if one of them changed. Exploded
+ * model directories are hashed over all files they contain. The short hash
+ * combines CRC32 and Adler32 of the content, the SHA-256 addresses models in
+ * the {@code ModelStore}, where different content must never end up in the
+ * same directory. The SHA-256 is only computed once it is asked for.
+ */
+public class ModelFingerprints {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private static ModelFingerprints defaultFingerprints;
+
+	private final Preferences preferences;
+	private final Gson gson = new Gson();
+
+	static class Entry {
+
+		String path;
+		long size;
+		long lastModified;
+		String fileKey;
+		String hash;
+		String sha256;
+	}
+
+	/**
+	 * @param preferences the node the fingerprints are stored in
+	 */
+	public ModelFingerprints(final Preferences preferences) {
+		this.preferences = preferences;
+	}
+
+	/**
+	 * @return the fingerprints stored in the user preferences of CSBDeep
+	 */
+	public static synchronized ModelFingerprints getDefault() {
+		if (defaultFingerprints == null) {
+			defaultFingerprints = new ModelFingerprints(Preferences
+				.userNodeForPackage(ModelFingerprints.class).node(
+					"model-fingerprints"));
+		}
+		return defaultFingerprints;
+	}
+
+	/**
+	 * @param modelFile a model zip or an exploded model directory
+	 * @return the hash of the content of the file, computed only if the file
+	 *         changed since the last call
+	 */
+	public String getHash(final File modelFile) throws IOException {
+		return getEntry(modelFile, false).hash;
+	}
+
+	/**
+	 * @param modelFile a model zip or an exploded model directory
+	 * @return the SHA-256 of the content of the file as hex string, computed
+	 *         only if the file changed since the last call
+	 */
+	public String getSha256(final File modelFile) throws IOException {
+		return getEntry(modelFile, true).sha256;
+	}
+
+	private Entry getEntry(final File modelFile, final boolean sha256)
+		throws IOException
+	{
+		final Path path = modelFile.toPath().toAbsolutePath();
+		final Entry current = describe(path);
+		current.path = path.toString();
+		// preference keys are limited to 80 characters, paths are not
+		final String key = DigestUtils.sha256Hex(current.path);
+		final Entry known = read(key);
+		if (known != null && current.path.equals(known.path) &&
+			known.size == current.size &&
+			known.lastModified == current.lastModified && (known.fileKey == null
+				? current.fileKey == null : known.fileKey.equals(current.fileKey)))
+		{
+			if (!sha256 || known.sha256 != null) return known;
+		}
+		computeHashes(path, current, sha256);
+		write(key, current);
+		return current;
+	}
+
+	private Entry read(final String key) {
+		final String json = preferences.get(key, null);
+		if (json == null) return null;
+		try {
+			return gson.fromJson(json, Entry.class);
+		}
+		catch (JsonParseException e) {
+			return null;
+		}
+	}
+
+	private void write(final String key, final Entry entry) {
+		try {
+			preferences.put(key, gson.toJson(entry));
+			preferences.flush();
+		}
+		catch (IllegalArgumentException | BackingStoreException e) {
+			// the fingerprints are only a cache, e.g. the path is too long
+		}
+	}
+
+	/**
+	 * @return size, modification time and file key of the file, for directories
+	 *         the total size and latest modification time of the files inside
+	 */
+	private static Entry describe(final Path path) throws IOException {
+		final BasicFileAttributes attributes = Files.readAttributes(path,
+			BasicFileAttributes.class);
+		final Entry entry = new Entry();
+		entry.fileKey = attributes.fileKey() != null ? attributes.fileKey()
+			.toString() : null;
+		entry.size = attributes.size();
+		entry.lastModified = attributes.lastModifiedTime().toMillis();
+		if (attributes.isDirectory()) {
+			entry.size = 0;
+			for (final Path file : listFiles(path)) {
+				final BasicFileAttributes fileAttributes = Files.readAttributes(file,
+					BasicFileAttributes.class);
+				entry.size += fileAttributes.size();
+				entry.lastModified = Math.max(entry.lastModified, fileAttributes
+					.lastModifiedTime().toMillis());
+			}
+		}
+		return entry;
+	}
+
+	static String computeHash(final Path path) throws IOException {
+		final Entry entry = new Entry();
+		computeHashes(path, entry, false);
+		return entry.hash;
+	}
+
+	static String computeSha256(final Path path) throws IOException {
+		final Entry entry = new Entry();
+		computeHashes(path, entry, true);
+		return entry.sha256;
+	}
+
+	/**
+	 * Computes the fingerprint and, if asked for, the SHA-256 of the content in
+	 * one pass.
+	 */
+	private static void computeHashes(final Path path, final Entry entry,
+		final boolean withSha256) throws IOException
+	{
+		final CRC32 crc = new CRC32();
+		final Adler32 adler = new Adler32();
+		final MessageDigest sha256 = withSha256 ? DigestUtils.getSha256Digest()
+			: null;
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		if (Files.isDirectory(path)) {
+			// relative paths are hashed as well, renaming a file changes the hash
+			for (final Path file : listFiles(path)) {
+				final byte[] name = path.relativize(file).toString().replace(
+					File.separatorChar, '/').getBytes(StandardCharsets.UTF_8);
+				crc.update(name, 0, name.length);
+				adler.update(name, 0, name.length);
+				if (sha256 != null) sha256.update(name);
+				update(file, buffer, crc, adler, sha256);
+			}
+		}
+		else {
+			update(path, buffer, crc, adler, sha256);
+		}
+		entry.hash = String.format("%08x%08x", crc.getValue(), adler.getValue());
+		if (sha256 != null) entry.sha256 = Hex.encodeHexString(sha256.digest());
+	}
+
+	/**
+	 * @param sha256 {@code null} if the SHA-256 is not computed
+	 */
+	private static void update(final Path file, final byte[] buffer,
+		final CRC32 crc, final Adler32 adler, final MessageDigest sha256)
+		throws IOException
+	{
+		try (InputStream in = Files.newInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				crc.update(buffer, 0, read);
+				adler.update(buffer, 0, read);
+				if (sha256 != null) sha256.update(buffer, 0, read);
+			}
+		}
+	}
+
+	private static List<Path> listFiles(final Path dir) throws IOException {
+		try (Stream<Path> paths = Files.walk(dir)) {
+			return paths.filter(Files::isRegularFile).sorted().collect(Collectors
+				.toList());
+		}
+	}
+
+}
@@ -0,0 +1,199 @@
+package de.csbdresden.csbdeep.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Remembers which model URLs exist and when they were last modified, stored
+ * in a JSON file. Entries younger than the time to live are used without
+ * contacting the server, older entries are returned as well and revalidated
+ * in the background with a conditional request ({@code ETag},
+ * {@code Last-Modified}). Only URLs which were never seen before are checked
+ * while the caller waits. If the server cannot be reached, the known state is
+ * kept, so cached models can be used offline.
+ */
+public class ModelSourceIndex {
+
+	public static final long DEFAULT_TTL = TimeUnit.HOURS.toMillis(1);
+	private static final int TIMEOUT = 10 * 1000;
+
+	private static ModelSourceIndex defaultIndex;
+
+	private final File file;
+	private final long ttl;
+	private final Map<String, Entry> entries = new HashMap<>();
+	private final Map<String, Future<?>> revalidating = new HashMap<>();
+	private final ExecutorService pool = Executors.newSingleThreadExecutor(
+		runnable -> {
+			final Thread thread = new Thread(runnable, "CSBDeep model index");
+			thread.setDaemon(true);
+			return thread;
+		});
+	private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+	static class Entry {
+
+		boolean exists;
+		String etag;
+		long lastModified;
+		long validated;
+	}
+
+	/**
+	 * @param file the JSON file the index is stored in
+	 * @param ttl time in milliseconds an entry is used without revalidation
+	 */
+	public ModelSourceIndex(final File file, final long ttl) {
+		this.file = file;
+		this.ttl = ttl;
+		load();
+	}
+
+	/**
+	 * @return the index stored in the CSBDeep folder of the user
+	 */
+	public static synchronized ModelSourceIndex getDefault() {
+		if (defaultIndex == null) {
+			defaultIndex = new ModelSourceIndex(new File(System.getProperty(
+				"user.home"), ".csbdeep" + File.separator + "model-index.json"),
+				DEFAULT_TTL);
+		}
+		return defaultIndex;
+	}
+
+	/**
+	 * @return true if the URL responded with status 200 when it was last
+	 *         checked
+	 */
+	public boolean exists(final String url) {
+		final Entry entry = getEntry(url);
+		return entry != null && entry.exists;
+	}
+
+	/**
+	 * @return the name the model of the URL is cached with, see
+	 *         {@link IOHelper#getUrlCacheName(Class, String)}
+	 * @throws IOException if the URL was never reached
+	 */
+	public String getCacheName(final Class<?> commandClass, final String url)
+		throws IOException
+	{
+		final Entry entry = getEntry(url);
+		if (entry == null || !entry.exists) {
+			throw new IOException("Could not reach " + url);
+		}
+		final ZonedDateTime lastModified = ZonedDateTime.ofInstant(Instant
+			.ofEpochMilli(entry.lastModified), ZoneId.of("GMT"));
+		return commandClass.getSimpleName() + "_" + new URL(url).getPath()
+			.replace(".zip", "").replace("/", "") + "_" + DateTimeFormatter
+				.ofPattern("yyyy-MM-dd-hh-mm-ss").format(lastModified);
+	}
+
+	private Entry getEntry(final String url) {
+		final Entry entry;
+		synchronized (this) {
+			entry = entries.get(url);
+		}
+		if (entry == null) {
+			validate(url);
+			synchronized (this) {
+				return entries.get(url);
+			}
+		}
+		if (System.currentTimeMillis() - entry.validated > ttl) {
+			revalidate(url);
+		}
+		return entry;
+	}
+
+	/**
+	 * Checks the URL in the background unless a check is already running.
+	 *
+	 * @return the running check
+	 */
+	public synchronized Future<?> revalidate(final String url) {
+		final Future<?> running = revalidating.get(url);
+		if (running != null && !running.isDone()) return running;
+		final Future<?> check = pool.submit(() -> validate(url));
+		revalidating.put(url, check);
+		return check;
+	}
+
+	/**
+	 * Checks the URL with a HEAD request, conditional if the URL is known.
+	 */
+	void validate(final String url) {
+		final Entry known;
+		synchronized (this) {
+			known = entries.get(url);
+		}
+		HttpURLConnection connection = null;
+		try {
+			connection = (HttpURLConnection) new URL(url).openConnection();
+			connection.setInstanceFollowRedirects(false);
+			connection.setRequestMethod("HEAD");
+			connection.setConnectTimeout(TIMEOUT);
+			connection.setReadTimeout(TIMEOUT);
+			if (known != null && known.exists) {
+				if (known.etag != null) {
+					connection.setRequestProperty("If-None-Match", known.etag);
+				}
+				connection.setIfModifiedSince(known.lastModified);
+			}
+			final int status = connection.getResponseCode();
+			final Entry entry = new Entry();
+			entry.validated = System.currentTimeMillis();
+			if (status == HttpURLConnection.HTTP_NOT_MODIFIED && known != null) {
+				entry.exists = known.exists;
+				entry.etag = known.etag;
+				entry.lastModified = known.lastModified;
+			}
+			else {
+				entry.exists = status == HttpURLConnection.HTTP_OK;
+				entry.etag = connection.getHeaderField("ETag");
+				entry.lastModified = connection.getLastModified();
+			}
+			// unknown URLs which do not exist are not remembered, e.g. partially
+			// typed URLs
+			if (!entry.exists && known == null) return;
+			synchronized (this) {
+				entries.put(url, entry);
+				save();
+			}
+		}
+		catch (IOException | IllegalArgumentException e) {
+			// offline or invalid URL, the known state stays valid
+		}
+		finally {
+			if (connection != null) connection.disconnect();
+		}
+	}
+
+	private synchronized void load() {
+		final Type type = new TypeToken<Map<String, Entry>>() {}.getType();
+		final Map<String, Entry> stored = JsonFiles.read(gson, file, type);
+		if (stored != null) entries.putAll(stored);
+	}
+
+	private void save() {
+		JsonFiles.write(gson, file, entries);
+	}
+
+}
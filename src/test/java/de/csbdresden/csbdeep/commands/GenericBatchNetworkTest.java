@@ -0,0 +1,85 @@
+package de.csbdresden.csbdeep.commands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.scijava.module.Module;
+
+import de.csbdresden.csbdeep.CSBDeepTest;
+import net.imagej.Dataset;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class GenericBatchNetworkTest extends CSBDeepTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testBatchProcessing() throws IOException, ExecutionException,
+		InterruptedException
+	{
+		launchImageJ();
+
+		final File inputDir = folder.newFolder("input");
+		final File outputDir = new File(folder.getRoot(), "output");
+		for (int i = 0; i < 3; i++) {
+			final Dataset input = createDataset(new FloatType(), new long[] { 10,
+				10 + i, 10 }, new AxisType[] { Axes.X, Axes.Y, Axes.Z });
+			ij.scifio().datasetIO().save(input, new File(inputDir, "input" + i +
+				".tif").getAbsolutePath());
+		}
+		new File(inputDir, "ignored.txt").createNewFile();
+
+		final URL networkUrl = this.getClass().getResource("denoise3D/model.zip");
+		final Module module = ij.command().run(GenericBatchNetwork.class, false,
+			"inputDir", inputDir, "outputDir", outputDir, "modelFile", new File(
+				networkUrl.getPath()), "overlap", 2).get();
+
+		assertEquals(3, module.getOutput("processedFiles"));
+		for (int i = 0; i < 3; i++) {
+			final File output = new File(outputDir, "input" + i + ".tif");
+			assertTrue(output.exists());
+			final Dataset result = ij.scifio().datasetIO().open(output
+				.getAbsolutePath());
+			assertEquals(10 + i, result.dimension(1));
+		}
+	}
+
+	@Test(timeout = 300000)
+	public void testUnreadableFile() throws IOException, ExecutionException,
+		InterruptedException
+	{
+		launchImageJ();
+
+		final File inputDir = folder.newFolder("input");
+		final File outputDir = new File(folder.getRoot(), "output");
+		Files.write(new File(inputDir, "input0.tif").toPath(), "no image"
+			.getBytes(StandardCharsets.UTF_8));
+		final Dataset input = createDataset(new FloatType(), new long[] { 10, 10,
+			10 }, new AxisType[] { Axes.X, Axes.Y, Axes.Z });
+		ij.scifio().datasetIO().save(input, new File(inputDir, "input1.tif")
+			.getAbsolutePath());
+
+		// the broken file is logged and skipped, the batch does not hang
+		final URL networkUrl = this.getClass().getResource("denoise3D/model.zip");
+		final Module module = ij.command().run(GenericBatchNetwork.class, false,
+			"inputDir", inputDir, "outputDir", outputDir, "modelFile", new File(
+				networkUrl.getPath()), "overlap", 2).get();
+
+		assertEquals(1, module.getOutput("processedFiles"));
+		assertTrue(new File(outputDir, "input1.tif").exists());
+	}
+
+}
@@ -2,6 +2,7 @@
 package de.csbdresden.csbdeep.commands;
 
 import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
 
 import java.io.File;
 import java.net.URL;
@@ -58,6 +59,27 @@ public class GenericNetworkTest extends CSBDeepTest {
 
 	}
 
+	@Test
+	public void testMaskMismatch() throws ExecutionException,
+		InterruptedException
+	{
+		launchImageJ();
+		URL networkUrl = this.getClass().getResource("denoise3D/model.zip");
+		final Dataset input = createDataset(new FloatType(), new long[] { 10, 10,
+			10 }, new AxisType[] { Axes.X, Axes.Y, Axes.Z });
+		final Dataset smallMask = createDataset(new FloatType(), new long[] { 5,
+			10 }, new AxisType[] { Axes.X, Axes.Y });
+		Module module = ij.command().run(GenericNetwork.class, false, "input",
+			input, "mask", smallMask, "modelFile", new File(networkUrl.getPath()))
+			.get();
+		assertNull(module.getOutput("output"));
+		final Dataset timeMask = createDataset(new FloatType(), new long[] { 10,
+			10 }, new AxisType[] { Axes.X, Axes.TIME });
+		module = ij.command().run(GenericNetwork.class, false, "input", input,
+			"mask", timeMask, "modelFile", new File(networkUrl.getPath())).get();
+		assertNull(module.getOutput("output"));
+	}
+
 	public <T extends RealType<T> & NativeType<T>> void testDataset(final T type,
 		final long[] dims, final AxisType[] axes) {
 
@@ -0,0 +1,90 @@
+package de.csbdresden.csbdeep.commands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.scijava.command.CommandModule;
+
+import de.csbdresden.csbdeep.CSBDeepTest;
+import net.imagej.Dataset;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class GenericWatchFolderNetworkTest extends CSBDeepTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(timeout = 300000)
+	public void testWatchFolder() throws IOException, ExecutionException,
+		InterruptedException
+	{
+		launchImageJ();
+
+		final File inputDir = folder.newFolder("input");
+		final File outputDir = new File(folder.getRoot(), "output");
+		save(inputDir, "existing.tif", 10);
+
+		final URL networkUrl = this.getClass().getResource("denoise3D/model.zip");
+		final Future<CommandModule> future = ij.command().run(
+			GenericWatchFolderNetwork.class, false, "inputDir", inputDir,
+			"outputDir", outputDir, "modelFile", new File(networkUrl.getPath()),
+			"overlap", 2, "processExisting", true, "stableMillis", 200,
+			"idleTimeout", 5);
+
+		// written while the folder is watched
+		Thread.sleep(1000);
+		save(inputDir, "new.tif", 12);
+
+		final CommandModule module = future.get();
+		assertEquals(2, module.getOutput("processedFiles"));
+		assertTrue(new File(outputDir, "existing.tif").exists());
+		final Dataset result = ij.scifio().datasetIO().open(new File(outputDir,
+			"new.tif").getAbsolutePath());
+		assertEquals(12, result.dimension(1));
+	}
+
+	@Test(timeout = 300000)
+	public void testIdleTimeoutWithFullQueue() throws IOException,
+		ExecutionException, InterruptedException
+	{
+		launchImageJ();
+
+		final File inputDir = folder.newFolder("input");
+		final File outputDir = new File(folder.getRoot(), "output");
+		for (int i = 0; i < 3; i++) {
+			save(inputDir, "existing" + i + ".tif", 10);
+		}
+
+		// the watcher stops while the single queue slot is still taken
+		final URL networkUrl = this.getClass().getResource("denoise3D/model.zip");
+		final Future<CommandModule> future = ij.command().run(
+			GenericWatchFolderNetwork.class, false, "inputDir", inputDir,
+			"outputDir", outputDir, "modelFile", new File(networkUrl.getPath()),
+			"overlap", 2, "processExisting", true, "stableMillis", 0,
+			"workQueueSize", 1, "idleTimeout", 1);
+
+		final CommandModule module = future.get();
+		assertEquals(3, module.getOutput("processedFiles"));
+	}
+
+	private void save(final File dir, final String name, final long height)
+		throws IOException
+	{
+		final Dataset input = createDataset(new FloatType(), new long[] { 10,
+			height, 10 }, new AxisType[] { Axes.X, Axes.Y, Axes.Z });
+		ij.scifio().datasetIO().save(input, new File(dir, name)
+			.getAbsolutePath());
+	}
+
+}
@@ -0,0 +1,59 @@
+package de.csbdresden.csbdeep.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+
+import de.csbdresden.csbdeep.CSBDeepTest;
+import net.imagej.Dataset;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class UpdatingDatasetSinkTest extends CSBDeepTest {
+
+	@Test
+	public void testChunks() {
+
+		launchImageJ();
+
+		final Dataset[] created = new Dataset[1];
+		final UpdatingDatasetSink sink = new UpdatingDatasetSink(ij.dataset(), 3,
+			dataset -> created[0] = dataset);
+
+		// single time points without time axis
+		sink.accept(createChunk(1, new long[] { 4, 5 }, new AxisType[] { Axes.X,
+			Axes.Y }), 0, 1);
+		assertNotNull(created[0]);
+		// chunk with two time points
+		sink.accept(createChunk(2, new long[] { 4, 5, 2 }, new AxisType[] {
+			Axes.X, Axes.Y, Axes.TIME }), 1, 2);
+
+		final Dataset output = sink.getOutput();
+		assertEquals(created[0], output);
+		assertEquals(3, output.numDimensions());
+		assertEquals(Axes.TIME, output.axis(2).type());
+		assertEquals(3, output.dimension(2));
+		final RandomAccess<? extends RealType<?>> ra = output.getImgPlus()
+			.randomAccess();
+		ra.setPosition(new long[] { 3, 4, 0 });
+		assertEquals(1, ra.get().getRealDouble(), 0);
+		ra.setPosition(new long[] { 3, 4, 2 });
+		assertEquals(2, ra.get().getRealDouble(), 0);
+	}
+
+	private Dataset createChunk(final float value, final long[] dims,
+		final AxisType[] axes)
+	{
+		final Dataset chunk = ij.dataset().create(new FloatType(), dims, "chunk",
+			axes);
+		for (final RealType<?> pixel : chunk.getImgPlus()) {
+			pixel.setReal(value);
+		}
+		return chunk;
+	}
+
+}
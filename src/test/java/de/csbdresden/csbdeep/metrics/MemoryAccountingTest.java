@@ -0,0 +1,96 @@
+package de.csbdresden.csbdeep.metrics;
+
+import static org.junit.Assert.*;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class MemoryAccountingTest {
+
+	@Test
+	public void testLiveAndPeak() {
+		final MemoryAccounting memory = new MemoryAccounting();
+		final Object input = new Object();
+		final Object output = new Object();
+		assertSame(input, memory.allocated(input, 100, "tensor fill"));
+		memory.allocated(output, 50, "Session.run");
+		// registering the same resource twice counts it once
+		memory.allocated(output, 50, "Session.run");
+		assertEquals(150, memory.getLiveBytes());
+		memory.released(output);
+		memory.released(input);
+		memory.released(input);
+		assertEquals(0, memory.getLiveBytes());
+		assertEquals(150, memory.getPeakBytes());
+		assertEquals(2, memory.getAllocations());
+	}
+
+	@Test
+	public void testRuns() {
+		final MemoryAccounting process = new MemoryAccounting();
+		process.allocated(new Object(), 10, "previous run");
+		final MemoryAccounting run = new MemoryAccounting(process);
+		final MemoryAccounting other = new MemoryAccounting(process);
+		assertEquals(0, run.getPeakBytes());
+
+		final Object tensor = new Object();
+		run.allocated(tensor, 20, "tensor fill");
+		other.allocated(new Object(), 30, "tensor fill");
+		// runs only see their own tensors, the process sees all of them
+		assertEquals(1, run.getUnreleased().size());
+		assertEquals("tensor fill", run.getUnreleased().get(0).getStage());
+		assertEquals(20, run.getUnreleased().get(0).getBytes());
+		assertEquals(20, run.getPeakBytes());
+		assertEquals(3, process.getLiveCount());
+		assertEquals(60, process.getLiveBytes());
+		run.released(tensor);
+		assertTrue(run.getUnreleased().isEmpty());
+		assertEquals(40, process.getLiveBytes());
+	}
+
+	@Test
+	public void testCollectedResource() throws InterruptedException {
+		final MemoryAccounting memory = new MemoryAccounting();
+		Object tensor = new Object();
+		final WeakReference<Object> reference = new WeakReference<>(tensor);
+		memory.allocated(tensor, 10, "tensor fill");
+		tensor = null;
+		for (int i = 0; i < 50 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		// the accounting does not keep the resource alive, but it still counts
+		assertNull(reference.get());
+		assertEquals(1, memory.getUnreleased().size());
+		assertEquals(10, memory.getLiveBytes());
+	}
+
+	@Test
+	public void testStages() {
+		final MemoryAccounting memory = new MemoryAccounting();
+		memory.imageAllocated("tensor decode", 100);
+		memory.imageAllocated("tensor decode", 100);
+		memory.sampleHeap("tensor decode");
+		assertEquals(200, (long) memory.getImageBytes().get("tensor decode"));
+		assertTrue(memory.getStageHeap().get("tensor decode") > 0);
+		assertTrue(memory.getPeakHeap() >= memory.getStageHeap().get(
+			"tensor decode"));
+	}
+
+	@Test
+	public void testMetrics() {
+		final Object tensor = new Object();
+		final RunMetrics metrics = new RunMetrics("model");
+		metrics.getMemoryAccounting().allocated(tensor, 1024, "tensor fill");
+		metrics.finish("model", Collections.emptyList());
+		metrics.getMemoryAccounting().released(tensor);
+		assertEquals(0, MemoryAccounting.getDefault().getLiveCount());
+
+		assertEquals(1024, metrics.getPeakTensorBytes());
+		assertEquals(1, metrics.getUnreleasedTensors());
+		assertTrue(metrics.toCsv().contains(",memory,tensors,unreleased,1\n"));
+	}
+
+}
@@ -0,0 +1,78 @@
+package de.csbdresden.csbdeep.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class OpProfileTest {
+
+	@Test
+	public void testSamples() {
+		final OpProfile profile = new OpProfile(2);
+		assertTrue(profile.nextSample());
+		assertTrue(profile.nextSample());
+		assertFalse(profile.nextSample());
+		assertEquals(2, profile.getSamples());
+	}
+
+	@Test
+	public void testSkippedTiles() {
+		final OpProfile profile = new OpProfile(1, 1);
+		assertFalse(profile.nextSample());
+		assertTrue(profile.nextSample());
+		assertFalse(profile.nextSample());
+		assertEquals(1, profile.getSamples());
+	}
+
+	@Test
+	public void testTopOps() {
+		final OpProfile profile = new OpProfile(2);
+		for (int i = 0; i < 2; i++) {
+			profile.nextSample();
+			profile.addOp("conv1/Conv2D", "Conv2D", 3000, 1000);
+			profile.addOp("conv2/Conv2D", "Conv2D", 5000, 3000 + i);
+			profile.addOp("relu", "Relu", 2000, 1000);
+		}
+
+		final List<OpProfile.Op> top = profile.getTopOps(2);
+		assertEquals(2, top.size());
+		assertEquals("conv2/Conv2D", top.get(0).getName());
+		assertEquals(10000, top.get(0).getComputeMicros());
+		assertEquals(3001, top.get(0).getPeakBytes());
+		assertEquals(2, top.get(0).getCount());
+		assertEquals("conv1/Conv2D", top.get(1).getName());
+		assertEquals(20000, profile.getComputeMicros());
+
+		final Map<String, Long> types = profile.getTypeMicros();
+		assertEquals("Conv2D", types.keySet().iterator().next());
+		assertEquals(16000, (long) types.get("Conv2D"));
+		assertEquals(4000, (long) types.get("Relu"));
+		assertTrue(profile.getSummary(1).contains("Conv2D 80.0%"));
+	}
+
+	@Test
+	public void testMetrics() {
+		final RunMetrics metrics = new RunMetrics("model");
+		metrics.setOpProfile(new OpProfile(1));
+		metrics.finish("model", Collections.emptyList());
+		// profiles without samples are not saved
+		assertFalse(metrics.toJson().contains("\"ops\""));
+
+		metrics.getOpProfile().nextSample();
+		metrics.getOpProfile().addOp("conv/Conv2D", "Conv2D", 1500, 10);
+		final JsonObject ops = new JsonParser().parse(metrics.toJson())
+			.getAsJsonObject().getAsJsonObject("ops");
+		assertEquals(1, ops.get("profiledTiles").getAsInt());
+		assertEquals(1.5, ops.getAsJsonObject("computeTimePerType").get("Conv2D")
+			.getAsDouble(), 1e-6);
+		assertTrue(metrics.toCsv().contains(",op,conv/Conv2D,computeTime,1.5\n"));
+	}
+
+}
@@ -0,0 +1,107 @@
+package de.csbdresden.csbdeep.metrics;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import de.csbdresden.csbdeep.task.DefaultTask;
+import de.csbdresden.csbdeep.task.Task;
+import de.csbdresden.csbdeep.task.TaskForce;
+
+public class RunMetricsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testTiles() {
+		final RunMetrics metrics = new RunMetrics("model");
+		for (int i = 1; i <= 100; i++) {
+			metrics.addTile(TimeUnit.MILLISECONDS.toNanos(i), 1000);
+		}
+		metrics.addSkippedTile(1000);
+		metrics.addBytesConverted(42);
+		metrics.finish("model", Collections.emptyList());
+
+		assertEquals(100, metrics.getTiles());
+		assertEquals(1, metrics.getSkippedTiles());
+		assertEquals(101000, metrics.getVoxels());
+		assertEquals(42, metrics.getBytesConverted());
+		assertEquals(50, metrics.getTileLatencyP50(), 1e-6);
+		assertEquals(90, metrics.getTileLatencyP90(), 1e-6);
+		assertEquals(99, metrics.getTileLatencyP99(), 1e-6);
+		assertEquals(100, metrics.getTileLatencyMax(), 1e-6);
+		assertTrue(metrics.getTilesPerSecond() > 0);
+		assertTrue(metrics.getPeakHeap() > 0);
+	}
+
+	@Test
+	public void testTaskTimes() throws InterruptedException {
+		final Task task = new DefaultTask();
+		final TaskForce taskForce = new TaskForce("Execution", new Task[] { task },
+			null);
+		final RunMetrics metrics = new RunMetrics("model");
+		task.setStarted();
+		Thread.sleep(20);
+		task.setFinished();
+		metrics.finish("model", Collections.singletonList(taskForce));
+
+		final double taskTime = metrics.getTaskWallTimes().get(
+			"Execution/DefaultTask");
+		assertTrue(taskTime >= 20);
+		assertEquals(taskTime, metrics.getTaskWallTimes().get("Execution"), 1e-6);
+		assertTrue(metrics.getWallTime() >= taskTime);
+		// thread CPU time, the sleeping thread hardly uses any
+		assertTrue(metrics.getTaskCpuTimes().get("Execution/DefaultTask") <=
+			taskTime);
+
+		taskForce.resetTime();
+		assertEquals(0, taskForce.getWallTime());
+	}
+
+	@Test
+	public void testSave() throws IOException {
+		final RunMetrics metrics = new RunMetrics("model");
+		metrics.addTile(1000000, 10);
+		metrics.finish("model", Collections.emptyList());
+
+		final File json = new File(folder.getRoot(), "metrics.json");
+		metrics.save(json);
+		final JsonObject parsed = new JsonParser().parse(new String(Files
+			.readAllBytes(json.toPath()), StandardCharsets.UTF_8)).getAsJsonObject();
+		assertEquals("model", parsed.get("model").getAsString());
+		assertEquals(1, parsed.getAsJsonObject("tiles").get("executed").getAsInt());
+
+		// CSV files get one header and the rows of each run appended
+		final File csv = new File(folder.getRoot(), "metrics.csv");
+		metrics.save(csv);
+		metrics.save(csv);
+		final List<String> lines = Files.readAllLines(csv.toPath());
+		assertEquals("timestamp,version,model,scope,name,metric,value", lines.get(
+			0));
+		assertEquals(1 + 2 * metrics.toCsv().split("\n").length, lines.size());
+	}
+
+	@Test
+	public void testPublish() {
+		final RunMetrics metrics = new RunMetrics("model");
+		metrics.finish("model", Collections.emptyList());
+		assertTrue(metrics.publish("RunMetricsTest"));
+		// a second run replaces the metrics of the first one
+		assertTrue(new RunMetrics("model").publish("RunMetricsTest"));
+	}
+
+}
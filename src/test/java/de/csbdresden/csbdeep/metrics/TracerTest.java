@@ -0,0 +1,89 @@
+package de.csbdresden.csbdeep.metrics;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class TracerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testChromeTrace() throws IOException {
+		Tracer.startRecording();
+		assertTrue(Tracer.isEnabled());
+		try (Tracer.Span span = Tracer.begin("Session.run", 3, new long[] { 1, 64,
+			64, 1 }))
+		{
+			// traced work
+		}
+		try (Tracer.Span span = Tracer.begin("stitch", Tracer.NO_TILE, null)) {
+			// traced work
+		}
+		final File file = new File(folder.getRoot(), "trace.json");
+		Tracer.stopRecording(file);
+
+		final JsonArray events = new JsonParser().parse(new String(Files
+			.readAllBytes(file.toPath()), StandardCharsets.UTF_8)).getAsJsonObject()
+			.getAsJsonArray("traceEvents");
+		assertEquals("thread_name", events.get(0).getAsJsonObject().get("name")
+			.getAsString());
+		assertEquals(3, events.size());
+		final JsonObject run = events.get(1).getAsJsonObject();
+		assertEquals("Session.run", run.get("name").getAsString());
+		assertEquals("X", run.get("ph").getAsString());
+		assertTrue(run.get("dur").getAsDouble() >= 0);
+		assertEquals(3, run.getAsJsonObject("args").get("tile").getAsLong());
+		assertEquals("[1, 64, 64, 1]", run.getAsJsonObject("args").get("shape")
+			.getAsString());
+		final JsonObject stitch = events.get(2).getAsJsonObject();
+		assertFalse(stitch.getAsJsonObject("args").has("tile"));
+	}
+
+	@Test
+	public void testNotRecording() throws IOException {
+		Tracer.startRecording();
+		final File file = new File(folder.getRoot(), "trace.json");
+		Tracer.stopRecording(file);
+		// spans after the recording stopped are not collected
+		try (Tracer.Span span = Tracer.begin("tensor fill", 0, null)) {
+			// traced work
+		}
+		Tracer.startRecording();
+		Tracer.stopRecording(file);
+		assertEquals(0, new JsonParser().parse(new String(Files.readAllBytes(file
+			.toPath()), StandardCharsets.UTF_8)).getAsJsonObject().getAsJsonArray(
+				"traceEvents").size());
+	}
+
+	@Test
+	public void testOneRecordingAtATime() throws IOException {
+		assertTrue(Tracer.startRecording());
+		// a second run does not restart the active recording
+		assertFalse(Tracer.startRecording());
+		try (Tracer.Span span = Tracer.begin("tensor fill", 0, null)) {
+			// traced work
+		}
+		final File file = new File(folder.getRoot(), "trace.json");
+		Tracer.stopRecording(file);
+		// the name of the thread and the span
+		assertEquals(2, new JsonParser().parse(new String(Files.readAllBytes(file
+			.toPath()), StandardCharsets.UTF_8)).getAsJsonObject().getAsJsonArray(
+				"traceEvents").size());
+		assertTrue(Tracer.startRecording());
+		Tracer.stopRecording(file);
+	}
+
+}
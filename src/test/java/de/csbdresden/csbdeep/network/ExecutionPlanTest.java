@@ -0,0 +1,88 @@
+package de.csbdresden.csbdeep.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.csbdresden.csbdeep.CSBDeepTest;
+import de.csbdresden.csbdeep.network.model.ExecutionPlan;
+import de.csbdresden.csbdeep.network.model.ExecutionPlanCache;
+import de.csbdresden.csbdeep.network.model.ImageTensor;
+import de.csbdresden.csbdeep.network.model.Network;
+import net.imagej.Dataset;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class ExecutionPlanTest extends CSBDeepTest {
+
+	@Test
+	public void testReusePlan() {
+		launchImageJ();
+		final AxisType[] axes = { Axes.X, Axes.Y, Axes.Z };
+		final Dataset input = createDataset(new FloatType(), new long[] { 10, 20,
+			1 }, axes);
+		final Network network = new TestNetworkSingle2D2D();
+		ij.context().inject(network);
+
+		assertFalse(network.applyExecutionPlan(input));
+		network.loadInputNode(input);
+		network.loadOutputNode(input);
+		network.preprocess();
+		final List<Integer> droppedDims = network.dropSingletonDims();
+		final ExecutionPlan plan = network.getExecutionPlan();
+		assertNotNull(plan);
+		assertEquals(droppedDims, plan.getDroppedDims());
+		final int[] mapping = network.getInputNode().getMappingIndices();
+		final AxisType[] finalAxes = network.getInputNode().getFinalAxesArray();
+
+		// same shape, axes and type
+		final Dataset sameShape = createDataset(new FloatType(), new long[] { 10,
+			20, 1 }, axes);
+		network.clear();
+		assertTrue(network.applyExecutionPlan(sameShape));
+		assertSame(plan, network.getExecutionPlan());
+		assertEquals(droppedDims, network.dropSingletonDims());
+		assertArrayEquals(mapping, network.getInputNode().getMappingIndices());
+		assertArrayEquals(finalAxes, plan.getInputAxes());
+
+		// the plan is not changed by modifying the nodes of the network
+		network.getInputNode().setNodeAxis(1, Axes.TIME);
+		assertArrayEquals(finalAxes, plan.getInputNode().getFinalAxesArray());
+
+		final Dataset otherShape = createDataset(new FloatType(), new long[] { 10,
+			30, 1 }, axes);
+		assertFalse(network.applyExecutionPlan(otherShape));
+
+		network.clearExecutionPlans();
+		assertNull(network.getExecutionPlan());
+		assertFalse(network.applyExecutionPlan(sameShape));
+	}
+
+	@Test
+	public void testCacheSize() {
+		final ImageTensor node = new ImageTensor();
+		node.initialize(new long[] { 5, 5 }, new AxisType[] { Axes.X, Axes.Y });
+		node.setNodeShape(new long[] { -1, -1 });
+		final ExecutionPlanCache cache = new ExecutionPlanCache(2);
+		cache.put(new ExecutionPlan("a", node, node, Collections.emptyList()));
+		cache.put(new ExecutionPlan("b", node, node, Collections.emptyList()));
+		// a was used more recently than b
+		assertNotNull(cache.get("a"));
+		cache.put(new ExecutionPlan("c", node, node, Collections.emptyList()));
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+	}
+
+}
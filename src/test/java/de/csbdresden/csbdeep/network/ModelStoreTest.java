@@ -0,0 +1,98 @@
+package de.csbdresden.csbdeep.network;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.csbdresden.csbdeep.network.model.ModelStore;
+
+public class ModelStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testConcurrentInstall() throws Exception {
+		final File zip = createZip("model/");
+		final ModelStore store = new ModelStore(folder.newFolder("store"));
+		final ExecutorService pool = Executors.newFixedThreadPool(4);
+		final List<Future<File>> installs = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			installs.add(pool.submit(() -> store.getModelDir(zip)));
+		}
+		final File modelDir = installs.get(0).get();
+		for (final Future<File> install : installs) {
+			assertEquals(modelDir, install.get());
+		}
+		pool.shutdown();
+
+		assertEquals(store.getRoot(), modelDir.getParentFile());
+		assertEquals(DigestUtils.sha256Hex(Files.readAllBytes(zip.toPath())),
+			modelDir.getName());
+		assertEquals("graph", read(new File(modelDir,
+			ModelStore.SAVED_MODEL_FILE)));
+		assertEquals("weights", read(new File(modelDir,
+			"variables/variables.data-00000-of-00001")));
+		// only the lock file is left next to the model
+		assertEquals(2, store.getRoot().list().length);
+	}
+
+	@Test
+	public void testExplodedDirectory() throws IOException {
+		final File dir = folder.newFolder("exploded");
+		Files.write(new File(dir, ModelStore.SAVED_MODEL_FILE).toPath(), "graph"
+			.getBytes(StandardCharsets.UTF_8));
+		final ModelStore store = new ModelStore(folder.newFolder("store"));
+		assertEquals(dir, store.getModelDir(dir));
+		assertEquals(0, store.getRoot().list().length);
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidEntry() throws IOException {
+		final File zip = createZip("../");
+		new ModelStore(folder.newFolder("store")).getModelDir(zip);
+	}
+
+	private File createZip(final String prefix) throws IOException {
+		final File zip = folder.newFile();
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(
+			zip)))
+		{
+			write(out, prefix + ModelStore.SAVED_MODEL_FILE, "graph");
+			write(out, prefix + "variables/variables.data-00000-of-00001",
+				"weights");
+			write(out, prefix + "variables/variables.index", "index");
+		}
+		return zip;
+	}
+
+	private static void write(final ZipOutputStream out, final String name,
+		final String content) throws IOException
+	{
+		out.putNextEntry(new ZipEntry(name));
+		out.write(content.getBytes(StandardCharsets.UTF_8));
+		out.closeEntry();
+	}
+
+	private static String read(final File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()),
+			StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,52 @@
+package de.csbdresden.csbdeep.network;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import de.csbdresden.csbdeep.CSBDeepTest;
+import de.csbdresden.csbdeep.commands.GenericNetworkTest;
+import net.imagej.Dataset;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.type.numeric.real.FloatType;
+
+public class PredictorTest extends CSBDeepTest {
+
+	@Test
+	public void testConcurrentPredictions() throws Exception {
+		launchImageJ();
+
+		final URL networkUrl = GenericNetworkTest.class.getResource(
+			"denoise3D/model.zip");
+		final Predictor predictor = new Predictor.Builder().setModelFile(new File(
+			networkUrl.getPath())).setOverlap(2).build(ij.context());
+
+		final ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			final List<Dataset> inputs = new ArrayList<>();
+			final List<Future<Dataset>> outputs = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				// different sizes, each call needs its own mapping and tiling
+				final Dataset input = createDataset(new FloatType(), new long[] { 10,
+					10 + i % 4, 10 }, new AxisType[] { Axes.X, Axes.Y, Axes.Z });
+				inputs.add(input);
+				outputs.add(pool.submit(() -> predictor.predict(input)));
+			}
+			for (int i = 0; i < inputs.size(); i++) {
+				testResultAxesAndSize(inputs.get(i), outputs.get(i).get());
+			}
+		}
+		finally {
+			pool.shutdownNow();
+			predictor.dispose();
+		}
+	}
+
+}
@@ -0,0 +1,82 @@
+package de.csbdresden.csbdeep.network.model;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+public class TileResultCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void storeAndLoad() throws IOException {
+		final File dir = folder.newFolder();
+		final TileResultCache cache = new TileResultCache(dir, 1024 * 1024);
+		cache.setContext("model");
+		final Img<FloatType> tile = createImage(1, 16, 8);
+		final String key = cache.getKey(tile);
+		assertNull(cache.get(key));
+		cache.put(key, createImage(2, 16, 8));
+
+		final RandomAccessibleInterval<FloatType> cached = cache.get(key);
+		assertNotNull(cached);
+		assertArrayEquals(new long[] { 16, 8 }, Intervals.dimensionsAsLongArray(
+			cached));
+		assertEquals(2 * 127, getLast(cached), 0);
+
+		// entries are reused in a new session with the same directory
+		assertNotNull(new TileResultCache(dir, 1024 * 1024).get(key));
+
+		// a different context or content results in a different key
+		assertNotEquals(key, cache.getKey(createImage(3, 16, 8)));
+		cache.setContext("other model");
+		assertNotEquals(key, cache.getKey(tile));
+	}
+
+	@Test
+	public void evictLeastRecentlyUsed() throws IOException {
+		// each entry needs 4 + 2 * 8 + 64 * 4 = 276 bytes
+		final TileResultCache cache = new TileResultCache(folder.newFolder(), 600);
+		cache.put("a", createImage(1, 8, 8));
+		cache.put("b", createImage(2, 8, 8));
+		assertNotNull(cache.get("a"));
+		cache.put("c", createImage(3, 8, 8));
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+		assertEquals(552, cache.getSize());
+	}
+
+	private static Img<FloatType> createImage(final float factor,
+		final long... dims)
+	{
+		final Img<FloatType> img = ArrayImgs.floats(dims);
+		float i = 0;
+		for (final FloatType value : img) {
+			value.set(factor * i++);
+		}
+		return img;
+	}
+
+	private static float getLast(final RandomAccessibleInterval<FloatType> img) {
+		float last = 0;
+		for (final FloatType value : Views.flatIterable(img)) {
+			last = value.get();
+		}
+		return last;
+	}
+
+}
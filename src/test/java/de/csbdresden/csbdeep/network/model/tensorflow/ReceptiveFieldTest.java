@@ -0,0 +1,93 @@
+package de.csbdresden.csbdeep.network.model.tensorflow;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.tensorflow.framework.AttrValue;
+import org.tensorflow.framework.GraphDef;
+import org.tensorflow.framework.NodeDef;
+import org.tensorflow.framework.TensorProto;
+import org.tensorflow.framework.TensorShapeProto;
+
+public class ReceptiveFieldTest {
+
+	/**
+	 * input - conv 3x3 - pool 2x2 - conv 3x3 - resize - concat - conv 1x1, the
+	 * concat joins the skip connection from the first convolution. A second
+	 * head with a 5x5 convolution is defined after the output.
+	 */
+	private static GraphDef createUNet() {
+		final GraphDef.Builder graph = GraphDef.newBuilder();
+		graph.addNode(node("input", "Placeholder"));
+		addConv(graph, "conv1", "input", 3);
+		graph.addNode(node("pool", "MaxPool", "conv1") //
+			.putAttr("ksize", list(1, 2, 2, 1)) //
+			.putAttr("strides", list(1, 2, 2, 1)));
+		addConv(graph, "conv2", "pool", 3);
+		graph.addNode(node("resize", "ResizeNearestNeighbor", "conv2", "size"));
+		graph.addNode(node("concat", "ConcatV2", "resize", "conv1", "axis"));
+		addConv(graph, "output", "concat", 1);
+		addConv(graph, "head", "output", 5);
+		return graph.build();
+	}
+
+	@Test
+	public void followsTheDeepestPathToTheOutput() {
+		final ReceptiveField field = ReceptiveField.estimate(createUNet(), 2,
+			"output:0");
+		// 3 + (2 - 1) * 1 + (3 - 1) * 2
+		assertArrayEquals(new long[] { 8, 8 }, field.getSize());
+		assertArrayEquals(new long[] { 4, 4 }, field.getHalo());
+		assertArrayEquals(new long[] { 2, 2 }, field.getDivBy());
+	}
+
+	@Test
+	public void withoutOutputTakesTheLargestReceptiveField() {
+		final ReceptiveField field = ReceptiveField.estimate(createUNet(), 2,
+			null);
+		assertArrayEquals(new long[] { 12, 12 }, field.getSize());
+	}
+
+	@Test
+	public void withoutConvolution() {
+		final GraphDef graph = GraphDef.newBuilder() //
+			.addNode(node("input", "Placeholder")) //
+			.addNode(node("output", "Identity", "input")) //
+			.build();
+		assertNull(ReceptiveField.estimate(graph, 2, "output:0"));
+	}
+
+	private static NodeDef.Builder node(final String name, final String op,
+		final String... inputs)
+	{
+		return NodeDef.newBuilder().setName(name).setOp(op).addAllInput(Arrays
+			.asList(inputs));
+	}
+
+	private static void addConv(final GraphDef.Builder graph, final String name,
+		final String input, final int kernel)
+	{
+		final TensorShapeProto.Builder shape = TensorShapeProto.newBuilder();
+		for (final long size : new long[] { kernel, kernel, 1, 1 }) {
+			shape.addDim(TensorShapeProto.Dim.newBuilder().setSize(size));
+		}
+		graph.addNode(node(name + "/kernel", "Const").putAttr("value", AttrValue
+			.newBuilder().setTensor(TensorProto.newBuilder().setTensorShape(shape))
+			.build()));
+		graph.addNode(node(name + "/kernel/read", "Identity", name + "/kernel"));
+		graph.addNode(node(name, "Conv2D", input, name + "/kernel/read") //
+			.putAttr("strides", list(1, 1, 1, 1)));
+	}
+
+	private static AttrValue list(final long... values) {
+		final AttrValue.ListValue.Builder list = AttrValue.ListValue.newBuilder();
+		for (final long value : values) {
+			list.addI(value);
+		}
+		return AttrValue.newBuilder().setList(list).build();
+	}
+
+}
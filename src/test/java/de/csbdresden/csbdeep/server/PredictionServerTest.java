@@ -0,0 +1,113 @@
+package de.csbdresden.csbdeep.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import de.csbdresden.csbdeep.CSBDeepTest;
+import io.scif.services.DatasetIOService;
+import net.imagej.Dataset;
+import net.imglib2.type.numeric.RealType;
+
+public class PredictionServerTest extends CSBDeepTest {
+
+	@Test
+	public void testRawPrediction() throws IOException {
+
+		launchImageJ();
+
+		// doubles the input
+		final PredictionServer server = new PredictionServer(ij.dataset(), ij.get(
+			DatasetIOService.class), (model, input) -> {
+				final Dataset output = input.duplicate();
+				for (final RealType<?> pixel : output.getImgPlus()) {
+					pixel.setReal(pixel.getRealDouble() * 2);
+				}
+				return output;
+			}, 1, 4);
+		server.start(0);
+		try {
+			final float[] pixels = new float[] { 1, 2, 3, 4, 5, 6 };
+			final ByteBuffer body = ByteBuffer.allocate(pixels.length * 4).order(
+				ByteOrder.LITTLE_ENDIAN);
+			for (final float pixel : pixels) {
+				body.putFloat(pixel);
+			}
+			final HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://127.0.0.1:" + server.getPort() +
+					"/predict?format=raw&dims=3,2&axes=X,Y").openConnection();
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.array());
+			}
+			assertEquals(200, connection.getResponseCode());
+			assertEquals("3,2", connection.getHeaderField("X-Dims"));
+			assertEquals("X,Y", connection.getHeaderField("X-Axes"));
+			final byte[] response;
+			try (InputStream in = connection.getInputStream()) {
+				response = PredictionServer.readAll(in);
+			}
+			final ByteBuffer result = ByteBuffer.wrap(response).order(
+				ByteOrder.LITTLE_ENDIAN);
+			for (final float pixel : pixels) {
+				assertEquals(pixel * 2, result.getFloat(), 0);
+			}
+
+			final String status = new PredictionClient(server.getPort()).status();
+			assertTrue(status.contains("\"processed\":1"));
+			assertTrue(status.contains("\"queued\":0"));
+		}
+		finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testRejectedRequests() throws IOException {
+
+		launchImageJ();
+
+		final PredictionServer server = new PredictionServer(ij.dataset(), ij.get(
+			DatasetIOService.class), (model, input) -> {
+				if (model != null) throw new SecurityException("not allowed");
+				return input;
+			}, 1, 4);
+		server.setMaxRequestSize(16);
+		server.start(0);
+		try {
+			assertEquals(413, post(server, "format=raw&dims=3,2", new byte[24]));
+			assertEquals(413, post(server, "format=tiff", new byte[32]));
+			assertEquals(403, post(server, "format=raw&dims=2,2&model=other.zip",
+				new byte[16]));
+			assertEquals(200, post(server, "format=raw&dims=2,2", new byte[16]));
+		}
+		finally {
+			server.stop();
+		}
+	}
+
+	private static int post(final PredictionServer server, final String query,
+		final byte[] body) throws IOException
+	{
+		final HttpURLConnection connection = (HttpURLConnection) new URL(
+			"http://127.0.0.1:" + server.getPort() + "/predict?" + query)
+				.openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body);
+		}
+		return connection.getResponseCode();
+	}
+
+}
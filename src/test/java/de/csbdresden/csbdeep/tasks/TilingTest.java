@@ -1,10 +1,15 @@
 
 package de.csbdresden.csbdeep.tasks;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.junit.Test;
 
@@ -13,14 +18,24 @@ import de.csbdresden.csbdeep.network.model.ImageTensor;
 import de.csbdresden.csbdeep.task.DefaultTask;
 import de.csbdresden.csbdeep.task.Task;
 import de.csbdresden.csbdeep.tiling.AdvancedTiledView;
+import de.csbdresden.csbdeep.tiling.CellAlignedTiling;
+import de.csbdresden.csbdeep.tiling.CostOptimizedTiling;
 import de.csbdresden.csbdeep.tiling.DefaultTiling;
+import de.csbdresden.csbdeep.tiling.EmptyTileFilter;
+import de.csbdresden.csbdeep.tiling.MaskTileFilter;
+import de.csbdresden.csbdeep.tiling.TileOrder;
 import de.csbdresden.csbdeep.tiling.Tiling;
 import net.imagej.Dataset;
 import net.imagej.axis.Axes;
 import net.imagej.axis.AxisType;
 import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
 
 public class TilingTest extends CSBDeepTest {
@@ -294,6 +309,218 @@ public class TilingTest extends CSBDeepTest {
 		tiledView.dispose();
 	}
 
+	@Test
+	public void testCellAlignedTiling() {
+
+		final Map<AxisType, Long> cellDimensions = new HashMap<>();
+		cellDimensions.put(Axes.X, 64L);
+		cellDimensions.put(Axes.Y, 64L);
+		final Tiling tiling = new CellAlignedTiling(2, 1, 32, 16, cellDimensions);
+		final long[] datasetSize = { 192, 100 };
+		final AxisType[] axes = { Axes.X, Axes.Y };
+		Tiling.TilingAction[] actions = new Tiling.TilingAction[axes.length];
+		Arrays.fill(actions, Tiling.TilingAction.TILE_WITH_PADDING);
+
+		final AdvancedTiledView<FloatType> tiledView = runTiling(datasetSize, axes, tiling, actions);
+
+		assertEquals(2, tiledView.dimension(0));
+		assertEquals(1, tiledView.dimension(1));
+
+		// X is aligned to the cells, Y is too small to hold two cells
+		assertEquals(128, tiledView.getBlockSize()[0]);
+		assertEquals(128, tiledView.getBlockSize()[1]);
+
+		assertEquals(2, tiledView.getTileOrder().length);
+
+		tiledView.dispose();
+	}
+
+	@Test
+	public void testAxesTilingSettings() {
+
+		final DefaultTiling<FloatType> tiling = new DefaultTiling<>(4, 1, 32, 16);
+		final Map<AxisType, Integer> axesOverlap = new HashMap<>();
+		axesOverlap.put(Axes.X, 20);
+		final Map<AxisType, Integer> axesDivBy = new HashMap<>();
+		axesDivBy.put(Axes.Y, 48);
+		tiling.setAxesOverlap(axesOverlap);
+		tiling.setAxesDivBy(axesDivBy);
+		final long[] datasetSize = { 256, 256 };
+		final AxisType[] axes = { Axes.X, Axes.Y };
+		Tiling.TilingAction[] actions = new Tiling.TilingAction[axes.length];
+		Arrays.fill(actions, Tiling.TilingAction.TILE_WITH_PADDING);
+
+		final AdvancedTiledView<FloatType> tiledView = runTiling(datasetSize, axes, tiling, actions);
+
+		assertEquals(2, tiledView.dimension(0));
+		assertEquals(2, tiledView.dimension(1));
+
+		// Y has to be a multiple of lcm(32, 48)
+		assertEquals(128, tiledView.getBlockSize()[0]);
+		assertEquals(192, tiledView.getBlockSize()[1]);
+
+		// the overlap of X is rounded up to the block multiple
+		assertEquals(32, tiledView.getOverlapComplete()[0]);
+		assertEquals(16, tiledView.getOverlapComplete()[1]);
+
+		tiledView.dispose();
+	}
+
+	@Test
+	public void testAxesOverlapBelowDefaultOverlap() {
+
+		final DefaultTiling<FloatType> tiling = new DefaultTiling<>(4, 1, 8, 32);
+		final Map<AxisType, Integer> axesOverlap = new HashMap<>();
+		axesOverlap.put(Axes.X, 12);
+		axesOverlap.put(Axes.Y, 40);
+		tiling.setAxesOverlap(axesOverlap);
+		final long[] datasetSize = { 256, 256 };
+		final AxisType[] axes = { Axes.X, Axes.Y };
+		Tiling.TilingAction[] actions = new Tiling.TilingAction[axes.length];
+		Arrays.fill(actions, Tiling.TilingAction.TILE_WITH_PADDING);
+
+		final AdvancedTiledView<FloatType> tiledView = runTiling(datasetSize, axes, tiling, actions);
+
+		// the default overlap is kept if the model needs less
+		assertEquals(32, tiledView.getOverlapComplete()[0]);
+		assertEquals(40, tiledView.getOverlapComplete()[1]);
+
+		tiledView.dispose();
+	}
+
+	@Test
+	public void testCostOptimizedTiling() {
+
+		final CostOptimizedTiling<FloatType> tiling = new CostOptimizedTiling<>(4, 1, 16, 32);
+		final long[] datasetSize = { 20, 512, 512 };
+		final AxisType[] axes = { Axes.Z, Axes.X, Axes.Y };
+		Tiling.TilingAction[] actions = new Tiling.TilingAction[axes.length];
+		Arrays.fill(actions, Tiling.TilingAction.TILE_WITH_PADDING);
+
+		final AdvancedTiledView<FloatType> tiledView = runTiling(datasetSize, axes, tiling, actions);
+
+		// the default tiling would use 2 x 2 tiles with overlap in X and Y,
+		// 4 slices in Y have the same tile size limit but less overlap
+		assertEquals(1, tiledView.dimension(0));
+		assertEquals(1, tiledView.dimension(1));
+		assertEquals(4, tiledView.dimension(2));
+
+		assertEquals(32, tiledView.getBlockSize()[0]);
+		assertEquals(512, tiledView.getBlockSize()[1]);
+		assertEquals(128, tiledView.getBlockSize()[2]);
+
+		assertEquals(32 * 512 * 192 * 4 / (double) (20 * 512 * 512), tiling
+			.getOverheadRatio(), 0.0001);
+
+		tiledView.dispose();
+	}
+
+	@Test
+	public void testZOrder() {
+		final long[] order = TileOrder.zOrder(new long[] { 4, 4 });
+		assertEquals(16, order.length);
+		assertArrayEquals(new long[] { 0, 1, 4, 5, 2, 3, 6, 7 }, Arrays.copyOf(
+			order, 8));
+		final long[] sorted = order.clone();
+		Arrays.sort(sorted);
+		for (int i = 0; i < sorted.length; i++) {
+			assertEquals(i, sorted[i]);
+		}
+	}
+
+	@Test
+	public void testEmptyTileFilter() {
+
+		final RandomAccessibleInterval<FloatType> empty = ArrayImgs.floats(8, 8);
+		final RandomAccessibleInterval<FloatType> dim = ArrayImgs.floats(8, 8);
+		Views.iterable(dim).firstElement().set(0.05f);
+		final RandomAccessibleInterval<FloatType> bright = ArrayImgs.floats(8, 8);
+		Views.iterable(bright).firstElement().set(0.5f);
+
+		final RandomAccessibleInterval<FloatType> constant = ArrayImgs.floats(8, 8);
+		Views.iterable(constant).forEach(pixel -> pixel.set(0.5f));
+
+		final EmptyTileFilter<FloatType> filter = new EmptyTileFilter<>(
+			EmptyTileFilter.Mode.CONSTANT);
+		assertFalse(filter.canSkip(null, null, empty));
+		filter.setMaxThreshold(0);
+		assertTrue(filter.canSkip(null, null, empty));
+		assertFalse(filter.canSkip(null, null, dim));
+		filter.setMaxThreshold(0.1);
+		assertTrue(filter.canSkip(null, null, dim));
+		assertFalse(filter.canSkip(null, null, bright));
+		// constant tiles are only empty below the threshold
+		assertFalse(filter.canSkip(null, null, constant));
+		filter.setVarianceThreshold(0);
+		assertTrue(filter.canSkip(null, null, empty));
+		assertFalse(filter.canSkip(null, null, dim));
+
+		// constant results need the output of a processed tile as template
+		filter.setFillValue(2);
+		assertNull(filter.createSkippedResult(empty, null));
+		final RandomAccessibleInterval<FloatType> template = ArrayImgs.floats(4,
+			4);
+		final RandomAccessibleInterval<FloatType> result = filter
+			.createSkippedResult(empty, template);
+		assertArrayEquals(new long[] { 4, 4 }, Intervals.dimensionsAsLongArray(
+			result));
+		assertEquals(2, Views.iterable(result).firstElement().get(), 0);
+
+		// the background response is reused for tiles of the same size and value
+		final EmptyTileFilter<FloatType> background = new EmptyTileFilter<>(
+			EmptyTileFilter.Mode.BACKGROUND_RESPONSE);
+		assertNull(background.createSkippedResult(empty, template));
+		background.tileProcessed(empty, template);
+		assertEquals(template, background.createSkippedResult(ArrayImgs.floats(8,
+			8), null));
+		assertNull(background.createSkippedResult(dim, template));
+		assertNull(background.createSkippedResult(ArrayImgs.floats(4, 4),
+			template));
+
+		// tiles with nearly the same mean share the response
+		final RandomAccessibleInterval<FloatType> noisy = ArrayImgs.floats(8, 8);
+		Views.iterable(noisy).firstElement().set(1e-5f);
+		background.setMaxThreshold(0.1);
+		assertTrue(background.canSkip(null, null, noisy));
+		assertEquals(template, background.createSkippedResult(noisy, null));
+	}
+
+	@Test
+	public void testMaskTileFilter() {
+
+		final Tiling tiling = new DefaultTiling(4, 1, 32, 0);
+		final long[] datasetSize = { 128, 128 };
+		final AxisType[] axes = { Axes.X, Axes.Y };
+		Tiling.TilingAction[] actions = new Tiling.TilingAction[axes.length];
+		Arrays.fill(actions, Tiling.TilingAction.TILE_WITH_PADDING);
+
+		final AdvancedTiledView<FloatType> tiledView = runTiling(datasetSize, axes, tiling, actions);
+		assertEquals(2, tiledView.dimension(0));
+		assertEquals(2, tiledView.dimension(1));
+
+		// mask with swapped axes, containing one pixel at X = 100, Y = 10
+		final Img<FloatType> mask = ArrayImgs.floats(128, 128);
+		final RandomAccess<FloatType> ra = mask.randomAccess();
+		ra.setPosition(new long[] { 10, 100 });
+		ra.get().set(1);
+		final MaskTileFilter<FloatType> filter = new MaskTileFilter<>(mask,
+			new AxisType[] { Axes.Y, Axes.X });
+
+		assertTrue(filter.canSkip(tiledView, new long[] { 0, 0 }, null));
+		assertFalse(filter.canSkip(tiledView, new long[] { 1, 0 }, null));
+		assertTrue(filter.canSkip(tiledView, new long[] { 0, 1 }, null));
+		assertTrue(filter.canSkip(tiledView, new long[] { 1, 1 }, null));
+
+		final Interval boundingBox = MaskTileFilter.getBoundingBox(mask);
+		assertArrayEquals(new long[] { 10, 100 }, Intervals.minAsLongArray(
+			boundingBox));
+		assertArrayEquals(new long[] { 10, 100 }, Intervals.maxAsLongArray(
+			boundingBox));
+		assertNull(MaskTileFilter.getBoundingBox(ArrayImgs.floats(4, 4)));
+
+		tiledView.dispose();
+	}
+
 	private AdvancedTiledView<FloatType> runTiling(long[] datasetSize, AxisType[] axes, Tiling tiling, Tiling.TilingAction[] actions) {
 
 		launchImageJ();
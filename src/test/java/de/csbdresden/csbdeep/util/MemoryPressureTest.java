@@ -0,0 +1,73 @@
+package de.csbdresden.csbdeep.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import de.csbdresden.csbdeep.metrics.MemoryAccounting;
+
+public class MemoryPressureTest {
+
+	@Test
+	public void testNativeLimit() throws InterruptedException {
+		final MemoryAccounting accounting = new MemoryAccounting();
+		final MemoryPressure pressure = new MemoryPressure(0, 100, accounting);
+		final Object tensor = new Object();
+		accounting.allocated(tensor, 60, "tensor fill");
+		assertFalse(pressure.isUnderPressure());
+		accounting.allocated(new Object(), 60, "Session.run");
+		assertTrue(pressure.isNativeUnderPressure());
+		assertFalse(pressure.isHeapUnderPressure());
+		assertFalse(pressure.awaitRelief(100, TimeUnit.MILLISECONDS));
+
+		pressure.setNativeLimit(0);
+		assertFalse(pressure.isUnderPressure());
+	}
+
+	@Test
+	public void testRelief() throws InterruptedException {
+		final MemoryAccounting accounting = new MemoryAccounting();
+		final MemoryPressure pressure = new MemoryPressure(0, 100, accounting);
+		final Object tensor = new Object();
+		accounting.allocated(tensor, 200, "tensor fill");
+		final Thread release = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			}
+			catch (final InterruptedException e) {
+				return;
+			}
+			accounting.released(tensor);
+		});
+		release.start();
+		assertTrue(pressure.awaitRelief(10, TimeUnit.SECONDS));
+		assertFalse(pressure.isUnderPressure());
+		release.join();
+	}
+
+	@Test
+	public void testReliefExpected() {
+		final MemoryAccounting accounting = new MemoryAccounting();
+		final MemoryPressure pressure = new MemoryPressure(0, 100, accounting);
+		pressure.runStarted();
+		assertFalse(pressure.isReliefExpected());
+		pressure.runStarted();
+		assertTrue(pressure.isReliefExpected());
+		pressure.runFinished();
+		accounting.allocated(new Object(), 200, "tensor fill");
+		assertTrue(pressure.isReliefExpected());
+		pressure.runFinished();
+	}
+
+	@Test
+	public void testHeapThreshold() {
+		// a threshold at the maximum of the heap is not exceeded by this test
+		final MemoryPressure pressure = new MemoryPressure(1, 0,
+			new MemoryAccounting());
+		assertFalse(pressure.isHeapUnderPressure());
+		assertEquals(0, pressure.getNotifications());
+	}
+
+}
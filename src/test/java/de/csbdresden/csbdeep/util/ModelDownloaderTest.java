@@ -0,0 +1,165 @@
+package de.csbdresden.csbdeep.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class ModelDownloaderTest {
+
+	private static final String ETAG = "\"v1\"";
+	private static final String LAST_MODIFIED = "Tue, 15 Nov 1994 08:12:31 GMT";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HttpServer server;
+	private byte[] content;
+	private String url;
+	private final AtomicBoolean dropConnection = new AtomicBoolean();
+	private final List<String> ranges = new CopyOnWriteArrayList<>();
+	private final List<Integer> responses = new CopyOnWriteArrayList<>();
+
+	@Before
+	public void startServer() throws IOException {
+		content = createZip();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/model.zip", this::handle);
+		server.start();
+		url = "http://127.0.0.1:" + server.getAddress().getPort() + "/model.zip";
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		dropConnection.set(true);
+		final ModelDownloader downloader = new ModelDownloader(folder.newFolder(),
+			2);
+		final List<Long> progress = new CopyOnWriteArrayList<>();
+		final ModelDownloader.Download download = downloader.start(url);
+		download.addListener((bytes, totalBytes, bytesPerSecond) -> progress.add(
+			bytes));
+		final File file = download.get();
+
+		assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+		assertEquals(1, ranges.size());
+		assertTrue(ranges.get(0).matches("bytes=[1-9][0-9]*-"));
+		assertEquals(content.length, download.getTotalBytes());
+		assertEquals(content.length, (long) progress.get(progress.size() - 1));
+		assertFalse(new File(file.getPath() + ".part").exists());
+	}
+
+	@Test
+	public void testNotModified() throws IOException {
+		final File dir = folder.newFolder();
+		final File file = new ModelDownloader(dir, 0).start(url).get();
+		assertEquals(Integer.valueOf(200), responses.get(responses.size() - 1));
+
+		// a new downloader, e.g. of the next session, revalidates the file
+		assertEquals(file, new ModelDownloader(dir, 0).start(url).get());
+		assertEquals(Integer.valueOf(304), responses.get(responses.size() - 1));
+
+		// the file is used offline
+		server.stop(0);
+		assertEquals(file, new ModelDownloader(dir, 0).start(url).get());
+	}
+
+	@Test
+	public void testChecksum() throws IOException {
+		final ModelDownloader downloader = new ModelDownloader(folder.newFolder(),
+			0);
+		downloader.setChecksum(url, DigestUtils.sha256Hex("other"));
+		try {
+			downloader.start(url).get();
+			fail("Download with wrong checksum must fail");
+		}
+		catch (final IOException e) {
+			assertFalse(downloader.getFile(url).exists());
+		}
+		downloader.setChecksum(url, DigestUtils.sha256Hex(content));
+		assertArrayEquals(content, Files.readAllBytes(downloader.start(url).get()
+			.toPath()));
+	}
+
+	private void handle(final HttpExchange exchange) throws IOException {
+		exchange.getResponseHeaders().add("ETag", ETAG);
+		exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+		final String range = exchange.getRequestHeaders().getFirst("Range");
+		try (OutputStream out = exchange.getResponseBody()) {
+			if (range != null && ETAG.equals(exchange.getRequestHeaders().getFirst(
+				"If-Range")))
+			{
+				ranges.add(range);
+				final int offset = Integer.parseInt(range.substring(6, range
+					.length() - 1));
+				exchange.getResponseHeaders().add("Content-Range", "bytes " + offset +
+					"-" + (content.length - 1) + "/" + content.length);
+				respond(exchange, 206, content.length - offset);
+				out.write(content, offset, content.length - offset);
+			}
+			else if (LAST_MODIFIED.equals(exchange.getRequestHeaders().getFirst(
+				"If-Modified-Since")))
+			{
+				respond(exchange, 304, -1);
+			}
+			else if (dropConnection.getAndSet(false)) {
+				respond(exchange, 200, content.length);
+				out.write(content, 0, content.length / 2);
+				out.flush();
+				// closing the exchange before all bytes are written drops the
+				// connection
+			}
+			else {
+				respond(exchange, 200, content.length);
+				out.write(content);
+			}
+		}
+		catch (final IOException e) {
+			// dropped connection
+		}
+	}
+
+	private void respond(final HttpExchange exchange, final int status,
+		final long length) throws IOException
+	{
+		responses.add(status);
+		exchange.sendResponseHeaders(status, length);
+	}
+
+	private static byte[] createZip() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+			out.putNextEntry(new ZipEntry("saved_model.pb"));
+			for (int i = 0; i < 10000; i++) {
+				out.write(("graph " + i).getBytes(StandardCharsets.UTF_8));
+			}
+			out.closeEntry();
+		}
+		return bytes.toByteArray();
+	}
+
+}
@@ -0,0 +1,92 @@
+package de.csbdresden.csbdeep.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ModelFingerprintsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Preferences preferences;
+
+	@Before
+	public void createPreferences() {
+		preferences = Preferences.userNodeForPackage(ModelFingerprintsTest.class)
+			.node("test-fingerprints-" + System.nanoTime());
+	}
+
+	@After
+	public void removePreferences() throws BackingStoreException {
+		preferences.removeNode();
+	}
+
+	@Test
+	public void testHashReused() throws IOException {
+		final File model = write("model.zip", "version 1");
+		final long lastModified = model.lastModified();
+
+		final String hash = new ModelFingerprints(preferences).getHash(model);
+		assertEquals(ModelFingerprints.computeHash(model.toPath()), hash);
+
+		// same size and modification time, the stored hash is used
+		write("model.zip", "version 2");
+		assertTrue(model.setLastModified(lastModified));
+		assertEquals(hash, new ModelFingerprints(preferences).getHash(model));
+
+		// modified file is hashed again
+		assertTrue(model.setLastModified(lastModified + 10000));
+		final String changed = new ModelFingerprints(preferences).getHash(model);
+		assertNotEquals(hash, changed);
+		assertEquals(ModelFingerprints.computeHash(model.toPath()), changed);
+	}
+
+	@Test
+	public void testSha256() throws IOException {
+		final File model = write("model.zip", "version 1");
+		assertEquals(DigestUtils.sha256Hex("version 1"), new ModelFingerprints(
+			preferences).getSha256(model));
+		assertEquals(DigestUtils.sha256Hex("version 1"), ModelFingerprints
+			.computeSha256(model.toPath()));
+	}
+
+	@Test
+	public void testSha256Lazy() throws IOException {
+		final File model = write("model.zip", "version 1");
+		final ModelFingerprints fingerprints = new ModelFingerprints(preferences);
+		final String hash = fingerprints.getHash(model);
+		assertEquals(DigestUtils.sha256Hex("version 1"), fingerprints.getSha256(
+			model));
+		// computing the SHA-256 later keeps the stored hash
+		assertEquals(hash, fingerprints.getHash(model));
+	}
+
+	@Test
+	public void testDifferentContent() throws IOException {
+		final ModelFingerprints fingerprints = new ModelFingerprints(preferences);
+		assertNotEquals(fingerprints.getHash(write("a.zip", "model a")),
+			fingerprints.getHash(write("b.zip", "model b")));
+	}
+
+	private File write(final String name, final String content)
+		throws IOException
+	{
+		final File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+}
@@ -0,0 +1,106 @@
+package de.csbdresden.csbdeep.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpServer;
+
+import de.csbdresden.csbdeep.commands.GenericNetwork;
+
+public class ModelSourceIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HttpServer server;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger notModified = new AtomicInteger();
+	private String url;
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/model.zip", exchange -> {
+			requests.incrementAndGet();
+			if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst(
+				"If-None-Match")))
+			{
+				notModified.incrementAndGet();
+				exchange.sendResponseHeaders(304, -1);
+			}
+			else {
+				exchange.getResponseHeaders().add("ETag", "\"v1\"");
+				exchange.getResponseHeaders().add("Last-Modified",
+					"Tue, 15 Nov 1994 08:12:31 GMT");
+				exchange.sendResponseHeaders(200, -1);
+			}
+			exchange.close();
+		});
+		server.start();
+		url = "http://127.0.0.1:" + server.getAddress().getPort() + "/model.zip";
+	}
+
+	@After
+	public void stopServer() {
+		if (server != null) server.stop(0);
+	}
+
+	@Test
+	public void testCachedWithinTtl() throws IOException {
+		final File file = new File(folder.getRoot(), "index.json");
+		final ModelSourceIndex index = new ModelSourceIndex(file, 60 * 1000);
+		assertTrue(index.exists(url));
+		assertEquals(1, requests.get());
+		assertEquals("GenericNetwork_model_1994-11-15-08-12-31", index
+			.getCacheName(GenericNetwork.class, url));
+		assertTrue(index.exists(url));
+		assertEquals(1, requests.get());
+		assertFalse(index.exists("http://127.0.0.1:" + server.getAddress()
+			.getPort() + "/missing.zip"));
+	}
+
+	@Test
+	public void testRevalidation() throws IOException, InterruptedException,
+		ExecutionException
+	{
+		final File file = new File(folder.getRoot(), "index.json");
+		final ModelSourceIndex index = new ModelSourceIndex(file, 0);
+		assertTrue(index.exists(url));
+		// expired entries are returned and revalidated in the background
+		Thread.sleep(5);
+		assertTrue(index.exists(url));
+		index.revalidate(url).get();
+		assertTrue(notModified.get() >= 1);
+		assertTrue(index.exists(url));
+	}
+
+	@Test
+	public void testOffline() throws IOException, InterruptedException,
+		ExecutionException
+	{
+		final File file = new File(folder.getRoot(), "index.json");
+		final String cacheName = new ModelSourceIndex(file, 60 * 1000)
+			.getCacheName(GenericNetwork.class, url);
+		server.stop(0);
+		server = null;
+
+		// a new session uses the stored index without reaching the server
+		final ModelSourceIndex offline = new ModelSourceIndex(file, 0);
+		assertEquals(cacheName, offline.getCacheName(GenericNetwork.class, url));
+		offline.revalidate(url).get();
+		assertTrue(offline.exists(url));
+		assertEquals(cacheName, offline.getCacheName(GenericNetwork.class, url));
+	}
+
+}